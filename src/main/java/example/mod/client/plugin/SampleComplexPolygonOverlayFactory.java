@@ -9,13 +9,14 @@ import journeymap.client.api.model.MapPolygonWithHoles;
 import journeymap.client.api.model.ShapeProperties;
 import journeymap.client.api.model.TextProperties;
 import journeymap.client.api.util.PolygonHelper;
+import journeymap.client.api.util.RectilinearPolygonOps;
 import net.minecraft.core.BlockPos;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
 
-import java.awt.geom.Area;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
@@ -86,11 +87,10 @@ class SampleComplexPolygonOverlayFactory
             final MapPolygon rect2 = PolygonHelper.createBlockRect(corner.east(10).north(4), corner.east(30).south(6));
             final MapPolygon rect3 = PolygonHelper.createBlockRect(corner.east(15).south(2), corner.east(18).south(4));
 
-            final Area composite = PolygonHelper.toArea(rect1);
-            composite.add(PolygonHelper.toArea(rect2));
-            composite.subtract(PolygonHelper.toArea(rect3));
-
-            final List<MapPolygonWithHoles> polygons = PolygonHelper.createPolygonFromArea(composite, pos.getY());
+            // the rectangles only have straight edges along x and z, so they can be combined exactly
+            final List<MapPolygonWithHoles> composite = RectilinearPolygonOps.union(rect1, rect2, pos.getY());
+            final List<MapPolygonWithHoles> polygons = RectilinearPolygonOps.subtract(composite,
+                    Collections.singletonList(new MapPolygonWithHoles(rect3, null)), pos.getY());
 
             // Style the polygon
             ShapeProperties shapeProps = new ShapeProperties()
@@ -123,8 +123,10 @@ class SampleComplexPolygonOverlayFactory
                             .setLabel(label);
 
                     result.add(overlay);
-                    jmAPI.show(overlay);
                 }
+
+                // Show them all in one batch
+                jmAPI.showAll(result);
             }
         }
         catch (Throwable t)
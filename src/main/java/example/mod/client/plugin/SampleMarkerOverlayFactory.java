@@ -66,15 +66,7 @@ class SampleMarkerOverlayFactory
             markerOverlay.setOverlayListener(new MarkerListener(jmAPI, markerOverlay));
 
             // Add to list
-            try
-            {
-                jmAPI.show(markerOverlay);
-                list.add(markerOverlay);
-            }
-            catch (Exception e)
-            {
-                ExampleMod.LOGGER.error("Can't add marker overlay", e);
-            }
+            list.add(markerOverlay);
 
             // Set next sprite coords
             spriteX += iconSize;
@@ -90,6 +82,17 @@ class SampleMarkerOverlayFactory
 
         }
 
+        // Show them all in one batch
+        try
+        {
+            jmAPI.showAll(list);
+        }
+        catch (Exception e)
+        {
+            ExampleMod.LOGGER.error("Can't add marker overlays", e);
+            list.clear();
+        }
+
         return list;
     }
 
@@ -23,17 +23,22 @@ package journeymap.client.api;
 import journeymap.client.api.display.Context;
 import journeymap.client.api.display.DisplayType;
 import journeymap.client.api.display.Displayable;
+import journeymap.client.api.display.Overlay;
 import journeymap.client.api.display.Waypoint;
 import journeymap.client.api.event.ClientEvent;
+import journeymap.client.api.util.MarkerClusterIndex;
+import journeymap.client.api.util.RenderOrderIndex;
 import journeymap.client.api.util.UIState;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.function.Consumer;
@@ -74,6 +79,12 @@ public interface IClientAPI
      * If an object of the same Displayable.Type
      * from your mod with the same displayId has already been added, it will be replaced.
      * <p>
+     * If the object has the same {@link Displayable#getFingerprint()} as the one it replaces, it still replaces
+     * it, but what was built to draw that one is kept rather than rebuilt.  The fingerprint doesn't see changes
+     * made outside the setters, such as drawing into the BufferedImage of a
+     * {@link journeymap.client.api.model.MapImage}, so call {@link Overlay#flagForRerender()} after those;
+     * overlays flagged for rerender are always rebuilt.
+     * <p>
      * Has no effect on display types not accepted by the player.
      *
      * @param displayable The object to display.
@@ -82,6 +93,23 @@ public interface IClientAPI
      */
     void show(Displayable displayable) throws Exception;
 
+    /**
+     * Add (or update) a batch of displayable objects to the player's maps.  This has the same effect as calling
+     * {@link #show(Displayable)} for each one, but the whole batch is validated before any of it is shown,
+     * and bookkeeping and rerendering happen once per batch rather than once per object.  Objects which haven't
+     * changed are replaced without being rebuilt, as described for {@link #show(Displayable)}.
+     * <p>
+     * Use this when showing many Displayables at once, for example when
+     * {@link journeymap.client.api.event.ClientEvent.Type#MAPPING_STARTED} is received.
+     * <p>
+     * Has no effect on display types not accepted by the player.
+     *
+     * @param displayables The objects to display.
+     * @throws Exception if any of the Displayables can't be shown, in which case none of them are.
+     * @see #playerAccepts(String, DisplayType)
+     */
+    void showAll(Collection<? extends Displayable> displayables) throws Exception;
+
     /**
      * Remove a displayable from the player's maps.
      * Has no effect on display types not accepted by the player.
@@ -91,6 +119,16 @@ public interface IClientAPI
      */
     void remove(Displayable displayable);
 
+    /**
+     * Remove a batch of displayables from the player's maps.  This has the same effect as calling
+     * {@link #remove(Displayable)} for each one, but rerendering happens once per batch rather than once per object.
+     * Has no effect on display types not accepted by the player.
+     *
+     * @param displayables The objects to remove.
+     * @see #playerAccepts(String, DisplayType)
+     */
+    void removeAll(Collection<? extends Displayable> displayables);
+
     /**
      * Remove all displayables by DisplayType from the player's maps.
      * Has no effect on display types not accepted by the player.
@@ -121,6 +159,77 @@ public interface IClientAPI
      */
     boolean exists(Displayable displayable);
 
+    /**
+     * Gets the overlays shown in a dimension whose bounds intersect an area of blocks, such as the
+     * {@link UIState#blockBounds} of a map.  Overlays are kept in a spatial index, so the cost of this
+     * scales with the number of overlays in the area rather than the number of overlays shown.
+     * <p>
+     * Overlays are indexed by their bounds when last shown, so call {@link #show(Displayable)} again after
+     * changing their location.
+     * <p>
+     * Markers are indexed by their point alone, since their icons are sized in pixels, so to find every marker
+     * whose icon reaches into a map, pad the map's area by the largest icon's reach in blocks at its zoom level.
+     *
+     * @param dimension   the dimension
+     * @param blockBounds the area of blocks
+     * @return the overlays in the area, in no particular order
+     */
+    List<Overlay> getOverlays(ResourceKey<Level> dimension, AABB blockBounds);
+
+    /**
+     * Gets the clusters of {@link journeymap.client.api.display.MarkerOverlay}s shown in a dimension, for the
+     * cells of a zoom level which intersect an area of blocks.  A cluster with one marker should be drawn as that
+     * marker, and one with more as a single marker with the count.  Clusters for every zoom level are updated as
+     * each marker is shown or removed, so the cost of this scales with the size of the area on screen.
+     * <p>
+     * Markers are clustered by their point when last shown, so call {@link #show(Displayable)} again after
+     * moving them.
+     *
+     * @param dimension   the dimension
+     * @param blockBounds the area of blocks, such as {@link UIState#blockBounds}
+     * @param zoom        the zoom level, such as {@link UIState#zoom}
+     * @return the clusters in the area, in no particular order
+     * @see MarkerClusterIndex
+     */
+    List<MarkerClusterIndex.Cluster> getMarkerClusters(ResourceKey<Level> dimension, AABB blockBounds, int zoom);
+
+    /**
+     * Gets the overlays shown in a dimension which are active in a UI, in the order they should be drawn:
+     * by {@link Overlay#getDisplayOrder()}, then by {@link DisplayType}, then by when they were first shown.
+     * The order is kept as overlays are shown and removed, so it is never sorted per frame.
+     * <p>
+     * Overlays are placed by their display order and active UIs when last shown, so call
+     * {@link #show(Displayable)} again after changing those.
+     *
+     * @param dimension the dimension
+     * @param ui        the UI, or {@link Context.UI#Any} for the overlays in every UI
+     * @return the overlays, the first to be drawn first
+     * @see RenderOrderIndex
+     */
+    List<Overlay> getOverlaysInRenderOrder(ResourceKey<Level> dimension, Context.UI ui);
+
+    /**
+     * Gets the number of calls to {@link #show(Displayable)}, or displayables in calls to
+     * {@link #showAll(Collection)}, which were applied because the displayable was new or had changed.
+     * <p>
+     * A displayable with the same {@link Displayable#getFingerprint()} as when it was last shown hasn't changed,
+     * so showing it again is skipped rather than rebuilding how it is drawn.
+     *
+     * @return the count since the game started
+     * @see #getSkippedShowCount()
+     */
+    long getAppliedShowCount();
+
+    /**
+     * Gets the number of calls to {@link #show(Displayable)}, or displayables in calls to
+     * {@link #showAll(Collection)}, which were skipped because the displayable hadn't changed since it was
+     * last shown.  A high count compared to {@link #getAppliedShowCount()} means displayables are being shown
+     * more often than they change.
+     *
+     * @return the count since the game started
+     */
+    long getSkippedShowCount();
+
     /**
      * Check whether player will accept a type of Displayable from your mod. (Like Displayables or Overlays).
      *
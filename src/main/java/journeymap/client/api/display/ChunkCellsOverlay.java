@@ -0,0 +1,474 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.display;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import journeymap.client.api.util.Fingerprint;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+
+/**
+ * A ChunkCells overlay colors whole chunks of a dimension, such as slime chunks or claimed land, without a
+ * {@link PolygonOverlay} for each one.
+ * <p>
+ * Each chunk has a packed ARGB color, kept in an int array for each region of 32x32 chunks, so setting or
+ * clearing a chunk doesn't allocate unless its region is new.  For drawing, the chunks of each region are merged
+ * into rectangles of one color with {@link #forEachQuad(AABB, QuadConsumer)}, so a large area of chunks takes a
+ * quad per region rather than per chunk.  The rectangles of a region are only merged again after it changes.
+ * <p>
+ * Setters use the Builder pattern so they can be chained.
+ * <p>
+ * Note that like all Displayables, simply changing this object doesn't guarantee the player will get the changes.
+ * You must call {@link journeymap.client.api.IClientAPI#show(Displayable)} in order for the changes to take effect
+ * in JourneyMap.
+ */
+@ParametersAreNonnullByDefault
+public final class ChunkCellsOverlay extends Overlay
+{
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final int REGION_MASK = REGION_SIZE - 1;
+
+    private final Long2ObjectOpenHashMap<Region> regions = new Long2ObjectOpenHashMap<>();
+    private int cellCount;
+    private transient AABB bounds;
+
+    /**
+     * Constructor.
+     *
+     * @param modId     Your mod id.
+     * @param displayId A unique id for the overlay (scoped to your mod) which can be used to remove/update it.
+     * @param dimension The dimension of the chunks.
+     */
+    public ChunkCellsOverlay(String modId, String displayId, ResourceKey<Level> dimension)
+    {
+        super(modId, displayId);
+        setDimension(dimension);
+    }
+
+    /**
+     * Sets the color of a chunk.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @param argb   color with alpha in the high byte. A color with an alpha of 0 clears the chunk.
+     * @return this
+     */
+    public ChunkCellsOverlay setColor(int chunkX, int chunkZ, int argb)
+    {
+        if ((argb >>> 24) == 0)
+        {
+            return clearColor(chunkX, chunkZ);
+        }
+
+        final long key = ChunkPos.asLong(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+        Region region = regions.get(key);
+        if (region == null)
+        {
+            region = new Region(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+            regions.put(key, region);
+        }
+
+        final int index = cellIndex(chunkX, chunkZ);
+        final int old = region.colors[index];
+        if (old != argb)
+        {
+            region.colors[index] = argb;
+            region.quads = null;
+            if (old == 0)
+            {
+                region.count++;
+                cellCount++;
+                bounds = null;
+            }
+            markModified();
+        }
+        return this;
+    }
+
+    /**
+     * Sets the color of a chunk.
+     *
+     * @param chunkPos the chunk
+     * @param argb     color with alpha in the high byte. A color with an alpha of 0 clears the chunk.
+     * @return this
+     */
+    public ChunkCellsOverlay setColor(ChunkPos chunkPos, int argb)
+    {
+        return setColor(chunkPos.x, chunkPos.z, argb);
+    }
+
+    /**
+     * Clears the color of a chunk.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return this
+     */
+    public ChunkCellsOverlay clearColor(int chunkX, int chunkZ)
+    {
+        final long key = ChunkPos.asLong(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+        final Region region = regions.get(key);
+        if (region == null)
+        {
+            return this;
+        }
+
+        final int index = cellIndex(chunkX, chunkZ);
+        if (region.colors[index] != 0)
+        {
+            region.colors[index] = 0;
+            region.quads = null;
+            if (--region.count == 0)
+            {
+                regions.remove(key);
+            }
+            cellCount--;
+            bounds = null;
+            markModified();
+        }
+        return this;
+    }
+
+    /**
+     * Clears the color of a chunk.
+     *
+     * @param chunkPos the chunk
+     * @return this
+     */
+    public ChunkCellsOverlay clearColor(ChunkPos chunkPos)
+    {
+        return clearColor(chunkPos.x, chunkPos.z);
+    }
+
+    /**
+     * Clears the colors of all chunks.
+     *
+     * @return this
+     */
+    public ChunkCellsOverlay clearAll()
+    {
+        if (cellCount > 0)
+        {
+            regions.clear();
+            cellCount = 0;
+            bounds = null;
+            markModified();
+        }
+        return this;
+    }
+
+    /**
+     * Gets the color of a chunk.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return argb color, or 0 if the chunk has none
+     */
+    public int getColor(int chunkX, int chunkZ)
+    {
+        final Region region = regions.get(ChunkPos.asLong(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT));
+        return region == null ? 0 : region.colors[cellIndex(chunkX, chunkZ)];
+    }
+
+    /**
+     * Gets the number of chunks with a color.
+     *
+     * @return the count
+     */
+    public int getCellCount()
+    {
+        return cellCount;
+    }
+
+    /**
+     * Passes each chunk with a color to a consumer, in no particular order.  The overlay must not be modified by
+     * the consumer.
+     *
+     * @param consumer the consumer
+     */
+    public void forEachCell(CellConsumer consumer)
+    {
+        for (Region region : regions.values())
+        {
+            final int[] colors = region.colors;
+            for (int i = 0; i < colors.length; i++)
+            {
+                if (colors[i] != 0)
+                {
+                    consumer.accept(region.minChunkX + (i & REGION_MASK), region.minChunkZ + (i >> REGION_SHIFT), colors[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes rectangles of chunks with the same color to a consumer, in no particular order.  Each chunk is in
+     * exactly one rectangle, and rectangles don't cross region boundaries.  The overlay must not be modified by
+     * the consumer.
+     *
+     * @param consumer the consumer
+     */
+    public void forEachQuad(QuadConsumer consumer)
+    {
+        for (Region region : regions.values())
+        {
+            region.forEachQuad(consumer);
+        }
+    }
+
+    /**
+     * Passes rectangles of chunks with the same color in the regions which intersect an area to a consumer, in no
+     * particular order.  Rectangles may extend outside the area.  The overlay must not be modified by the consumer.
+     *
+     * @param blockBounds the area, such as {@link journeymap.client.api.util.UIState#blockBounds}
+     * @param consumer    the consumer
+     */
+    public void forEachQuad(AABB blockBounds, QuadConsumer consumer)
+    {
+        final int shift = 4 + REGION_SHIFT;
+        final int minRegionX = (int) Math.floor(blockBounds.minX) >> shift;
+        final int minRegionZ = (int) Math.floor(blockBounds.minZ) >> shift;
+        final int maxRegionX = (int) Math.floor(blockBounds.maxX) >> shift;
+        final int maxRegionZ = (int) Math.floor(blockBounds.maxZ) >> shift;
+
+        // Look up each region in the area, unless there are fewer regions than that
+        if (((long) maxRegionX - minRegionX + 1) * ((long) maxRegionZ - minRegionZ + 1) > regions.size())
+        {
+            for (Region region : regions.values())
+            {
+                final int regionX = region.minChunkX >> REGION_SHIFT;
+                final int regionZ = region.minChunkZ >> REGION_SHIFT;
+                if (regionX >= minRegionX && regionX <= maxRegionX && regionZ >= minRegionZ && regionZ <= maxRegionZ)
+                {
+                    region.forEachQuad(consumer);
+                }
+            }
+            return;
+        }
+
+        for (int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++)
+        {
+            for (int regionX = minRegionX; regionX <= maxRegionX; regionX++)
+            {
+                final Region region = regions.get(ChunkPos.asLong(regionX, regionZ));
+                if (region != null)
+                {
+                    region.forEachQuad(consumer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the revision rather than the colors, so showing the overlay after coloring a chunk doesn't hash every
+     * chunk.  Another instance with the same colors has a different fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     */
+    @Override
+    protected void addFingerprint(Fingerprint fingerprint)
+    {
+        super.addFingerprint(fingerprint);
+        fingerprint.add(getRevision());
+    }
+
+    /**
+     * Gets the block bounds of the chunks with a color.
+     *
+     * @return bounds
+     */
+    @Override
+    public AABB getBounds()
+    {
+        if (bounds == null)
+        {
+            int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+            for (Region region : regions.values())
+            {
+                final int[] colors = region.colors;
+                for (int i = 0; i < colors.length; i++)
+                {
+                    if (colors[i] != 0)
+                    {
+                        final int chunkX = region.minChunkX + (i & REGION_MASK);
+                        final int chunkZ = region.minChunkZ + (i >> REGION_SHIFT);
+                        minX = Math.min(minX, chunkX);
+                        minZ = Math.min(minZ, chunkZ);
+                        maxX = Math.max(maxX, chunkX);
+                        maxZ = Math.max(maxZ, chunkZ);
+                    }
+                }
+            }
+            bounds = cellCount == 0 ? new AABB(0, 0, 0, 0, 0, 0)
+                    : new AABB(minX * 16L, 0, minZ * 16L, (maxX + 1) * 16L, 0, (maxZ + 1) * 16L);
+        }
+        return bounds;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("cells", cellCount)
+                .add("regions", regions.size())
+                .toString();
+    }
+
+    private static int cellIndex(int chunkX, int chunkZ)
+    {
+        return ((chunkZ & REGION_MASK) << REGION_SHIFT) | (chunkX & REGION_MASK);
+    }
+
+    /**
+     * Receives chunks from {@link #forEachCell(CellConsumer)}.
+     */
+    @FunctionalInterface
+    public interface CellConsumer
+    {
+        /**
+         * Receives a chunk.
+         *
+         * @param chunkX chunk x
+         * @param chunkZ chunk z
+         * @param argb   the chunk's color
+         */
+        void accept(int chunkX, int chunkZ, int argb);
+    }
+
+    /**
+     * Receives rectangles of chunks from {@link #forEachQuad(QuadConsumer)}.
+     */
+    @FunctionalInterface
+    public interface QuadConsumer
+    {
+        /**
+         * Receives a rectangle of chunks.
+         *
+         * @param chunkX chunk x of the corner with the lowest x and z
+         * @param chunkZ chunk z of the corner with the lowest x and z
+         * @param width  number of chunks along x
+         * @param height number of chunks along z
+         * @param argb   the color of every chunk in the rectangle
+         */
+        void accept(int chunkX, int chunkZ, int width, int height, int argb);
+    }
+
+    /**
+     * The colors of a region of chunks, by z then x, and the rectangles merged from them.
+     */
+    private static class Region
+    {
+        // Offsets and sizes within the region and the color of each rectangle
+        private static final int QUAD_SIZE = 5;
+
+        final int minChunkX;
+        final int minChunkZ;
+        final int[] colors = new int[REGION_SIZE * REGION_SIZE];
+        int count;
+        int[] quads;
+
+        Region(int regionX, int regionZ)
+        {
+            this.minChunkX = regionX << REGION_SHIFT;
+            this.minChunkZ = regionZ << REGION_SHIFT;
+        }
+
+        void forEachQuad(QuadConsumer consumer)
+        {
+            if (quads == null)
+            {
+                quads = mergeQuads();
+            }
+            for (int i = 0; i < quads.length; i += QUAD_SIZE)
+            {
+                consumer.accept(minChunkX + quads[i], minChunkZ + quads[i + 1], quads[i + 2], quads[i + 3], quads[i + 4]);
+            }
+        }
+
+        /**
+         * Greedily merges cells into rectangles: each unmerged cell, in row order, takes the longest run of its
+         * color along x, which then grows along z while the next row has the same run.
+         */
+        int[] mergeQuads()
+        {
+            final boolean[] merged = new boolean[colors.length];
+            int[] result = new int[QUAD_SIZE * 4];
+            int size = 0;
+            for (int z = 0; z < REGION_SIZE; z++)
+            {
+                for (int x = 0; x < REGION_SIZE; x++)
+                {
+                    final int start = (z << REGION_SHIFT) | x;
+                    final int color = colors[start];
+                    if (color == 0 || merged[start])
+                    {
+                        continue;
+                    }
+
+                    int width = 1;
+                    while (x + width < REGION_SIZE && colors[start + width] == color && !merged[start + width])
+                    {
+                        width++;
+                    }
+
+                    int height = 1;
+                    rows:
+                    while (z + height < REGION_SIZE)
+                    {
+                        final int row = start + (height << REGION_SHIFT);
+                        for (int i = row; i < row + width; i++)
+                        {
+                            if (colors[i] != color || merged[i])
+                            {
+                                break rows;
+                            }
+                        }
+                        height++;
+                    }
+
+                    for (int h = 0; h < height; h++)
+                    {
+                        final int row = start + (h << REGION_SHIFT);
+                        Arrays.fill(merged, row, row + width, true);
+                    }
+
+                    if (size + QUAD_SIZE > result.length)
+                    {
+                        result = Arrays.copyOf(result, result.length * 2);
+                    }
+                    result[size++] = x;
+                    result[size++] = z;
+                    result[size++] = width;
+                    result[size++] = height;
+                    result[size++] = color;
+                    x += width - 1;
+                }
+            }
+            return Arrays.copyOf(result, size);
+        }
+    }
+}
@@ -28,9 +28,14 @@ import java.util.HashMap;
  */
 public enum DisplayType
 {
+    ChunkCells(ChunkCellsOverlay.class),
+    Heatmap(HeatmapOverlay.class),
     Image(ImageOverlay.class),
     Marker(MarkerOverlay.class),
+    MovingObjects(MovingObjectsOverlay.class),
+    MultiPoint(MultiPointOverlay.class),
     Polygon(PolygonOverlay.class),
+    Polyline(PolylineOverlay.class),
     Waypoint(Waypoint.class),
     WaypointGroup(journeymap.client.api.display.WaypointGroup.class);
 
@@ -24,9 +24,13 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.base.Strings;
 import com.google.gson.annotations.Since;
+import journeymap.client.api.util.Fingerprint;
 
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Base class for Overlays and Waypoints.
@@ -35,6 +39,8 @@ import java.util.UUID;
 @ParametersAreNonnullByDefault
 public abstract class Displayable implements Comparable<Displayable>
 {
+    private static final AtomicLong REVISIONS = new AtomicLong();
+
     @Since(1.1)
     protected final String modId;
 
@@ -44,6 +50,11 @@ public abstract class Displayable implements Comparable<Displayable>
     @Since(1.1)
     protected final DisplayType displayType;
 
+    // The fingerprint with the objects it holds by identity, and the revision it was computed at
+    private transient long fingerprint;
+    private transient List<Object> fingerprintIdentities;
+    private transient long fingerprintRevision;
+
     /**
      * Needed for GSON deserialization.
      */
@@ -108,6 +119,18 @@ public abstract class Displayable implements Comparable<Displayable>
         return Math.max(0F, Math.min(opacity, 1F));
     }
 
+    /**
+     * Gets the next value of the counter behind the modification counters of overlays and their properties.
+     * Since every counter draws from the same sequence, the highest of several counters changes whenever
+     * any one of them does, even if one object is swapped for another.
+     *
+     * @return a value greater than any returned before
+     */
+    public static long nextRevision()
+    {
+        return REVISIONS.incrementAndGet();
+    }
+
     /**
      * Used to determine display order, lower first.
      *
@@ -155,6 +178,65 @@ public abstract class Displayable implements Comparable<Displayable>
         return Joiner.on("-").join(modId, displayType, id);
     }
 
+    /**
+     * Gets a hash of everything which affects how this object is displayed, such as its geometry, images,
+     * properties, title and label.  Objects with the same GUID, fingerprint and
+     * {@link #getFingerprintIdentities() identities} display the same way, so showing an object with the same
+     * ones as the one already shown can be skipped.
+     * <p>
+     * The fingerprint is computed again only when {@link #getFingerprintRevision()} changes, so showing an
+     * object which hasn't changed doesn't hash its geometry again.
+     *
+     * @return the fingerprint
+     */
+    public final long getFingerprint()
+    {
+        final long revision = getFingerprintRevision();
+        if (revision == 0 || revision != fingerprintRevision)
+        {
+            final Fingerprint builder = new Fingerprint()
+                    .add(modId)
+                    .add(displayType.ordinal())
+                    .add(id);
+            addFingerprint(builder);
+            fingerprint = builder.getValue();
+            fingerprintIdentities = builder.getIdentities();
+            fingerprintRevision = revision;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Gets the objects which affect how this object is displayed but can't be compared by value, such as
+     * listeners and images held in memory, as of the last call to {@link #getFingerprint()}.  They aren't part of
+     * the fingerprint, so showing an object can only be skipped if these are also the same instances.
+     *
+     * @return the objects, empty if there are none or no fingerprint has been computed
+     */
+    public final List<Object> getFingerprintIdentities()
+    {
+        return fingerprintIdentities == null ? Collections.emptyList() : fingerprintIdentities;
+    }
+
+    /**
+     * Gets a revision which changes whenever anything added by {@link #addFingerprint(Fingerprint)} does, so
+     * the fingerprint is kept until it changes.
+     *
+     * @return the revision, or 0 to compute the fingerprint every time
+     */
+    protected long getFingerprintRevision()
+    {
+        return 0;
+    }
+
+    /**
+     * Adds the values which affect how this object is displayed to a fingerprint.  Subclasses overriding an
+     * implementation must call it first.
+     *
+     * @param fingerprint the fingerprint
+     */
+    protected abstract void addFingerprint(Fingerprint fingerprint);
+
     /**
      * Equality is based on either reference equality or GUID.
      *
@@ -188,6 +270,9 @@ public abstract class Displayable implements Comparable<Displayable>
      * Compares this object with the specified object for order.  Returns a
      * negative integer, zero, or a positive integer as this object is less
      * than, equal to, or greater than the specified object.
+     * <p>
+     * Objects are ordered by display order, then by display type, mod id and display id, so only objects
+     * with the same GUID compare as equal and sorted sets can hold every displayable.
      *
      * @param o the object to be compared.
      * @return a negative integer, zero, or a positive integer as this object
@@ -199,6 +284,19 @@ public abstract class Displayable implements Comparable<Displayable>
     @Override
     public int compareTo(Displayable o)
     {
-        return Integer.compare(getDisplayOrder(), o.getDisplayOrder());
+        int result = Integer.compare(getDisplayOrder(), o.getDisplayOrder());
+        if (result == 0)
+        {
+            result = displayType.compareTo(o.displayType);
+        }
+        if (result == 0)
+        {
+            result = modId.compareTo(o.modId);
+        }
+        if (result == 0)
+        {
+            result = id.compareTo(o.id);
+        }
+        return result;
     }
 }
@@ -0,0 +1,582 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.display;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import journeymap.client.api.model.MapImage;
+import journeymap.client.api.util.Fingerprint;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+
+/**
+ * A Heatmap overlay shows how dense weighted points are, such as mob kills, deaths or player traffic, as colors
+ * on the map rather than as a marker for each point.
+ * <p>
+ * The blocks of the dimension are split into square cells {@link #getCellSize()} blocks across, and each point
+ * adds its weight to the cells around it, spread by the {@link Kernel}.  Densities are kept in a float array for
+ * each region of 64x64 cells, and {@link #decay(float)} can be called periodically so old points fade away.
+ * <p>
+ * Each region is drawn as an image with a pixel per cell, colored by a gradient from no density to
+ * {@link #getMaxDensity()} and above.  The image of a region is only made again after its densities change.
+ * <p>
+ * Setters use the Builder pattern so they can be chained.
+ * <p>
+ * Note that like all Displayables, simply changing this object doesn't guarantee the player will get the changes.
+ * You must call {@link journeymap.client.api.IClientAPI#show(Displayable)} in order for the changes to take effect
+ * in JourneyMap.
+ */
+@ParametersAreNonnullByDefault
+public final class HeatmapOverlay extends Overlay
+{
+    private static final int REGION_SHIFT = 6;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final int REGION_MASK = REGION_SIZE - 1;
+
+    // Densities below this fraction of the max density round to no color, so decayed regions are dropped
+    private static final float MIN_DENSITY_FRACTION = 1f / 512;
+
+    private static final int[] DEFAULT_GRADIENT = {0x000000ff, 0x800000ff, 0xa000ffff, 0xc000ff00, 0xe0ffff00, 0xffff0000};
+
+    private final int cellSize;
+    private final Long2ObjectOpenHashMap<Region> regions = new Long2ObjectOpenHashMap<>();
+    private Kernel kernel = Kernel.Gaussian;
+    private int kernelRadius = 2;
+    private float maxDensity = 10;
+    private int[] gradient = DEFAULT_GRADIENT;
+
+    private transient float[] kernelWeights;
+    private transient int[] colorTable;
+    private transient AABB bounds;
+
+    /**
+     * Constructor.
+     *
+     * @param modId     Your mod id.
+     * @param displayId A unique id for the overlay (scoped to your mod) which can be used to remove/update it.
+     * @param dimension The dimension of the points.
+     * @param cellSize  How many blocks across each cell of the heatmap is.
+     * @throws IllegalArgumentException if the cell size isn't positive
+     */
+    public HeatmapOverlay(String modId, String displayId, ResourceKey<Level> dimension, int cellSize)
+    {
+        super(modId, displayId);
+        if (cellSize < 1)
+        {
+            throw new IllegalArgumentException("HeatmapOverlay cell size must be positive.");
+        }
+        this.cellSize = cellSize;
+        setDimension(dimension);
+    }
+
+    /**
+     * Gets how many blocks across each cell is.
+     *
+     * @return the cell size
+     */
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    /**
+     * Gets how the weight of a point is spread to the cells around it.
+     *
+     * @return the kernel
+     */
+    public Kernel getKernel()
+    {
+        return kernel;
+    }
+
+    /**
+     * Gets how many cells around a point's cell its weight is spread to.
+     *
+     * @return the radius in cells
+     */
+    public int getKernelRadius()
+    {
+        return kernelRadius;
+    }
+
+    /**
+     * Sets how the weight of a point is spread to the cells around it.  Points already added are not changed.
+     *
+     * @param kernel the kernel
+     * @param radius how many cells around a point's cell to spread its weight to, 0 for only its own cell
+     * @return this
+     */
+    public HeatmapOverlay setKernel(Kernel kernel, int radius)
+    {
+        this.kernel = kernel;
+        this.kernelRadius = Math.max(0, radius);
+        this.kernelWeights = null;
+        return this;
+    }
+
+    /**
+     * Gets the density shown with the last color of the gradient.
+     *
+     * @return the max density
+     */
+    public float getMaxDensity()
+    {
+        return maxDensity;
+    }
+
+    /**
+     * Sets the density shown with the last color of the gradient.  Greater densities have the same color.
+     *
+     * @param maxDensity the max density
+     * @return this
+     */
+    public HeatmapOverlay setMaxDensity(float maxDensity)
+    {
+        this.maxDensity = Math.max(Float.MIN_NORMAL, maxDensity);
+        invalidateImages();
+        return this;
+    }
+
+    /**
+     * Gets the colors of the gradient.
+     *
+     * @return argb colors from no density to the max density
+     */
+    public int[] getGradient()
+    {
+        return gradient.clone();
+    }
+
+    /**
+     * Sets the colors of the gradient, which are spaced evenly from no density to the max density and blended
+     * between.  The default gradient goes from transparent blue to cyan, green, yellow and red.
+     *
+     * @param argbColors at least two argb colors
+     * @return this
+     * @throws IllegalArgumentException if there are fewer than two colors
+     */
+    public HeatmapOverlay setGradient(int... argbColors)
+    {
+        if (argbColors.length < 2)
+        {
+            throw new IllegalArgumentException("HeatmapOverlay gradient needs at least two colors.");
+        }
+        this.gradient = argbColors.clone();
+        this.colorTable = null;
+        invalidateImages();
+        return this;
+    }
+
+    /**
+     * Adds a point, spreading its weight to the cells around it with the kernel.
+     *
+     * @param x      block x
+     * @param z      block z
+     * @param weight weight of the point
+     * @return this
+     */
+    public HeatmapOverlay addPoint(int x, int z, float weight)
+    {
+        if (kernelWeights == null)
+        {
+            kernelWeights = kernel.getWeights(kernelRadius);
+        }
+
+        final int centerX = Math.floorDiv(x, cellSize);
+        final int centerZ = Math.floorDiv(z, cellSize);
+        final int size = kernelRadius * 2 + 1;
+        Region region = null;
+        for (int dz = 0; dz < size; dz++)
+        {
+            final int cellZ = centerZ + dz - kernelRadius;
+            for (int dx = 0; dx < size; dx++)
+            {
+                final float cellWeight = kernelWeights[dz * size + dx] * weight;
+                if (cellWeight == 0)
+                {
+                    continue;
+                }
+
+                final int cellX = centerX + dx - kernelRadius;
+                if (region == null || region.regionX != cellX >> REGION_SHIFT || region.regionZ != cellZ >> REGION_SHIFT)
+                {
+                    region = getOrCreateRegion(cellX >> REGION_SHIFT, cellZ >> REGION_SHIFT);
+                }
+                final int index = ((cellZ & REGION_MASK) << REGION_SHIFT) | (cellX & REGION_MASK);
+                final float density = region.density[index] + cellWeight;
+                region.density[index] = density;
+                region.maxDensity = Math.max(region.maxDensity, density);
+                region.image = null;
+            }
+        }
+        markModified();
+        return this;
+    }
+
+    /**
+     * Multiplies every density by a factor, so that older points count for less.  Regions whose densities fall
+     * too low to be colored are removed.
+     *
+     * @param factor the factor, from 0 to 1
+     * @return this
+     */
+    public HeatmapOverlay decay(float factor)
+    {
+        if (factor >= 1 || regions.isEmpty())
+        {
+            return this;
+        }
+
+        final float minDensity = maxDensity * MIN_DENSITY_FRACTION;
+        final Iterator<Region> iterator = regions.values().iterator();
+        while (iterator.hasNext())
+        {
+            final Region region = iterator.next();
+            region.maxDensity *= factor;
+            if (region.maxDensity < minDensity)
+            {
+                iterator.remove();
+                continue;
+            }
+
+            final float[] density = region.density;
+            for (int i = 0; i < density.length; i++)
+            {
+                density[i] *= factor;
+            }
+            region.image = null;
+        }
+        bounds = null;
+        markModified();
+        return this;
+    }
+
+    /**
+     * Removes all points.
+     *
+     * @return this
+     */
+    public HeatmapOverlay clearAll()
+    {
+        if (!regions.isEmpty())
+        {
+            regions.clear();
+            bounds = null;
+            markModified();
+        }
+        return this;
+    }
+
+    /**
+     * Gets the density of the cell containing a block.
+     *
+     * @param x block x
+     * @param z block z
+     * @return the density, or 0 if none
+     */
+    public float getDensity(int x, int z)
+    {
+        final int cellX = Math.floorDiv(x, cellSize);
+        final int cellZ = Math.floorDiv(z, cellSize);
+        final Region region = regions.get(ChunkPos.asLong(cellX >> REGION_SHIFT, cellZ >> REGION_SHIFT));
+        return region == null ? 0 : region.density[((cellZ & REGION_MASK) << REGION_SHIFT) | (cellX & REGION_MASK)];
+    }
+
+    /**
+     * Gets the number of regions with densities, each of which is drawn as one image.
+     *
+     * @return the count
+     */
+    public int getRegionCount()
+    {
+        return regions.size();
+    }
+
+    /**
+     * Passes the image of each region which intersects an area to a consumer, in no particular order.  Images are
+     * made for regions which have changed since they were last passed.  The overlay must not be modified by the
+     * consumer.
+     *
+     * @param blockBounds the area, such as {@link journeymap.client.api.util.UIState#blockBounds}
+     * @param consumer    the consumer
+     */
+    public void forEachRegion(AABB blockBounds, RegionConsumer consumer)
+    {
+        final long regionBlocks = (long) cellSize << REGION_SHIFT;
+        final long minRegionX = Math.floorDiv((long) Math.floor(blockBounds.minX), regionBlocks);
+        final long minRegionZ = Math.floorDiv((long) Math.floor(blockBounds.minZ), regionBlocks);
+        final long maxRegionX = Math.floorDiv((long) Math.floor(blockBounds.maxX), regionBlocks);
+        final long maxRegionZ = Math.floorDiv((long) Math.floor(blockBounds.maxZ), regionBlocks);
+
+        for (Region region : regions.values())
+        {
+            if (region.regionX >= minRegionX && region.regionX <= maxRegionX
+                    && region.regionZ >= minRegionZ && region.regionZ <= maxRegionZ)
+            {
+                if (region.image == null)
+                {
+                    region.image = rasterize(region);
+                }
+                consumer.accept(region.regionX * regionBlocks, region.regionZ * regionBlocks,
+                        (region.regionX + 1) * regionBlocks, (region.regionZ + 1) * regionBlocks, region.image);
+            }
+        }
+    }
+
+    /**
+     * Adds the revision rather than the densities, so showing the overlay after adding a point doesn't hash
+     * every cell.  Another instance with the same densities has a different fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     */
+    @Override
+    protected void addFingerprint(Fingerprint fingerprint)
+    {
+        super.addFingerprint(fingerprint);
+        fingerprint.add(getRevision());
+    }
+
+    /**
+     * Gets the block bounds of the regions with densities.
+     *
+     * @return bounds
+     */
+    @Override
+    public AABB getBounds()
+    {
+        if (bounds == null)
+        {
+            if (regions.isEmpty())
+            {
+                bounds = new AABB(0, 0, 0, 0, 0, 0);
+            }
+            else
+            {
+                int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+                for (Region region : regions.values())
+                {
+                    minX = Math.min(minX, region.regionX);
+                    minZ = Math.min(minZ, region.regionZ);
+                    maxX = Math.max(maxX, region.regionX);
+                    maxZ = Math.max(maxZ, region.regionZ);
+                }
+                final long regionBlocks = (long) cellSize << REGION_SHIFT;
+                bounds = new AABB(minX * regionBlocks, 0, minZ * regionBlocks,
+                        (maxX + 1) * regionBlocks, 0, (maxZ + 1) * regionBlocks);
+            }
+        }
+        return bounds;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("cellSize", cellSize)
+                .add("kernel", kernel)
+                .add("kernelRadius", kernelRadius)
+                .add("maxDensity", maxDensity)
+                .add("regions", regions.size())
+                .toString();
+    }
+
+    private Region getOrCreateRegion(int regionX, int regionZ)
+    {
+        final long key = ChunkPos.asLong(regionX, regionZ);
+        Region region = regions.get(key);
+        if (region == null)
+        {
+            region = new Region(regionX, regionZ);
+            regions.put(key, region);
+            bounds = null;
+        }
+        return region;
+    }
+
+    private void invalidateImages()
+    {
+        for (Region region : regions.values())
+        {
+            region.image = null;
+        }
+        markModified();
+    }
+
+    /**
+     * Colors a region's cells with the gradient.
+     */
+    private MapImage rasterize(Region region)
+    {
+        if (colorTable == null)
+        {
+            colorTable = createColorTable(gradient);
+        }
+
+        final int[] pixels = new int[REGION_SIZE * REGION_SIZE];
+        final float scale = (colorTable.length - 1) / maxDensity;
+        for (int i = 0; i < pixels.length; i++)
+        {
+            final float density = region.density[i];
+            if (density > 0)
+            {
+                pixels[i] = colorTable[(int) Math.min(colorTable.length - 1, density * scale)];
+            }
+        }
+
+        final BufferedImage image = new BufferedImage(REGION_SIZE, REGION_SIZE, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, REGION_SIZE, REGION_SIZE, pixels, 0, REGION_SIZE);
+        return new MapImage(image);
+    }
+
+    /**
+     * Blends the colors of a gradient into a table of 256 colors.
+     */
+    private static int[] createColorTable(int[] gradient)
+    {
+        final int[] table = new int[256];
+        final int segments = gradient.length - 1;
+        for (int i = 0; i < table.length; i++)
+        {
+            final float position = i * segments / (float) (table.length - 1);
+            final int segment = Math.min(segments - 1, (int) position);
+            final float t = position - segment;
+            final int from = gradient[segment];
+            final int to = gradient[segment + 1];
+            int color = 0;
+            for (int shift = 0; shift < 32; shift += 8)
+            {
+                final int a = (from >>> shift) & 0xff;
+                final int b = (to >>> shift) & 0xff;
+                color |= Math.round(a + (b - a) * t) << shift;
+            }
+            table[i] = color;
+        }
+        return table;
+    }
+
+    /**
+     * How the weight of a point is spread to the cells around it.  Weights are scaled to add up to 1, so every
+     * point adds the same total density whatever the kernel and radius.
+     */
+    public enum Kernel
+    {
+        /**
+         * Every cell within the radius gets the same weight.
+         */
+        Flat,
+
+        /**
+         * Weight falls off linearly to nothing at the radius, so only cells nearer than the radius get any.
+         */
+        Linear,
+
+        /**
+         * Weight falls off as a bell curve, with the radius at about two standard deviations.
+         */
+        Gaussian;
+
+        /**
+         * Gets the weight of each cell in a square around the point's cell, by row.
+         *
+         * @param radius how many cells around the point's cell
+         * @return the weights, which add up to 1
+         */
+        float[] getWeights(int radius)
+        {
+            final int size = radius * 2 + 1;
+            final float[] weights = new float[size * size];
+            final double sigma = Math.max(0.5, radius / 2.0);
+            double total = 0;
+            for (int dz = -radius; dz <= radius; dz++)
+            {
+                for (int dx = -radius; dx <= radius; dx++)
+                {
+                    final double distance = Math.sqrt(dx * dx + dz * dz);
+                    double weight = 0;
+                    if (distance <= radius)
+                    {
+                        switch (this)
+                        {
+                            case Flat:
+                                weight = 1;
+                                break;
+                            case Linear:
+                                // A radius of 0 is just the point's cell
+                                weight = radius == 0 ? 1 : 1 - distance / radius;
+                                break;
+                            case Gaussian:
+                                weight = Math.exp(-distance * distance / (2 * sigma * sigma));
+                                break;
+                        }
+                    }
+                    weights[(dz + radius) * size + dx + radius] = (float) weight;
+                    total += weight;
+                }
+            }
+            for (int i = 0; i < weights.length; i++)
+            {
+                weights[i] /= total;
+            }
+            return weights;
+        }
+    }
+
+    /**
+     * Receives the images of regions from {@link #forEachRegion(AABB, RegionConsumer)}.
+     */
+    @FunctionalInterface
+    public interface RegionConsumer
+    {
+        /**
+         * Receives a region, to be drawn like an {@link ImageOverlay} between its corners.
+         *
+         * @param minX  block x of the north-west corner
+         * @param minZ  block z of the north-west corner
+         * @param maxX  block x of the south-east corner
+         * @param maxZ  block z of the south-east corner
+         * @param image the image, with a pixel per cell
+         */
+        void accept(long minX, long minZ, long maxX, long maxZ, MapImage image);
+    }
+
+    /**
+     * The densities of a region of cells, by z then x, and the image made from them.
+     */
+    private static class Region
+    {
+        final int regionX;
+        final int regionZ;
+        final float[] density = new float[REGION_SIZE * REGION_SIZE];
+        float maxDensity;
+        MapImage image;
+
+        Region(int regionX, int regionZ)
+        {
+            this.regionX = regionX;
+            this.regionZ = regionZ;
+        }
+    }
+}
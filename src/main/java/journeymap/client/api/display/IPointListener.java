@@ -0,0 +1,66 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.display;
+
+import journeymap.client.api.util.UIState;
+import net.minecraft.core.BlockPos;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Interface for receiving user events related to the points of a {@link MultiPointOverlay}.  Each event gives the
+ * index of the point under the mouse, which is the frontmost point if icons overlap.
+ */
+public interface IPointListener
+{
+    /**
+     * Called when the mouse moves over a point's icon.
+     *
+     * @param mapState      current UIState of the UI where the overlay is active.
+     * @param mousePosition screen coordinates of the mouse
+     * @param blockPosition the block position under the mouse
+     * @param pointIndex    the index of the point
+     */
+    void onPointMouseMove(UIState mapState, Point2D.Double mousePosition, BlockPos blockPosition, int pointIndex);
+
+    /**
+     * Called when the mouse first leaves a point's icon.
+     *
+     * @param mapState      current UIState of the UI where the overlay is active.
+     * @param mousePosition screen coordinates of the mouse
+     * @param blockPosition the block position under the mouse
+     * @param pointIndex    the index of the point
+     */
+    void onPointMouseOut(UIState mapState, Point2D.Double mousePosition, BlockPos blockPosition, int pointIndex);
+
+    /**
+     * Called when the mouse is clicked on a point's icon.
+     *
+     * @param mapState      current UIState of the UI where the overlay is active.
+     * @param mousePosition screen coordinates of the mouse
+     * @param blockPosition the block position under the mouse
+     * @param pointIndex    the index of the point
+     * @param button        the mouse button clicked
+     * @param doubleClick   true if the mouse button was double-clicked
+     * @return true if click event can bubble up to other overlays which occupy the same area.
+     */
+    boolean onPointClick(UIState mapState, Point2D.Double mousePosition, BlockPos blockPosition, int pointIndex, int button, boolean doubleClick);
+}
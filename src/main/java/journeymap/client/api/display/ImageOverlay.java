@@ -21,7 +21,9 @@
 package journeymap.client.api.display;
 
 import journeymap.client.api.model.MapImage;
+import journeymap.client.api.util.Fingerprint;
 import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.AABB;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -75,6 +77,7 @@ public final class ImageOverlay extends Overlay
     public ImageOverlay setNorthWestPoint(BlockPos northWestPoint)
     {
         this.northWestPoint = northWestPoint;
+        markModified();
         return this;
     }
 
@@ -95,6 +98,7 @@ public final class ImageOverlay extends Overlay
     public ImageOverlay setSouthEastPoint(BlockPos southEastPoint)
     {
         this.southEastPoint = southEastPoint;
+        markModified();
         return this;
     }
 
@@ -117,9 +121,29 @@ public final class ImageOverlay extends Overlay
     public ImageOverlay setImage(MapImage image)
     {
         this.image = image;
+        markModified();
         return this;
     }
 
+    @Override
+    protected void addFingerprint(Fingerprint fingerprint)
+    {
+        super.addFingerprint(fingerprint);
+        fingerprint.add(northWestPoint).add(southEastPoint).add(image);
+    }
+
+    @Override
+    public long getRevision()
+    {
+        return Math.max(super.getRevision(), image.getRevision());
+    }
+
+    @Override
+    public AABB getBounds()
+    {
+        return new AABB(northWestPoint, southEastPoint);
+    }
+
     @Override
     public String toString()
     {
@@ -21,7 +21,9 @@
 package journeymap.client.api.display;
 
 import journeymap.client.api.model.MapImage;
+import journeymap.client.api.util.Fingerprint;
 import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.AABB;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -73,6 +75,7 @@ public final class MarkerOverlay extends Overlay
     public MarkerOverlay setPoint(net.minecraft.core.BlockPos point)
     {
         this.point = point;
+        markModified();
         return this;
     }
 
@@ -95,9 +98,37 @@ public final class MarkerOverlay extends Overlay
     public MarkerOverlay setIcon(MapImage icon)
     {
         this.icon = icon;
+        markModified();
         return this;
     }
 
+    @Override
+    protected void addFingerprint(Fingerprint fingerprint)
+    {
+        super.addFingerprint(fingerprint);
+        fingerprint.add(point).add(icon);
+    }
+
+    @Override
+    public long getRevision()
+    {
+        return Math.max(super.getRevision(), icon.getRevision());
+    }
+
+    /**
+     * Gets the block bounds of the marker's point.  The icon isn't included, since its size in blocks depends on
+     * the zoom level, so a marker just outside an area can still have its icon drawn inside it.  Pad areas by
+     * the icon's display size divided by {@link journeymap.client.api.util.UIState#blockSize} when looking
+     * for markers to draw.
+     *
+     * @return bounds
+     */
+    @Override
+    public AABB getBounds()
+    {
+        return new AABB(point, point);
+    }
+
     @Override
     public String toString()
     {
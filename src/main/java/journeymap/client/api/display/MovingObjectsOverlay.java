@@ -0,0 +1,473 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.display;
+
+import journeymap.client.api.model.MapImage;
+import journeymap.client.api.util.Fingerprint;
+import journeymap.client.api.util.UIState;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A MovingObjects overlay shows many objects which move every tick, such as party members, carts or
+ * projectiles, with the same icon.  Use it in place of calling {@link MarkerOverlay#setPoint} and
+ * {@link Overlay#flagForRerender()} on a marker for each object every tick.
+ * <p>
+ * Each object has a handle from {@link #add(double, double, double)}, and its position and heading are kept in
+ * arrays indexed by handle, so moving an object with {@link #setPosition(int, double, double, double)}
+ * doesn't allocate or change the overlay's revision.  After moving objects for a tick, call {@link #publish()}
+ * to pass the positions to the renderer.  Moves don't need {@link journeymap.client.api.IClientAPI#show}, so
+ * {@link #getBounds()} covers the whole dimension rather than where the objects were when it was shown, and
+ * {@link #getObjectBounds()} has the bounds of the objects last published.
+ * <p>
+ * Published positions go through three buffers swapped atomically, so the thread moving objects and the thread
+ * drawing them never wait on each other.  Each buffer has the positions of two ticks, so the renderer can draw
+ * objects between them with {@link #forEachObject(float, ObjectConsumer)}.
+ * <p>
+ * The methods which add, move, remove and publish objects must be called from one thread, and
+ * {@link #forEachObject(float, ObjectConsumer)} and {@link #getObjectAt(UIState, BlockPos)} from one thread, which
+ * may be a different one.
+ * {@link #getObjectBounds()} may be called from any thread.
+ * <p>
+ * Setters use the Builder pattern so they can be chained.
+ * <p>
+ * Note that like all Displayables, simply changing this object doesn't guarantee the player will get the changes.
+ * You must call {@link journeymap.client.api.IClientAPI#show(Displayable)} in order for the changes to take effect
+ * in JourneyMap.
+ */
+@ParametersAreNonnullByDefault
+public final class MovingObjectsOverlay extends Overlay
+{
+    private MapImage icon;
+
+    // Positions and headings by handle, as moved and as last published
+    private double[] x = new double[16];
+    private double[] z = new double[16];
+    private double[] heading = new double[16];
+    private boolean[] active = new boolean[16];
+    private double[] publishedX = new double[16];
+    private double[] publishedZ = new double[16];
+    private double[] publishedHeading = new double[16];
+
+    // Handles of removed objects to reuse, and one past the highest handle in use
+    private int[] freeHandles = new int[16];
+    private int freeCount;
+    private int handleCount;
+    private int objectCount;
+    private long publishedSequence;
+    private transient volatile AABB objectBounds;
+
+    // Frames being written, ready to be read, and being read
+    private transient Frame back = new Frame();
+    private final transient AtomicReference<Frame> ready = new AtomicReference<>(new Frame());
+    private transient Frame front = new Frame();
+
+    /**
+     * Constructor.
+     *
+     * @param modId     Your mod id.
+     * @param displayId A unique id for the overlay (scoped to your mod) which can be used to remove/update it.
+     * @param dimension The dimension of the objects.
+     * @param icon      The icon to display at every object, rotated by its heading.
+     */
+    public MovingObjectsOverlay(String modId, String displayId, ResourceKey<Level> dimension, MapImage icon)
+    {
+        super(modId, displayId);
+        setDimension(dimension);
+        setIcon(icon);
+    }
+
+    /**
+     * Icon to display at every object.
+     *
+     * @return icon
+     */
+    public MapImage getIcon()
+    {
+        return icon;
+    }
+
+    /**
+     * Sets the icon to display at every object, rotated by its heading.
+     *
+     * @param icon object image
+     * @return this
+     */
+    public MovingObjectsOverlay setIcon(MapImage icon)
+    {
+        this.icon = icon;
+        markModified();
+        return this;
+    }
+
+    /**
+     * Adds an object.  It will be drawn after the next {@link #publish()}, without moving from the previous tick.
+     *
+     * @param x       block x
+     * @param z       block z
+     * @param heading degrees clockwise from north
+     * @return the handle of the object
+     */
+    public int add(double x, double z, double heading)
+    {
+        final int handle;
+        if (freeCount > 0)
+        {
+            handle = freeHandles[--freeCount];
+        }
+        else
+        {
+            if (handleCount == this.x.length)
+            {
+                grow(handleCount * 2);
+            }
+            handle = handleCount++;
+        }
+
+        this.active[handle] = true;
+        this.x[handle] = publishedX[handle] = x;
+        this.z[handle] = publishedZ[handle] = z;
+        this.heading[handle] = publishedHeading[handle] = heading;
+        objectCount++;
+        return handle;
+    }
+
+    /**
+     * Moves an object.
+     *
+     * @param handle  the handle of the object
+     * @param x       block x
+     * @param z       block z
+     * @param heading degrees clockwise from north
+     * @throws IllegalArgumentException if the handle isn't of an object
+     */
+    public void setPosition(int handle, double x, double z, double heading)
+    {
+        checkHandle(handle);
+        this.x[handle] = x;
+        this.z[handle] = z;
+        this.heading[handle] = heading;
+    }
+
+    /**
+     * Removes an object.  Its handle may be returned by a later {@link #add(double, double, double)}.
+     *
+     * @param handle the handle of the object
+     * @throws IllegalArgumentException if the handle isn't of an object
+     */
+    public void remove(int handle)
+    {
+        checkHandle(handle);
+        active[handle] = false;
+        if (freeCount == freeHandles.length)
+        {
+            freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+        }
+        freeHandles[freeCount++] = handle;
+        objectCount--;
+    }
+
+    /**
+     * Removes all objects.
+     */
+    public void clearObjects()
+    {
+        Arrays.fill(active, 0, handleCount, false);
+        handleCount = 0;
+        freeCount = 0;
+        objectCount = 0;
+    }
+
+    /**
+     * Whether a handle is of an object which hasn't been removed.
+     *
+     * @param handle the handle
+     * @return true if it is
+     */
+    public boolean isActive(int handle)
+    {
+        return handle >= 0 && handle < handleCount && active[handle];
+    }
+
+    /**
+     * Gets the number of objects.
+     *
+     * @return the count
+     */
+    public int getObjectCount()
+    {
+        return objectCount;
+    }
+
+    /**
+     * Passes the positions of all objects to the renderer, as the end of a tick.  Objects move from the
+     * positions of the previous publish to these.
+     */
+    public void publish()
+    {
+        final Frame frame = back;
+        final int count = handleCount;
+        frame.ensureCapacity(count);
+        System.arraycopy(publishedX, 0, frame.previousX, 0, count);
+        System.arraycopy(publishedZ, 0, frame.previousZ, 0, count);
+        System.arraycopy(publishedHeading, 0, frame.previousHeading, 0, count);
+        System.arraycopy(x, 0, frame.x, 0, count);
+        System.arraycopy(z, 0, frame.z, 0, count);
+        System.arraycopy(heading, 0, frame.heading, 0, count);
+        System.arraycopy(active, 0, frame.active, 0, count);
+        System.arraycopy(x, 0, publishedX, 0, count);
+        System.arraycopy(z, 0, publishedZ, 0, count);
+        System.arraycopy(heading, 0, publishedHeading, 0, count);
+
+        double minX = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++)
+        {
+            if (active[i])
+            {
+                minX = Math.min(minX, Math.min(x[i], frame.previousX[i]));
+                minZ = Math.min(minZ, Math.min(z[i], frame.previousZ[i]));
+                maxX = Math.max(maxX, Math.max(x[i], frame.previousX[i]));
+                maxZ = Math.max(maxZ, Math.max(z[i], frame.previousZ[i]));
+            }
+        }
+        frame.count = count;
+        frame.sequence = ++publishedSequence;
+        objectBounds = minX > maxX ? null : new AABB(minX, 0, minZ, maxX, 0, maxZ);
+
+        back = ready.getAndSet(frame);
+    }
+
+    /**
+     * Passes the published objects to a consumer, placed between their positions of the last two publishes.
+     *
+     * @param partialTick how far from the previous positions to the latest, from 0 to 1
+     * @param consumer    the consumer
+     */
+    public void forEachObject(float partialTick, ObjectConsumer consumer)
+    {
+        final Frame frame = acquire();
+        for (int i = 0; i < frame.count; i++)
+        {
+            if (frame.active[i])
+            {
+                final double previousHeading = frame.previousHeading[i];
+                final double turn = ((frame.heading[i] - previousHeading) % 360 + 540) % 360 - 180;
+                consumer.accept(i,
+                        frame.previousX[i] + (frame.x[i] - frame.previousX[i]) * partialTick,
+                        frame.previousZ[i] + (frame.z[i] - frame.previousZ[i]) * partialTick,
+                        previousHeading + turn * partialTick);
+            }
+        }
+    }
+
+    /**
+     * Finds the object whose icon covers a block position at the zoom level of a UI, using the display size and
+     * anchors of the icon at the object's latest published position.  Where icons overlap, the object with the
+     * highest handle, which is drawn last, is found.  Icon rotation is not taken into account.
+     * <p>
+     * This reads the same buffer as {@link #forEachObject(float, ObjectConsumer)}, so it must be called from the
+     * thread which draws the objects.
+     *
+     * @param uiState  the state of the UI
+     * @param blockPos the block position
+     * @return the handle of the object, or -1 if there is none
+     */
+    public int getObjectAt(UIState uiState, BlockPos blockPos)
+    {
+        final Frame frame = acquire();
+        if (frame.count == 0)
+        {
+            return -1;
+        }
+
+        // Offset of the block's center from each object, in pixels, that is within the icon
+        final double minPixelX = -icon.getAnchorX();
+        final double maxPixelX = icon.getDisplayWidth() - icon.getAnchorX();
+        final double minPixelZ = -icon.getAnchorY();
+        final double maxPixelZ = icon.getDisplayHeight() - icon.getAnchorY();
+        final double x = blockPos.getX() + .5;
+        final double z = blockPos.getZ() + .5;
+        for (int i = frame.count - 1; i >= 0; i--)
+        {
+            if (frame.active[i])
+            {
+                final double pixelX = (x - frame.x[i]) * uiState.blockSize;
+                final double pixelZ = (z - frame.z[i]) * uiState.blockSize;
+                if (pixelX >= minPixelX && pixelX <= maxPixelX && pixelZ >= minPixelZ && pixelZ <= maxPixelZ)
+                {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets bounds covering the whole dimension.  Objects move without
+     * {@link journeymap.client.api.IClientAPI#show(Displayable)}, so bounds kept from when the overlay was shown
+     * would soon be out of date.
+     *
+     * @return bounds
+     */
+    @Override
+    public AABB getBounds()
+    {
+        return new AABB(-Level.MAX_LEVEL_SIZE, 0, -Level.MAX_LEVEL_SIZE, Level.MAX_LEVEL_SIZE, 0, Level.MAX_LEVEL_SIZE);
+    }
+
+    /**
+     * Gets the block bounds of the objects at their last two published positions.
+     *
+     * @return bounds, or null if nothing has been published or there were no objects
+     */
+    @Nullable
+    public AABB getObjectBounds()
+    {
+        return objectBounds;
+    }
+
+    /**
+     * Adds the icon and how many times the objects have been published, so showing the overlay again after
+     * publishing isn't skipped.
+     *
+     * @param fingerprint the fingerprint
+     */
+    @Override
+    protected void addFingerprint(Fingerprint fingerprint)
+    {
+        super.addFingerprint(fingerprint);
+        fingerprint.add(icon).add(publishedSequence);
+    }
+
+    /**
+     * Publishing doesn't change the revision, so the fingerprint is computed every time.  It has no objects in
+     * it, so that is cheap.
+     *
+     * @return 0
+     */
+    @Override
+    protected long getFingerprintRevision()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getRevision()
+    {
+        return Math.max(super.getRevision(), icon.getRevision());
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("icon", icon)
+                .add("objects", objectCount)
+                .toString();
+    }
+
+    /**
+     * Swaps the frame being read for the ready one, if that is newer.
+     */
+    private Frame acquire()
+    {
+        if (ready.get().sequence > front.sequence)
+        {
+            front = ready.getAndSet(front);
+        }
+        return front;
+    }
+
+    private void checkHandle(int handle)
+    {
+        if (!isActive(handle))
+        {
+            throw new IllegalArgumentException("Not a handle of a moving object: " + handle);
+        }
+    }
+
+    private void grow(int capacity)
+    {
+        x = Arrays.copyOf(x, capacity);
+        z = Arrays.copyOf(z, capacity);
+        heading = Arrays.copyOf(heading, capacity);
+        active = Arrays.copyOf(active, capacity);
+        publishedX = Arrays.copyOf(publishedX, capacity);
+        publishedZ = Arrays.copyOf(publishedZ, capacity);
+        publishedHeading = Arrays.copyOf(publishedHeading, capacity);
+    }
+
+    /**
+     * Receives objects from {@link #forEachObject(float, ObjectConsumer)}.
+     */
+    @FunctionalInterface
+    public interface ObjectConsumer
+    {
+        /**
+         * Receives an object.
+         *
+         * @param handle  the handle of the object
+         * @param x       block x
+         * @param z       block z
+         * @param heading degrees clockwise from north
+         */
+        void accept(int handle, double x, double z, double heading);
+    }
+
+    /**
+     * The positions of the objects at one publish and the one before it.
+     */
+    private static class Frame
+    {
+        long sequence;
+        int count;
+        double[] previousX = new double[0];
+        double[] previousZ = new double[0];
+        double[] previousHeading = new double[0];
+        double[] x = new double[0];
+        double[] z = new double[0];
+        double[] heading = new double[0];
+        boolean[] active = new boolean[0];
+
+        void ensureCapacity(int capacity)
+        {
+            if (x.length < capacity)
+            {
+                final int length = Math.max(capacity, x.length * 2);
+                previousX = new double[length];
+                previousZ = new double[length];
+                previousHeading = new double[length];
+                x = new double[length];
+                z = new double[length];
+                heading = new double[length];
+                active = new boolean[length];
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.display;
+
+import journeymap.client.api.model.MapImage;
+import journeymap.client.api.util.Fingerprint;
+import journeymap.client.api.util.UIState;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.phys.AABB;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+
+/**
+ * A MultiPoint overlay shows many geographical points on the map with the same icon, such as ore veins or mob
+ * spawns, without a {@link MarkerOverlay}, {@link MapImage} and listener for each one.
+ * <p>
+ * The points are kept as a packed array of XZ coordinates, and may each have their own color in place of the
+ * icon's.  Since every point uses the same texture, the points are drawn together in one batch.  Renderers
+ * should use {@link #getPointCount()}, {@link #getX(int)}, {@link #getZ(int)} and {@link #getColor(int)}, which
+ * read the arrays without copying them.
+ * <p>
+ * Mouse events for single points go to an {@link IPointListener} with the point's index.  Points are found with
+ * a grid built when first needed after the points are set.
+ * <p>
+ * Setters use the Builder pattern so they can be chained.
+ * <p>
+ * Note that like all Displayables, simply changing this object doesn't guarantee the player will get the changes.
+ * You must call {@link journeymap.client.api.IClientAPI#show(Displayable)} in order for the changes to take effect
+ * in JourneyMap.
+ */
+@ParametersAreNonnullByDefault
+public final class MultiPointOverlay extends Overlay
+{
+    // Cells of the grid used to find points, 16 blocks across
+    private static final int CELL_SHIFT = 4;
+
+    private int[] xz;
+    @Nullable
+    private int[] colors;
+    private MapImage icon;
+    private IPointListener pointListener;
+    private AABB bounds;
+
+    // Grid of the points: sorted cell keys, where each cell's points start in cellPoints, and point indexes by cell
+    private transient long[] cellKeys;
+    private transient int[] cellStarts;
+    private transient int[] cellPoints;
+
+    /**
+     * Constructor.
+     *
+     * @param modId     Your mod id.
+     * @param displayId A unique id for the overlay (scoped to your mod) which can be used to remove/update it.
+     * @param xz        Interleaved x and z of each point: x0, z0, x1, z1, ... The array is copied.
+     * @param icon      The icon to display at every point.
+     */
+    public MultiPointOverlay(String modId, String displayId, int[] xz, MapImage icon)
+    {
+        super(modId, displayId);
+        setPoints(xz);
+        setIcon(icon);
+    }
+
+    /**
+     * Sets the points.  Any colors set for the previous points are cleared.
+     *
+     * @param xz Interleaved x and z of each point: x0, z0, x1, z1, ... The array is copied.
+     * @return this
+     * @throws IllegalArgumentException if the array isn't x,z pairs
+     */
+    public MultiPointOverlay setPoints(int[] xz)
+    {
+        if (xz.length % 2 != 0)
+        {
+            throw new IllegalArgumentException("MultiPointOverlay packed coordinates must be x,z pairs.");
+        }
+
+        this.xz = xz.clone();
+        this.colors = null;
+        this.cellKeys = null;
+
+        int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (int i = 0; i < xz.length; i += 2)
+        {
+            minX = Math.min(minX, xz[i]);
+            minZ = Math.min(minZ, xz[i + 1]);
+            maxX = Math.max(maxX, xz[i]);
+            maxZ = Math.max(maxZ, xz[i + 1]);
+        }
+        this.bounds = xz.length == 0 ? new AABB(0, 0, 0, 0, 0, 0) : new AABB(minX, 0, minZ, maxX, 0, maxZ);
+        markModified();
+        return this;
+    }
+
+    /**
+     * Gets the number of points.
+     *
+     * @return the count
+     */
+    public int getPointCount()
+    {
+        return xz.length / 2;
+    }
+
+    /**
+     * Gets the x of a point.
+     *
+     * @param index the point index
+     * @return block x
+     */
+    public int getX(int index)
+    {
+        return xz[index * 2];
+    }
+
+    /**
+     * Gets the z of a point.
+     *
+     * @param index the point index
+     * @return block z
+     */
+    public int getZ(int index)
+    {
+        return xz[index * 2 + 1];
+    }
+
+    /**
+     * Gets a copy of the packed coordinates.
+     *
+     * @return interleaved x and z of each point: x0, z0, x1, z1, ...
+     */
+    public int[] getPackedXZ()
+    {
+        return xz.clone();
+    }
+
+    /**
+     * Gets the color of a point's icon.
+     *
+     * @param index the point index
+     * @return rgb color, which is the icon's color unless colors have been set
+     */
+    public int getColor(int index)
+    {
+        return colors == null ? icon.getColor() : colors[index];
+    }
+
+    /**
+     * Whether the points have their own colors.
+     *
+     * @return true if colors have been set
+     */
+    public boolean hasColors()
+    {
+        return colors != null;
+    }
+
+    /**
+     * Sets a color for each point, used in place of the icon's color.
+     *
+     * @param colors rgb color of each point, or null to use the icon's color. The array is copied.
+     * @return this
+     * @throws IllegalArgumentException if there isn't one color per point
+     */
+    public MultiPointOverlay setColors(@Nullable int[] colors)
+    {
+        if (colors != null && colors.length != getPointCount())
+        {
+            throw new IllegalArgumentException("MultiPointOverlay needs one color per point.");
+        }
+        this.colors = colors == null ? null : colors.clone();
+        markModified();
+        return this;
+    }
+
+    /**
+     * Icon to display at every point.
+     *
+     * @return icon
+     */
+    public MapImage getIcon()
+    {
+        return icon;
+    }
+
+    /**
+     * Sets the icon to display at every point.
+     *
+     * @param icon point image
+     * @return this
+     */
+    public MultiPointOverlay setIcon(MapImage icon)
+    {
+        this.icon = icon;
+        markModified();
+        return this;
+    }
+
+    /**
+     * Gets the listener for mouse events on single points.
+     *
+     * @return the listener, or null if none
+     */
+    @Nullable
+    public IPointListener getPointListener()
+    {
+        return pointListener;
+    }
+
+    /**
+     * Sets the listener for mouse events on single points.
+     *
+     * @param pointListener the listener
+     * @return this
+     */
+    public MultiPointOverlay setPointListener(@Nullable IPointListener pointListener)
+    {
+        this.pointListener = pointListener;
+        markModified();
+        return this;
+    }
+
+    /**
+     * Finds the point whose icon covers a block position at the zoom level of a UI, using the display size and
+     * anchors of the icon.  Where icons overlap, the point drawn last, which has the highest index, is found.
+     *
+     * @param uiState  the state of the UI
+     * @param blockPos the block position
+     * @return the point index, or -1 if there is none
+     */
+    public int getPointAt(UIState uiState, BlockPos blockPos)
+    {
+        if (xz.length == 0)
+        {
+            return -1;
+        }
+        if (cellKeys == null)
+        {
+            buildGrid();
+        }
+
+        // Offset of the block position from each point's center, in pixels, that is within the icon
+        final double minPixelX = -icon.getAnchorX();
+        final double maxPixelX = icon.getDisplayWidth() - icon.getAnchorX();
+        final double minPixelZ = -icon.getAnchorY();
+        final double maxPixelZ = icon.getDisplayHeight() - icon.getAnchorY();
+        final int reach = (int) Math.ceil(Math.max(Math.max(-minPixelX, maxPixelX), Math.max(-minPixelZ, maxPixelZ))
+                / uiState.blockSize) + 1;
+
+        final int x = blockPos.getX();
+        final int z = blockPos.getZ();
+        int found = -1;
+        for (int cellZ = (z - reach) >> CELL_SHIFT; cellZ <= (z + reach) >> CELL_SHIFT; cellZ++)
+        {
+            for (int cellX = (x - reach) >> CELL_SHIFT; cellX <= (x + reach) >> CELL_SHIFT; cellX++)
+            {
+                final int cell = Arrays.binarySearch(cellKeys, ChunkPos.asLong(cellX, cellZ));
+                if (cell < 0)
+                {
+                    continue;
+                }
+                for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++)
+                {
+                    final int point = cellPoints[i];
+                    final double pixelX = (x - getX(point)) * uiState.blockSize;
+                    final double pixelZ = (z - getZ(point)) * uiState.blockSize;
+                    if (point > found && pixelX >= minPixelX && pixelX <= maxPixelX
+                            && pixelZ >= minPixelZ && pixelZ <= maxPixelZ)
+                    {
+                        found = point;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Sorts the points into cells.
+     */
+    private void buildGrid()
+    {
+        final int count = getPointCount();
+        final long[] pointKeys = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            pointKeys[i] = ChunkPos.asLong(getX(i) >> CELL_SHIFT, getZ(i) >> CELL_SHIFT);
+        }
+
+        final long[] sorted = pointKeys.clone();
+        Arrays.sort(sorted);
+        int cellCount = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (i == 0 || sorted[i] != sorted[i - 1])
+            {
+                sorted[cellCount++] = sorted[i];
+            }
+        }
+        final long[] keys = Arrays.copyOf(sorted, cellCount);
+
+        final int[] pointCells = new int[count];
+        final int[] starts = new int[cellCount + 1];
+        for (int i = 0; i < count; i++)
+        {
+            pointCells[i] = Arrays.binarySearch(keys, pointKeys[i]);
+            starts[pointCells[i] + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++)
+        {
+            starts[c + 1] += starts[c];
+        }
+
+        final int[] points = new int[count];
+        final int[] next = Arrays.copyOf(starts, cellCount);
+        for (int i = 0; i < count; i++)
+        {
+            points[next[pointCells[i]]++] = i;
+        }
+
+        this.cellKeys = keys;
+        this.cellStarts = starts;
+        this.cellPoints = points;
+    }
+
+    @Override
+    protected void addFingerprint(Fingerprint fingerprint)
+    {
+        super.addFingerprint(fingerprint);
+        fingerprint.add(xz).add(colors).add(icon).addIdentity(pointListener);
+    }
+
+    @Override
+    public long getRevision()
+    {
+        return Math.max(super.getRevision(), icon.getRevision());
+    }
+
+    @Override
+    public AABB getBounds()
+    {
+        return bounds;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("icon", icon)
+                .add("points", getPointCount())
+                .add("colors", hasColors())
+                .toString();
+    }
+}
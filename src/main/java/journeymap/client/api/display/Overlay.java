@@ -22,9 +22,12 @@ package journeymap.client.api.display;
 
 import com.google.common.base.MoreObjects;
 import journeymap.client.api.model.TextProperties;
+import journeymap.client.api.util.ActivationMask;
+import journeymap.client.api.util.Fingerprint;
 import journeymap.client.api.util.UIState;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -36,6 +39,8 @@ import java.util.EnumSet;
 @ParametersAreNonnullByDefault
 public abstract class Overlay extends Displayable
 {
+    private static final int MASK_ENCODED = 1 << 31;
+
     protected String overlayGroupName;
     protected String title;
     protected String label;
@@ -48,6 +53,9 @@ public abstract class Overlay extends Displayable
     protected TextProperties textProperties = new TextProperties();
     protected IOverlayListener overlayListener;
     protected boolean needsRerender = true;
+    // Encoded when first needed and flagged with MASK_ENCODED, so a deserialized mask is never trusted
+    protected transient int activationMask;
+    protected transient long revision = nextRevision();
 
     /**
      * Constructor.
@@ -79,6 +87,7 @@ public abstract class Overlay extends Displayable
     public Overlay setDimension(ResourceKey<Level> dimension)
     {
         this.dimension = dimension;
+        markModified();
         return this;
     }
 
@@ -101,6 +110,7 @@ public abstract class Overlay extends Displayable
     public Overlay setOverlayGroupName(String overlayGroupName)
     {
         this.overlayGroupName = overlayGroupName;
+        markModified();
         return this;
     }
 
@@ -123,6 +133,7 @@ public abstract class Overlay extends Displayable
     public Overlay setTitle(@Nullable String title)
     {
         this.title = title;
+        markModified();
         return this;
     }
 
@@ -145,6 +156,7 @@ public abstract class Overlay extends Displayable
     public Overlay setLabel(@Nullable String label)
     {
         this.label = label;
+        markModified();
         return this;
     }
 
@@ -167,6 +179,7 @@ public abstract class Overlay extends Displayable
     public Overlay setMinZoom(int minZoom)
     {
         this.minZoom = Math.max(0, minZoom);
+        updateActivationMask();
         return this;
     }
 
@@ -189,6 +202,7 @@ public abstract class Overlay extends Displayable
     public Overlay setMaxZoom(int maxZoom)
     {
         this.maxZoom = Math.min(8, maxZoom);
+        updateActivationMask();
         return this;
     }
 
@@ -213,6 +227,7 @@ public abstract class Overlay extends Displayable
     public Overlay setDisplayOrder(int zIndex)
     {
         this.displayOrder = zIndex;
+        markModified();
         return this;
     }
 
@@ -235,6 +250,7 @@ public abstract class Overlay extends Displayable
     public Overlay setTextProperties(TextProperties textProperties)
     {
         this.textProperties = textProperties;
+        markModified();
         return this;
     }
 
@@ -261,7 +277,8 @@ public abstract class Overlay extends Displayable
         {
             activeUIs = EnumSet.of(Context.UI.Any);
         }
-        this.activeUIs = activeUIs;
+        this.activeUIs = EnumSet.copyOf(activeUIs);
+        updateActivationMask();
         return this;
     }
 
@@ -287,10 +304,29 @@ public abstract class Overlay extends Displayable
         {
             activeMapTypes = EnumSet.of(Context.MapType.Any);
         }
-        this.activeMapTypes = activeMapTypes;
+        this.activeMapTypes = EnumSet.copyOf(activeMapTypes);
+        updateActivationMask();
         return this;
     }
 
+    /**
+     * Flags the activation mask to be re-encoded when next needed, and bumps the revision.  Must be called if
+     * the sets returned by {@link #getActiveUIs()} or {@link #getActiveMapTypes()} are modified directly rather
+     * than passed to their setters.
+     */
+    public void updateActivationMask()
+    {
+        this.activationMask = 0;
+        markModified();
+    }
+
+    /**
+     * The area of blocks covered by the overlay, used to find the overlays within a map view.
+     *
+     * @return the bounds
+     */
+    public abstract AABB getBounds();
+
     /**
      * Whether the overlay should be active for the given contexts.
      *
@@ -299,10 +335,24 @@ public abstract class Overlay extends Displayable
      */
     public boolean isActiveIn(UIState uiState)
     {
-        return ((uiState.active && this.dimension == uiState.dimension)
-                && (activeUIs.contains(Context.UI.Any) || activeUIs.contains(uiState.ui))
-                && (activeMapTypes.contains(Context.MapType.Any) || activeMapTypes.contains(uiState.mapType))
-                && (this.minZoom <= uiState.zoom && this.maxZoom >= uiState.zoom));
+        return uiState.active && this.dimension == uiState.dimension
+                && ActivationMask.isActive(getActivationMask(), uiState.activationBits);
+    }
+
+    /**
+     * The UIs, map types and zoom levels where the overlay should be active, encoded by {@link ActivationMask}.
+     *
+     * @return the mask
+     */
+    public int getActivationMask()
+    {
+        int mask = activationMask;
+        if ((mask & MASK_ENCODED) == 0)
+        {
+            mask = ActivationMask.of(activeUIs, activeMapTypes, minZoom, maxZoom) | MASK_ENCODED;
+            activationMask = mask;
+        }
+        return mask & ~MASK_ENCODED;
     }
 
     /**
@@ -324,6 +374,7 @@ public abstract class Overlay extends Displayable
     public Overlay setOverlayListener(@Nullable IOverlayListener overlayListener)
     {
         this.overlayListener = overlayListener;
+        markModified();
         return this;
     }
 
@@ -335,6 +386,7 @@ public abstract class Overlay extends Displayable
     public void flagForRerender()
     {
         needsRerender = true;
+        markModified();
     }
 
     /**
@@ -355,6 +407,60 @@ public abstract class Overlay extends Displayable
         return needsRerender;
     }
 
+    /**
+     * Modification counter, which increases whenever the overlay or the properties it contains are changed
+     * through their setters. A renderer can keep what it built for an overlay along with this value, and only
+     * rebuild it when the value has moved.  Changes made to the properties directly (such as a
+     * {@link journeymap.client.api.model.MapPolygon} being given new points) are not seen, so use
+     * {@link #flagForRerender()} after those.
+     *
+     * @return the revision
+     */
+    public long getRevision()
+    {
+        return Math.max(revision, textProperties.getRevision());
+    }
+
+    /**
+     * Uses the revision, so the fingerprint is computed again only after the overlay or its properties change.
+     *
+     * @return the revision
+     */
+    @Override
+    protected long getFingerprintRevision()
+    {
+        return getRevision();
+    }
+
+    /**
+     * Bumps the modification counter of the overlay itself.  Called by setters.
+     */
+    protected void markModified()
+    {
+        revision = nextRevision();
+    }
+
+    /**
+     * Adds the overlay's dimension, title, label, group, display order, activation and text properties.  The
+     * overlay listener is added by identity, since a new listener may behave differently.
+     *
+     * @param fingerprint the fingerprint
+     */
+    @Override
+    protected void addFingerprint(Fingerprint fingerprint)
+    {
+        fingerprint.add(dimension == null ? null : dimension.toString())
+                .add(title)
+                .add(label)
+                .add(overlayGroupName)
+                .add(displayOrder)
+                .add(getActivationMask())
+                .add(minZoom)
+                .add(maxZoom)
+                .add(textProperties)
+                .addIdentity(overlayListener);
+    }
+
     /**
      * Provides common output for toStringHelper() to subclasses
      *
@@ -22,9 +22,18 @@ package journeymap.client.api.display;
 
 import journeymap.client.api.model.MapPolygon;
 import journeymap.client.api.model.MapPolygonWithHoles;
+import journeymap.client.api.model.PolygonMetrics;
 import journeymap.client.api.model.ShapeProperties;
+import journeymap.client.api.model.Triangulation;
+import journeymap.client.api.util.ActivationMask;
+import journeymap.client.api.util.Fingerprint;
+import journeymap.client.api.util.PolygonClipper;
+import journeymap.client.api.util.PolygonSimplifier;
+import journeymap.client.api.util.PolygonTriangulator;
+import journeymap.client.api.util.UIState;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -43,10 +52,33 @@ import java.util.List;
 @ParametersAreNonnullByDefault
 public final class PolygonOverlay extends Overlay
 {
+    /**
+     * How far, in pixels, simplified outlines may be from the originals.
+     */
+    public static final double SIMPLIFY_TOLERANCE_PIXELS = 1;
+
     private MapPolygon outerArea;
     private List<MapPolygon> holes;
     private ShapeProperties shapeProperties;
 
+    // Simplified geometry per zoom level, and the revision of the points it was made from
+    private transient MapPolygonWithHoles[] simplified;
+    private transient long simplifiedRevision;
+
+    // Triangles filling the outer area and holes, and the revision of the points they were made from
+    private transient Triangulation triangulation;
+    private transient long triangulationRevision;
+
+    // Geometry clipped to a quantized viewport, the viewport's cell bounds, and the revision it was made from
+    private transient MapPolygonWithHoles clipped;
+    private transient boolean clippedValid;
+    private transient int clipMinX, clipMinZ, clipMaxX, clipMaxZ;
+    private transient long clippedRevision;
+
+    // Area, centroid and label point of the outer area and holes, and the revision they were computed from
+    private transient PolygonMetrics metrics;
+    private transient long metricsRevision;
+
     /**
      * Constructor.
      *
@@ -107,6 +139,11 @@ public final class PolygonOverlay extends Overlay
     public PolygonOverlay setOuterArea(MapPolygon outerArea)
     {
         this.outerArea = outerArea;
+        this.simplified = null;
+        this.triangulation = null;
+        this.clippedValid = false;
+        this.metrics = null;
+        markModified();
         return this;
     }
 
@@ -136,6 +173,11 @@ public final class PolygonOverlay extends Overlay
         {
             this.holes = new ArrayList<MapPolygon>(holes);
         }
+        this.simplified = null;
+        this.triangulation = null;
+        this.clippedValid = false;
+        this.metrics = null;
+        markModified();
         return this;
     }
 
@@ -147,6 +189,135 @@ public final class PolygonOverlay extends Overlay
         return setOuterArea(polygon.hull).setHoles(polygon.holes);
     }
 
+    /**
+     * Gets the outer area and holes simplified for a UI's zoom level, so that points closer together than
+     * {@link #SIMPLIFY_TOLERANCE_PIXELS} on screen aren't drawn.  The result is made by {@link PolygonSimplifier}
+     * when first needed, and kept until the outer area or holes change.
+     *
+     * @param uiState the UI
+     * @return the simplified polygon, which has as many holes as this overlay
+     */
+    public MapPolygonWithHoles getSimplified(UIState uiState)
+    {
+        final double tolerance = SIMPLIFY_TOLERANCE_PIXELS / uiState.blockSize;
+        final int zoom = uiState.zoom;
+        if (zoom < ActivationMask.MIN_ZOOM || zoom > ActivationMask.MAX_ZOOM)
+        {
+            return PolygonSimplifier.simplify(outerArea, holes, tolerance);
+        }
+
+        final long geometryRevision = getGeometryRevision();
+        if (simplified == null || simplifiedRevision != geometryRevision)
+        {
+            simplified = new MapPolygonWithHoles[ActivationMask.MAX_ZOOM - ActivationMask.MIN_ZOOM + 1];
+            simplifiedRevision = geometryRevision;
+        }
+
+        MapPolygonWithHoles polygon = simplified[zoom - ActivationMask.MIN_ZOOM];
+        if (polygon == null)
+        {
+            polygon = PolygonSimplifier.simplify(outerArea, holes, tolerance);
+            simplified[zoom - ActivationMask.MIN_ZOOM] = polygon;
+        }
+        return polygon;
+    }
+
+    /**
+     * Gets triangles which fill the outer area minus the holes, made by {@link PolygonTriangulator} when first
+     * needed and kept until the outer area or holes change, so the fill is only tessellated once per change.
+     *
+     * @return the triangles
+     */
+    public Triangulation getTriangulation()
+    {
+        final long geometryRevision = getGeometryRevision();
+        if (triangulation == null || triangulationRevision != geometryRevision)
+        {
+            triangulation = PolygonTriangulator.triangulate(outerArea, holes);
+            triangulationRevision = geometryRevision;
+        }
+        return triangulation;
+    }
+
+    /**
+     * Gets the outer area and holes clipped by {@link PolygonClipper} to the area around a UI's
+     * {@link UIState#blockBounds}, so that a polygon which is mostly off-screen is drawn with only the points
+     * near the screen.
+     * <p>
+     * The clip area is the block bounds rounded out to a grid whose cells are a quarter to a half of the view
+     * across, plus one cell on each side.  The result is kept while the view stays within the same cells, and
+     * until the outer area or holes change.
+     *
+     * @param uiState the UI
+     * @return the clipped polygon, the whole polygon if the UI has no block bounds, or null if the polygon
+     * is entirely outside the clip area
+     */
+    @Nullable
+    public MapPolygonWithHoles getClipped(UIState uiState)
+    {
+        final AABB view = uiState.blockBounds;
+        if (view == null)
+        {
+            return new MapPolygonWithHoles(outerArea, holes);
+        }
+
+        final double extent = Math.max(view.maxX - view.minX, view.maxZ - view.minZ);
+        final int cellSize = Math.max(16, Integer.highestOneBit((int) Math.min(extent, 1 << 30)) >> 1);
+        final int minX = ((int) Math.floor(view.minX / cellSize) - 1) * cellSize;
+        final int minZ = ((int) Math.floor(view.minZ / cellSize) - 1) * cellSize;
+        final int maxX = ((int) Math.floor(view.maxX / cellSize) + 2) * cellSize;
+        final int maxZ = ((int) Math.floor(view.maxZ / cellSize) + 2) * cellSize;
+
+        final long geometryRevision = getGeometryRevision();
+        if (!clippedValid || clippedRevision != geometryRevision
+                || minX != clipMinX || minZ != clipMinZ || maxX != clipMaxX || maxZ != clipMaxZ)
+        {
+            clipped = PolygonClipper.clip(outerArea, holes, minX, minZ, maxX, maxZ);
+            clippedValid = true;
+            clippedRevision = geometryRevision;
+            clipMinX = minX;
+            clipMinZ = minZ;
+            clipMaxX = maxX;
+            clipMaxZ = maxZ;
+        }
+        return clipped;
+    }
+
+    /**
+     * Gets the area, perimeter, centroid and label point of the outer area minus the holes, computed when first
+     * needed and kept until the outer area or holes change.  The label is centered on
+     * {@link PolygonMetrics#getLabelX()} and {@link PolygonMetrics#getLabelZ()}, shifted by the offsets in the
+     * {@link journeymap.client.api.model.TextProperties}, which keeps it inside the polygon and out of the holes.
+     *
+     * @return the metrics
+     */
+    public PolygonMetrics getMetrics()
+    {
+        final long geometryRevision = getGeometryRevision();
+        if (metrics == null || metricsRevision != geometryRevision)
+        {
+            metrics = PolygonMetrics.of(outerArea, holes);
+            metricsRevision = geometryRevision;
+        }
+        return metrics;
+    }
+
+    /**
+     * The latest revision of the points of the outer area and holes, which changes if they are set directly.
+     */
+    private long getGeometryRevision()
+    {
+        long geometryRevision = outerArea.getRevision();
+        if (holes != null)
+        {
+            for (MapPolygon hole : holes)
+            {
+                geometryRevision = Math.max(geometryRevision, hole.getRevision());
+            }
+        }
+        return geometryRevision;
+    }
+
     /**
      * Gets the shape properties used to display the polygons.
      *
@@ -166,9 +337,29 @@ public final class PolygonOverlay extends Overlay
     public PolygonOverlay setShapeProperties(ShapeProperties shapeProperties)
     {
         this.shapeProperties = shapeProperties;
+        markModified();
         return this;
     }
 
+    @Override
+    protected void addFingerprint(Fingerprint fingerprint)
+    {
+        super.addFingerprint(fingerprint);
+        fingerprint.add(shapeProperties).add(outerArea).add(holes);
+    }
+
+    @Override
+    public long getRevision()
+    {
+        return Math.max(Math.max(super.getRevision(), shapeProperties.getRevision()), getGeometryRevision());
+    }
+
+    @Override
+    public AABB getBounds()
+    {
+        return outerArea.getBounds();
+    }
+
     @Override
     public String toString()
     {
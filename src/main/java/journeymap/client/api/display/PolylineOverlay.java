@@ -0,0 +1,595 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.display;
+
+import journeymap.client.api.model.ShapeProperties;
+import journeymap.client.api.util.ActivationMask;
+import journeymap.client.api.util.Fingerprint;
+import journeymap.client.api.util.UIState;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+
+/**
+ * A Polyline overlay draws an open line through points on the map, such as a player's trail or a rail network,
+ * using the stroke of its {@link ShapeProperties}.  The fill properties aren't used.
+ * <p>
+ * Points are kept in a ring buffer, so adding a point to the end or trimming the oldest ones doesn't copy the
+ * rest, and a maximum number of points can be set so that a trail only keeps its newest points.
+ * <p>
+ * The line is simplified for each zoom level when first drawn at it, by fitting each run of points into a sleeve
+ * {@link PolygonOverlay#SIMPLIFY_TOLERANCE_PIXELS} wide on screen.  Only points added since then are fitted after
+ * that, so a growing trail doesn't simplify its whole length for every point.  After the oldest points are
+ * trimmed, the first segment drawn may stray further from the remaining points than the tolerance.
+ * <p>
+ * Setters use the Builder pattern so they can be chained.
+ * <p>
+ * Note that like all Displayables, simply changing this object doesn't guarantee the player will get the changes.
+ * You must call {@link journeymap.client.api.IClientAPI#show(Displayable)} in order for the changes to take effect
+ * in JourneyMap.
+ */
+@ParametersAreNonnullByDefault
+public final class PolylineOverlay extends Overlay
+{
+    // Below this tolerance in blocks, as with PolygonSimplifier, every point is drawn
+    private static final double MIN_TOLERANCE = 0.5;
+
+    private ShapeProperties shapeProperties;
+    private int maxPoints;
+
+    // Ring buffer of x,z pairs, the slot of the oldest point, and the sequence number of the oldest point
+    private int[] xz = new int[32];
+    private int head;
+    private int size;
+    private long firstSequence;
+
+    private transient Simplification[] simplified;
+    // Bounds of the points, which may still cover points trimmed since they were computed
+    private transient AABB bounds;
+    private transient int trimmedSinceBounds;
+
+    /**
+     * Constructor.
+     *
+     * @param modId           Your mod id.
+     * @param displayId       A unique id for the line (scoped within your mod) which can be used to remove/update it.
+     * @param dimension       The dimension of the line.
+     * @param shapeProperties The stroke of the line.
+     */
+    public PolylineOverlay(String modId, String displayId, ResourceKey<Level> dimension, ShapeProperties shapeProperties)
+    {
+        super(modId, displayId);
+        setDimension(dimension);
+        setShapeProperties(shapeProperties);
+    }
+
+    /**
+     * Gets the properties of the line's stroke.
+     *
+     * @return properties
+     */
+    public ShapeProperties getShapeProperties()
+    {
+        return shapeProperties;
+    }
+
+    /**
+     * Sets the properties of the line's stroke.
+     *
+     * @param shapeProperties properties
+     * @return this
+     */
+    public PolylineOverlay setShapeProperties(ShapeProperties shapeProperties)
+    {
+        this.shapeProperties = shapeProperties;
+        markModified();
+        return this;
+    }
+
+    /**
+     * Gets the most points the line keeps.
+     *
+     * @return the max, or 0 if unlimited
+     */
+    public int getMaxPoints()
+    {
+        return maxPoints;
+    }
+
+    /**
+     * Sets the most points the line keeps.  When a point is added past the max, the oldest point is trimmed.
+     *
+     * @param maxPoints the max, or 0 if unlimited
+     * @return this
+     */
+    public PolylineOverlay setMaxPoints(int maxPoints)
+    {
+        this.maxPoints = Math.max(0, maxPoints);
+        if (this.maxPoints > 0 && size > this.maxPoints)
+        {
+            trimOldest(size - this.maxPoints);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a point to the end of the line, trimming the oldest point if the line has the max number of points.
+     *
+     * @param x block x
+     * @param z block z
+     * @return this
+     */
+    public PolylineOverlay addPoint(int x, int z)
+    {
+        if (maxPoints > 0 && size >= maxPoints)
+        {
+            trimOldest(size - maxPoints + 1);
+        }
+        if (size * 2 == xz.length)
+        {
+            grow();
+        }
+
+        final int slot = ((head + size) % (xz.length / 2)) * 2;
+        xz[slot] = x;
+        xz[slot + 1] = z;
+        size++;
+
+        if (bounds != null)
+        {
+            bounds = new AABB(Math.min(bounds.minX, x), 0, Math.min(bounds.minZ, z),
+                    Math.max(bounds.maxX, x), 0, Math.max(bounds.maxZ, z));
+        }
+        markModified();
+        return this;
+    }
+
+    /**
+     * Adds a point to the end of the line, trimming the oldest point if the line has the max number of points.
+     *
+     * @param pos the block position
+     * @return this
+     */
+    public PolylineOverlay addPoint(BlockPos pos)
+    {
+        return addPoint(pos.getX(), pos.getZ());
+    }
+
+    /**
+     * Removes the oldest points from the start of the line.
+     *
+     * @param count how many points to remove
+     * @return this
+     */
+    public PolylineOverlay trimOldest(int count)
+    {
+        count = Math.min(count, size);
+        if (count <= 0)
+        {
+            return this;
+        }
+
+        head = (head + count) % (xz.length / 2);
+        size -= count;
+        firstSequence += count;
+        if (size == 0)
+        {
+            // Nothing is left to anchor the simplifications to
+            bounds = null;
+            simplified = null;
+        }
+        else
+        {
+            trimmedSinceBounds += count;
+        }
+        markModified();
+        return this;
+    }
+
+    /**
+     * Removes all points.
+     *
+     * @return this
+     */
+    public PolylineOverlay clearPoints()
+    {
+        return trimOldest(size);
+    }
+
+    /**
+     * Gets the number of points.
+     *
+     * @return the count
+     */
+    public int getPointCount()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the x of a point.
+     *
+     * @param index the point index, 0 for the oldest
+     * @return block x
+     */
+    public int getX(int index)
+    {
+        return xz[slot(index)];
+    }
+
+    /**
+     * Gets the z of a point.
+     *
+     * @param index the point index, 0 for the oldest
+     * @return block z
+     */
+    public int getZ(int index)
+    {
+        return xz[slot(index) + 1];
+    }
+
+    /**
+     * Passes every point to a consumer, oldest first.
+     *
+     * @param consumer the consumer
+     */
+    public void forEachPoint(PointConsumer consumer)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            final int slot = slot(i);
+            consumer.accept(xz[slot], xz[slot + 1]);
+        }
+    }
+
+    /**
+     * Passes the points of the line simplified for a UI's zoom level to a consumer, oldest first.  The first and
+     * last points are always passed.  The overlay must not be modified by the consumer.
+     *
+     * @param uiState  the UI
+     * @param consumer the consumer
+     */
+    public void forEachPoint(UIState uiState, PointConsumer consumer)
+    {
+        final double tolerance = PolygonOverlay.SIMPLIFY_TOLERANCE_PIXELS / uiState.blockSize;
+        if (tolerance < MIN_TOLERANCE || size <= 2)
+        {
+            forEachPoint(consumer);
+            return;
+        }
+
+        final int zoom = uiState.zoom;
+        final Simplification simplification;
+        if (zoom < ActivationMask.MIN_ZOOM || zoom > ActivationMask.MAX_ZOOM)
+        {
+            simplification = new Simplification(tolerance);
+        }
+        else
+        {
+            if (simplified == null)
+            {
+                simplified = new Simplification[ActivationMask.MAX_ZOOM - ActivationMask.MIN_ZOOM + 1];
+            }
+            if (simplified[zoom - ActivationMask.MIN_ZOOM] == null)
+            {
+                simplified[zoom - ActivationMask.MIN_ZOOM] = new Simplification(tolerance);
+            }
+            simplification = simplified[zoom - ActivationMask.MIN_ZOOM];
+        }
+        simplification.update();
+        simplification.forEachPoint(consumer);
+    }
+
+    /**
+     * Gets the distance from a position to the nearest segment of the line.
+     *
+     * @param x block x
+     * @param z block z
+     * @return the distance in blocks, or infinity if there are no points
+     */
+    public double getDistanceTo(double x, double z)
+    {
+        double minDistanceSquared = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++)
+        {
+            final double ax = getX(i);
+            final double az = getZ(i);
+            final double dx = i + 1 < size ? getX(i + 1) - ax : 0;
+            final double dz = i + 1 < size ? getZ(i + 1) - az : 0;
+            final double lengthSquared = dx * dx + dz * dz;
+            double t = lengthSquared == 0 ? 0 : ((x - ax) * dx + (z - az) * dz) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+            final double ex = ax + t * dx - x;
+            final double ez = az + t * dz - z;
+            minDistanceSquared = Math.min(minDistanceSquared, ex * ex + ez * ez);
+        }
+        return Math.sqrt(minDistanceSquared);
+    }
+
+    /**
+     * Adds the revision rather than the points, so showing the line after adding a point doesn't hash every
+     * point.  Another instance with the same points has a different fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     */
+    @Override
+    protected void addFingerprint(Fingerprint fingerprint)
+    {
+        super.addFingerprint(fingerprint);
+        fingerprint.add(getRevision());
+    }
+
+    @Override
+    public long getRevision()
+    {
+        return Math.max(super.getRevision(), shapeProperties.getRevision());
+    }
+
+    /**
+     * Gets the bounds of the points.  After the oldest points are trimmed the bounds may still cover them, until
+     * more points have been trimmed than are left and the bounds are computed again.
+     *
+     * @return the bounds
+     */
+    @Override
+    public AABB getBounds()
+    {
+        if (bounds == null || trimmedSinceBounds > size)
+        {
+            if (size == 0)
+            {
+                return new AABB(0, 0, 0, 0, 0, 0);
+            }
+            int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+            for (int i = 0; i < size; i++)
+            {
+                minX = Math.min(minX, getX(i));
+                minZ = Math.min(minZ, getZ(i));
+                maxX = Math.max(maxX, getX(i));
+                maxZ = Math.max(maxZ, getZ(i));
+            }
+            bounds = new AABB(minX, 0, minZ, maxX, 0, maxZ);
+            trimmedSinceBounds = 0;
+        }
+        return bounds;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("points", size)
+                .add("maxPoints", maxPoints)
+                .add("shapeProperties", shapeProperties)
+                .toString();
+    }
+
+    private int slot(int index)
+    {
+        return ((head + index) % (xz.length / 2)) * 2;
+    }
+
+    private int slotOfSequence(long sequence)
+    {
+        return slot((int) (sequence - firstSequence));
+    }
+
+    /**
+     * Doubles the ring buffer, moving the oldest point to the start.
+     */
+    private void grow()
+    {
+        final int[] grown = new int[xz.length * 2];
+        final int headSlot = head * 2;
+        System.arraycopy(xz, headSlot, grown, 0, xz.length - headSlot);
+        System.arraycopy(xz, 0, grown, xz.length - headSlot, headSlot);
+        xz = grown;
+        head = 0;
+    }
+
+    /**
+     * Receives points from {@link #forEachPoint(PointConsumer)}.
+     */
+    @FunctionalInterface
+    public interface PointConsumer
+    {
+        /**
+         * Receives a point.
+         *
+         * @param x block x
+         * @param z block z
+         */
+        void accept(int x, int z);
+    }
+
+    /**
+     * The points kept when simplifying the line at one tolerance, by sequence number.
+     * <p>
+     * From each kept point, the directions in which a line could be drawn to stay within the tolerance of every
+     * point after it form a wedge, narrowed by each point.  When a point falls outside the wedge, or back toward
+     * the kept point, the point before it is kept and a new wedge starts there.  Points are fitted once each, in
+     * order, and the wedge from the last kept point is carried over to the next update.
+     */
+    private class Simplification
+    {
+        private final double tolerance;
+        private long[] kept = new long[16];
+        private int keptStart;
+        private int keptEnd;
+        private long nextSequence;
+        private boolean hasAnchor;
+
+        private double anchorX;
+        private double anchorZ;
+        private double previousX;
+        private double previousZ;
+        private boolean hasWedge;
+        private double wedgeAngle;
+        private double wedgeMin;
+        private double wedgeMax;
+        private double furthest;
+
+        Simplification(double tolerance)
+        {
+            this.tolerance = tolerance;
+        }
+
+        void update()
+        {
+            // Start over if points were trimmed that haven't been fitted yet
+            if (nextSequence < firstSequence)
+            {
+                keptStart = keptEnd = 0;
+                hasAnchor = false;
+                nextSequence = firstSequence;
+            }
+
+            final long endSequence = firstSequence + size;
+            for (long sequence = nextSequence; sequence < endSequence; sequence++)
+            {
+                final int slot = slotOfSequence(sequence);
+                fit(sequence, xz[slot], xz[slot + 1]);
+            }
+            nextSequence = endSequence;
+
+            while (keptStart < keptEnd && kept[keptStart] < firstSequence)
+            {
+                keptStart++;
+            }
+        }
+
+        private void fit(long sequence, double x, double z)
+        {
+            if (!hasAnchor)
+            {
+                keep(sequence, x, z);
+                previousX = x;
+                previousZ = z;
+                return;
+            }
+
+            if (!narrow(x, z))
+            {
+                keep(sequence - 1, previousX, previousZ);
+                narrow(x, z);
+            }
+            previousX = x;
+            previousZ = z;
+        }
+
+        /**
+         * Narrows the wedge from the anchor to fit a point.
+         *
+         * @return false if the point doesn't fit
+         */
+        private boolean narrow(double x, double z)
+        {
+            final double dx = x - anchorX;
+            final double dz = z - anchorZ;
+            final double distance = Math.sqrt(dx * dx + dz * dz);
+            if (distance < furthest)
+            {
+                return false;
+            }
+            if (distance <= tolerance)
+            {
+                return true;
+            }
+
+            final double angle = Math.atan2(dz, dx);
+            final double halfWidth = Math.asin(tolerance / distance);
+            if (!hasWedge)
+            {
+                hasWedge = true;
+                wedgeAngle = angle;
+                wedgeMin = -halfWidth;
+                wedgeMax = halfWidth;
+            }
+            else
+            {
+                double offset = angle - wedgeAngle;
+                if (offset > Math.PI)
+                {
+                    offset -= 2 * Math.PI;
+                }
+                else if (offset < -Math.PI)
+                {
+                    offset += 2 * Math.PI;
+                }
+                if (offset < wedgeMin || offset > wedgeMax)
+                {
+                    return false;
+                }
+                wedgeMin = Math.max(wedgeMin, offset - halfWidth);
+                wedgeMax = Math.min(wedgeMax, offset + halfWidth);
+            }
+            furthest = Math.max(furthest, distance);
+            return true;
+        }
+
+        private void keep(long sequence, double x, double z)
+        {
+            if (keptEnd == kept.length)
+            {
+                if (keptStart > kept.length / 2)
+                {
+                    System.arraycopy(kept, keptStart, kept, 0, keptEnd - keptStart);
+                }
+                else
+                {
+                    kept = Arrays.copyOfRange(kept, keptStart, kept.length * 2 + keptStart);
+                }
+                keptEnd -= keptStart;
+                keptStart = 0;
+            }
+            kept[keptEnd++] = sequence;
+            hasAnchor = true;
+            anchorX = x;
+            anchorZ = z;
+            hasWedge = false;
+            furthest = 0;
+        }
+
+        void forEachPoint(PointConsumer consumer)
+        {
+            if (keptStart == keptEnd || kept[keptStart] != firstSequence)
+            {
+                final int slot = slotOfSequence(firstSequence);
+                consumer.accept(xz[slot], xz[slot + 1]);
+            }
+            for (int i = keptStart; i < keptEnd; i++)
+            {
+                final int slot = slotOfSequence(kept[i]);
+                consumer.accept(xz[slot], xz[slot + 1]);
+            }
+            final long lastSequence = firstSequence + size - 1;
+            if (keptStart == keptEnd || kept[keptEnd - 1] != lastSequence)
+            {
+                final int slot = slotOfSequence(lastSequence);
+                consumer.accept(xz[slot], xz[slot + 1]);
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ import com.google.common.collect.Lists;
 import com.google.gson.annotations.Since;
 import com.mojang.math.Vector3d;
 import journeymap.client.api.model.WaypointBase;
+import journeymap.client.api.util.Fingerprint;
 import net.minecraft.core.BlockPos;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.Level;
@@ -333,6 +334,19 @@ public class Waypoint extends WaypointBase<Waypoint>
         return displayDims;
     }
 
+    @Override
+    protected void addFingerprint(Fingerprint fingerprint)
+    {
+        super.addFingerprint(fingerprint);
+        fingerprint.add(dim)
+                .add(pos)
+                .add(group == null ? null : group.getGuid())
+                .add(getDisplayOrder())
+                .add(persistent)
+                .add(editable)
+                .add(enabled);
+    }
+
     @Override
     public int getDisplayOrder()
     {
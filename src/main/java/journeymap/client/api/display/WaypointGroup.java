@@ -3,6 +3,7 @@ package journeymap.client.api.display;
 import com.google.common.base.Objects;
 import com.google.gson.annotations.Since;
 import journeymap.client.api.model.WaypointBase;
+import journeymap.client.api.util.Fingerprint;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.UUID;
@@ -83,6 +84,13 @@ public class WaypointGroup extends WaypointBase<WaypointGroup>
         return this;
     }
 
+    @Override
+    protected void addFingerprint(Fingerprint fingerprint)
+    {
+        super.addFingerprint(fingerprint);
+        fingerprint.add(order).addIdentity(defaultDisplay);
+    }
+
     @Override
     public boolean equals(Object o)
     {
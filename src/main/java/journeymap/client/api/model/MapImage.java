@@ -74,10 +74,13 @@ public final class MapImage
     private Double displayHeight;
 
     @Since(1.1)
-    private Double anchorX;
+    private Double anchorX = 0d;
 
     @Since(1.1)
-    private Double anchorY;
+    private Double anchorY = 0d;
+
+    private transient long revision = Displayable.nextRevision();
+
     /**
      * Constructor.
      * <p>
@@ -177,6 +180,7 @@ public final class MapImage
     public MapImage setColor(int color)
     {
         this.color = Displayable.clampRGB(color);
+        markModified();
         return this;
     }
 
@@ -199,6 +203,7 @@ public final class MapImage
     public MapImage setOpacity(float opacity)
     {
         this.opacity = Displayable.clampOpacity(opacity);
+        markModified();
         return this;
     }
 
@@ -240,6 +245,7 @@ public final class MapImage
     public MapImage setAnchorX(double anchorX)
     {
         this.anchorX = anchorX;
+        markModified();
         return this;
     }
 
@@ -262,6 +268,7 @@ public final class MapImage
     public MapImage setAnchorY(double anchorY)
     {
         this.anchorY = anchorY;
+        markModified();
         return this;
     }
 
@@ -339,6 +346,7 @@ public final class MapImage
     public MapImage setRotation(int rotation)
     {
         this.rotation = rotation % 360;
+        markModified();
         return this;
     }
 
@@ -362,6 +370,7 @@ public final class MapImage
     public MapImage setDisplayWidth(double displayWidth)
     {
         this.displayWidth = displayWidth;
+        markModified();
         return this;
     }
 
@@ -385,9 +394,25 @@ public final class MapImage
     public MapImage setDisplayHeight(double displayHeight)
     {
         this.displayHeight = displayHeight;
+        markModified();
         return this;
     }
 
+    /**
+     * Modification counter, which increases whenever a setter is called.
+     *
+     * @return the revision
+     */
+    public long getRevision()
+    {
+        return revision;
+    }
+
+    private void markModified()
+    {
+        revision = Displayable.nextRevision();
+    }
+
     @Override
     public boolean equals(@Nullable Object o)
     {
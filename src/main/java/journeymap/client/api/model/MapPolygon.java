@@ -21,12 +21,16 @@
 package journeymap.client.api.model;
 
 import com.google.common.base.MoreObjects;
+import journeymap.client.api.display.Displayable;
 import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.AABB;
 
+import javax.annotation.Nullable;
+import java.util.AbstractList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * A MapPolygon is a sequence of at least 3 BlockPos. The first point must be the
@@ -34,14 +38,30 @@ import java.util.List;
  * counterclockwise.  The last point will be connected to the first when rendered.
  * <p>
  * Note that the actual list passed into the constructor isn't retained; the points
- * are copied into an unmodifiable list. If you need to update the points, pass in a new
- * list entirely.
+ * are copied into a packed array of XZ coordinates, with a single Y when all the points share one.
+ * {@link #getPoints()} is an unmodifiable view of that array. If you need to update the points,
+ * pass in a new list entirely.
+ * <p>
+ * Renderers and other code which visits every point should use {@link #getPointCount()},
+ * {@link #getX(int)} and {@link #getZ(int)}, which read the packed array without creating BlockPos objects.
  * <p>
  * Setters use the Builder pattern so they can be chained.
  */
 public final class MapPolygon
 {
-    private List<net.minecraft.core.BlockPos> points;
+    private int[] xz;
+    private int y;
+    @Nullable
+    private int[] ys;
+    /**
+     * Only read from JSON saved before the points were packed; converted by {@link #packed()} and then cleared.
+     */
+    @Nullable
+    private List<BlockPos> points;
+    private transient List<BlockPos> pointList;
+    private transient AABB bounds;
+    private transient PolygonMetrics metrics;
+    private transient long revision;
 
     /**
      * Constructor.
@@ -66,13 +86,31 @@ public final class MapPolygon
     }
 
     /**
-     * Gets an unmodifiable list of the points.
+     * Constructor using packed coordinates.
+     *
+     * @param xz Interleaved x and z of each point: x0, z0, x1, z1, ... See class description for details on ordering.
+     *           The array is copied.
+     * @param y  The y of every point.
+     * @throws IllegalArgumentException if conditions for a proper polygon aren't met.
+     */
+    public MapPolygon(int[] xz, int y)
+    {
+        setPoints(xz, y);
+    }
+
+    /**
+     * Gets an unmodifiable list of the points.  Each BlockPos is created when it is read from the list,
+     * so prefer {@link #getX(int)} and {@link #getZ(int)} when iterating many points.
      *
      * @return points
      */
     public List<BlockPos> getPoints()
     {
-        return points;
+        if (pointList == null)
+        {
+            pointList = new PointList(packed(), y, ys);
+        }
+        return pointList;
     }
 
     public MapPolygon setPoints(List<net.minecraft.core.BlockPos> points)
@@ -82,10 +120,184 @@ public final class MapPolygon
             throw new IllegalArgumentException("MapPolygon must have at least 3 points.");
         }
 
-        this.points = Collections.unmodifiableList(points);
+        final int[] xz = new int[points.size() * 2];
+        final int y = points.get(0).getY();
+        int[] ys = null;
+        for (int i = 0; i < points.size(); i++)
+        {
+            final BlockPos point = points.get(i);
+            xz[i * 2] = point.getX();
+            xz[i * 2 + 1] = point.getZ();
+            if (ys == null && point.getY() != y)
+            {
+                ys = new int[points.size()];
+                Arrays.fill(ys, 0, i, y);
+            }
+            if (ys != null)
+            {
+                ys[i] = point.getY();
+            }
+        }
+
+        return setPacked(xz, y, ys);
+    }
+
+    /**
+     * Sets the points using packed coordinates.
+     *
+     * @param xz Interleaved x and z of each point: x0, z0, x1, z1, ... The array is copied.
+     * @param y  The y of every point.
+     * @return this
+     * @throws IllegalArgumentException if conditions for a proper polygon aren't met.
+     */
+    public MapPolygon setPoints(int[] xz, int y)
+    {
+        if (xz.length % 2 != 0)
+        {
+            throw new IllegalArgumentException("MapPolygon packed coordinates must be x,z pairs.");
+        }
+        if (xz.length < 6)
+        {
+            throw new IllegalArgumentException("MapPolygon must have at least 3 points.");
+        }
+        return setPacked(xz.clone(), y, null);
+    }
+
+    private MapPolygon setPacked(int[] xz, int y, @Nullable int[] ys)
+    {
+        this.xz = xz;
+        this.y = y;
+        this.ys = ys;
+        this.points = null;
+        this.pointList = null;
+        this.bounds = null;
+        this.metrics = null;
+        this.revision = Displayable.nextRevision();
         return this;
     }
 
+    /**
+     * Gets the packed coordinates, first converting the points read from older JSON if there are any.
+     */
+    private int[] packed()
+    {
+        if (xz == null && points != null)
+        {
+            setPoints(points);
+        }
+        return xz;
+    }
+
+    /**
+     * Gets the number of points.
+     *
+     * @return the count
+     */
+    public int getPointCount()
+    {
+        return packed().length / 2;
+    }
+
+    /**
+     * Gets the x of a point.
+     *
+     * @param index the point index
+     * @return block x
+     */
+    public int getX(int index)
+    {
+        return packed()[index * 2];
+    }
+
+    /**
+     * Gets the y of a point.
+     *
+     * @param index the point index
+     * @return block y
+     */
+    public int getY(int index)
+    {
+        packed();
+        return ys == null ? y : ys[index];
+    }
+
+    /**
+     * Gets the z of a point.
+     *
+     * @param index the point index
+     * @return block z
+     */
+    public int getZ(int index)
+    {
+        return packed()[index * 2 + 1];
+    }
+
+    /**
+     * Gets a copy of the packed coordinates.
+     *
+     * @return interleaved x and z of each point: x0, z0, x1, z1, ...
+     */
+    public int[] getPackedXZ()
+    {
+        return packed().clone();
+    }
+
+    /**
+     * Gets the bounding box of the points, computed when first needed after the points are set.
+     *
+     * @return bounds
+     */
+    public AABB getBounds()
+    {
+        if (bounds == null)
+        {
+            bounds = computeBounds();
+        }
+        return bounds;
+    }
+
+    /**
+     * Gets the area, perimeter, centroid and label point of the polygon, computed when first needed after the
+     * points are set.
+     *
+     * @return the metrics
+     */
+    public PolygonMetrics getMetrics()
+    {
+        if (metrics == null)
+        {
+            metrics = PolygonMetrics.of(this, null);
+        }
+        return metrics;
+    }
+
+    /**
+     * Modification counter, which increases whenever the points are set.
+     *
+     * @return the revision
+     */
+    public long getRevision()
+    {
+        packed();
+        return revision;
+    }
+
+    private AABB computeBounds()
+    {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (int i = 0, count = getPointCount(); i < count; i++)
+        {
+            minX = Math.min(minX, getX(i));
+            minY = Math.min(minY, getY(i));
+            minZ = Math.min(minZ, getZ(i));
+            maxX = Math.max(maxX, getX(i));
+            maxY = Math.max(maxY, getY(i));
+            maxZ = Math.max(maxZ, getZ(i));
+        }
+        return new AABB(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
     /**
      * Iterates the points.
      *
@@ -93,14 +305,47 @@ public final class MapPolygon
      */
     public Iterator<net.minecraft.core.BlockPos> iterator()
     {
-        return points.iterator();
+        return getPoints().iterator();
     }
 
     @Override
     public String toString()
     {
         return MoreObjects.toStringHelper(this)
-                .add("points", points)
+                .add("points", getPoints())
                 .toString();
     }
+
+    /**
+     * Unmodifiable view of packed points, which keeps the arrays it was created with if the points are replaced.
+     */
+    private static class PointList extends AbstractList<BlockPos> implements RandomAccess
+    {
+        private final int[] xz;
+        private final int y;
+        private final int[] ys;
+
+        PointList(int[] xz, int y, @Nullable int[] ys)
+        {
+            this.xz = xz;
+            this.y = y;
+            this.ys = ys;
+        }
+
+        @Override
+        public BlockPos get(int index)
+        {
+            if (index < 0 || index >= size())
+            {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return new BlockPos(xz[index * 2], ys == null ? y : ys[index], xz[index * 2 + 1]);
+        }
+
+        @Override
+        public int size()
+        {
+            return xz.length / 2;
+        }
+    }
 }
@@ -13,6 +13,10 @@ public class MapPolygonWithHoles
     @Nonnull public final MapPolygon hull;
     @Nullable public final List<MapPolygon> holes;
 
+    // Metrics, and the revisions of the rings they were computed from
+    private transient PolygonMetrics metrics;
+    private transient long[] metricsRevisions;
+
     /**
      * Creates a MapPolygonWithHoles.
      *
@@ -25,4 +29,47 @@ public class MapPolygonWithHoles
         this.hull = hull;
         this.holes = holes;
     }
+
+    /**
+     * Gets the area, perimeter, centroid and label point of the polygon, computed when first needed and again
+     * after the points of the hull or a hole are set, or holes are added or removed.
+     *
+     * @return the metrics
+     */
+    @Nonnull
+    public PolygonMetrics getMetrics()
+    {
+        if (metrics == null || !isMetricsCurrent())
+        {
+            final long[] revisions = new long[1 + (holes == null ? 0 : holes.size())];
+            revisions[0] = hull.getRevision();
+            for (int i = 1; i < revisions.length; i++)
+            {
+                revisions[i] = holes.get(i - 1).getRevision();
+            }
+            metrics = PolygonMetrics.of(hull, holes);
+            metricsRevisions = revisions;
+        }
+        return metrics;
+    }
+
+    /**
+     * Whether the rings have the same revisions as when the metrics were computed.
+     */
+    private boolean isMetricsCurrent()
+    {
+        final int holeCount = holes == null ? 0 : holes.size();
+        if (metricsRevisions == null || metricsRevisions.length != 1 + holeCount || metricsRevisions[0] != hull.getRevision())
+        {
+            return false;
+        }
+        for (int i = 0; i < holeCount; i++)
+        {
+            if (metricsRevisions[i + 1] != holes.get(i).getRevision())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,373 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.model;
+
+import com.google.common.base.MoreObjects;
+import net.minecraft.world.phys.AABB;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measurements of a polygon and its holes in block coordinates: area, perimeter, bounds, centroid, and a point to
+ * anchor a label.
+ * <p>
+ * The label point is the middle of a wide span across the polygon, chosen to be far from the edges of the hull and
+ * its holes.  Unlike the centroid, it is never in a hole or outside a concave hull.
+ * <p>
+ * {@link MapPolygon#getMetrics()}, {@link MapPolygonWithHoles#getMetrics()} and
+ * {@link journeymap.client.api.display.PolygonOverlay#getMetrics()} compute these once per change of their
+ * points, so prefer those to {@link #of(MapPolygon, List)}.
+ */
+@ParametersAreNonnullByDefault
+public final class PolygonMetrics
+{
+    // Rows across the bounds searched for the widest span inside the polygon
+    private static final int LABEL_ROWS = 16;
+    // Times the best point is moved to the middle of the spans through it, down then across
+    private static final int LABEL_PASSES = 4;
+
+    private final double area;
+    private final double perimeter;
+    private final AABB bounds;
+    private final double centroidX;
+    private final double centroidZ;
+    private final double labelX;
+    private final double labelZ;
+
+    private PolygonMetrics(double area, double perimeter, AABB bounds, double centroidX, double centroidZ,
+                           double labelX, double labelZ)
+    {
+        this.area = area;
+        this.perimeter = perimeter;
+        this.bounds = bounds;
+        this.centroidX = centroidX;
+        this.centroidZ = centroidZ;
+        this.labelX = labelX;
+        this.labelZ = labelZ;
+    }
+
+    /**
+     * Measures a polygon and its holes.
+     *
+     * @param hull  the outer ring
+     * @param holes the holes, if any
+     * @return the metrics
+     */
+    public static PolygonMetrics of(MapPolygon hull, @Nullable List<MapPolygon> holes)
+    {
+        final int ringCount = 1 + (holes == null ? 0 : holes.size());
+        final MapPolygon[] rings = new MapPolygon[ringCount];
+        rings[0] = hull;
+        for (int i = 1; i < ringCount; i++)
+        {
+            rings[i] = holes.get(i - 1);
+        }
+
+        // Holes take away their area and its moment, whichever way they wind
+        double area = 0;
+        double momentX = 0;
+        double momentZ = 0;
+        double perimeter = 0;
+        for (int r = 0; r < ringCount; r++)
+        {
+            final MapPolygon ring = rings[r];
+            final int count = ring.getPointCount();
+            final double originX = ring.getX(0);
+            final double originZ = ring.getZ(0);
+            double ringArea = 0;
+            double ringX = 0;
+            double ringZ = 0;
+            for (int i = 0; i < count; i++)
+            {
+                final int j = (i + 1) % count;
+                final double ax = ring.getX(i) - originX;
+                final double az = ring.getZ(i) - originZ;
+                final double bx = ring.getX(j) - originX;
+                final double bz = ring.getZ(j) - originZ;
+                final double cross = ax * bz - bx * az;
+                ringArea += cross;
+                ringX += (ax + bx) * cross;
+                ringZ += (az + bz) * cross;
+                perimeter += Math.sqrt((bx - ax) * (bx - ax) + (bz - az) * (bz - az));
+            }
+
+            final double sign = (r == 0) == (ringArea >= 0) ? 1 : -1;
+            area += sign * ringArea / 2;
+            momentX += sign * (ringX / 6 + originX * ringArea / 2);
+            momentZ += sign * (ringZ / 6 + originZ * ringArea / 2);
+        }
+
+        final AABB bounds = hull.getBounds();
+        double centroidX = (bounds.minX + bounds.maxX) / 2;
+        double centroidZ = (bounds.minZ + bounds.maxZ) / 2;
+        if (area > 0)
+        {
+            centroidX = momentX / area;
+            centroidZ = momentZ / area;
+        }
+
+        final double[] label = findLabelPoint(rings, bounds, centroidX, centroidZ);
+        return new PolygonMetrics(Math.max(0, area), perimeter, bounds, centroidX, centroidZ, label[0], label[1]);
+    }
+
+    /**
+     * Gets the area inside the hull and outside the holes.
+     *
+     * @return square blocks
+     */
+    public double getArea()
+    {
+        return area;
+    }
+
+    /**
+     * Gets the total length of the edges of the hull and holes.
+     *
+     * @return blocks
+     */
+    public double getPerimeter()
+    {
+        return perimeter;
+    }
+
+    /**
+     * Gets the bounding box of the hull.
+     *
+     * @return bounds
+     */
+    public AABB getBounds()
+    {
+        return bounds;
+    }
+
+    /**
+     * Gets the x of the center of mass.  This can be outside the polygon or in a hole.
+     *
+     * @return block x
+     */
+    public double getCentroidX()
+    {
+        return centroidX;
+    }
+
+    /**
+     * Gets the z of the center of mass.  This can be outside the polygon or in a hole.
+     *
+     * @return block z
+     */
+    public double getCentroidZ()
+    {
+        return centroidZ;
+    }
+
+    /**
+     * Gets the x of the point to center a label on.
+     *
+     * @return block x
+     */
+    public double getLabelX()
+    {
+        return labelX;
+    }
+
+    /**
+     * Gets the z of the point to center a label on.
+     *
+     * @return block z
+     */
+    public double getLabelZ()
+    {
+        return labelZ;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                .add("area", area)
+                .add("perimeter", perimeter)
+                .add("centroidX", centroidX)
+                .add("centroidZ", centroidZ)
+                .add("labelX", labelX)
+                .add("labelZ", labelZ)
+                .toString();
+    }
+
+    /**
+     * Finds a point well inside the polygon to anchor a label.  Each of several rows across the bounds gives the
+     * middle of its widest span inside the polygon, and the one furthest from any edge, or the centroid if that is
+     * further, is then moved to the middle of the span through it down the polygon and across it in turn, for as
+     * long as that takes it further from the edges.  The middle of a span is always inside the hull and outside
+     * the holes.
+     */
+    private static double[] findLabelPoint(MapPolygon[] rings, AABB bounds, double centroidX, double centroidZ)
+    {
+        double bestX = centroidX;
+        double bestZ = centroidZ;
+        double bestDistance = signedDistance(centroidX, centroidZ, rings);
+        boolean found = bestDistance > 0;
+
+        final double height = bounds.maxZ - bounds.minZ;
+        for (int row = 0; row < LABEL_ROWS; row++)
+        {
+            final double z = bounds.minZ + (row + 0.5) * height / LABEL_ROWS;
+            final double[] crossings = crossings(rings, z, false);
+            double widest = 0;
+            double x = 0;
+            for (int i = 0; i + 1 < crossings.length; i += 2)
+            {
+                if (crossings[i + 1] - crossings[i] > widest)
+                {
+                    widest = crossings[i + 1] - crossings[i];
+                    x = (crossings[i] + crossings[i + 1]) / 2;
+                }
+            }
+            if (widest > 0)
+            {
+                // Not on an edge lying along the row
+                final double distance = signedDistance(x, z, rings);
+                if (distance > 0 && (!found || distance > bestDistance))
+                {
+                    bestX = x;
+                    bestZ = z;
+                    bestDistance = distance;
+                    found = true;
+                }
+            }
+        }
+        if (!found)
+        {
+            return new double[]{centroidX, centroidZ};
+        }
+
+        for (int pass = 0; pass < LABEL_PASSES * 2; pass++)
+        {
+            final boolean down = pass % 2 == 0;
+            final double middle = spanMiddle(crossings(rings, down ? bestX : bestZ, down), down ? bestZ : bestX);
+            if (Double.isNaN(middle))
+            {
+                continue;
+            }
+            final double x = down ? bestX : middle;
+            final double z = down ? middle : bestZ;
+            final double distance = signedDistance(x, z, rings);
+            if (distance > bestDistance)
+            {
+                bestX = x;
+                bestZ = z;
+                bestDistance = distance;
+            }
+        }
+        return new double[]{bestX, bestZ};
+    }
+
+    /**
+     * Gets where the edges cross a line, sorted, so each pair of crossings bounds a span inside the polygon.
+     *
+     * @param at   the z of a line across, or the x of a line down
+     * @param down whether the line runs down the polygon rather than across it
+     */
+    private static double[] crossings(MapPolygon[] rings, double at, boolean down)
+    {
+        double[] crossings = new double[8];
+        int count = 0;
+        for (MapPolygon ring : rings)
+        {
+            final int pointCount = ring.getPointCount();
+            for (int i = 0, j = pointCount - 1; i < pointCount; j = i++)
+            {
+                final double a = down ? ring.getX(i) : ring.getZ(i);
+                final double b = down ? ring.getX(j) : ring.getZ(j);
+                if ((a > at) != (b > at))
+                {
+                    final double aOther = down ? ring.getZ(i) : ring.getX(i);
+                    final double bOther = down ? ring.getZ(j) : ring.getX(j);
+                    if (count == crossings.length)
+                    {
+                        crossings = Arrays.copyOf(crossings, count * 2);
+                    }
+                    crossings[count++] = aOther + (at - a) * (bOther - aOther) / (b - a);
+                }
+            }
+        }
+        crossings = Arrays.copyOf(crossings, count);
+        Arrays.sort(crossings);
+        return crossings;
+    }
+
+    /**
+     * Gets the middle of the span holding a position, or NaN if it isn't strictly inside one.
+     */
+    private static double spanMiddle(double[] crossings, double position)
+    {
+        for (int i = 0; i + 1 < crossings.length; i += 2)
+        {
+            if (crossings[i] < position && position < crossings[i + 1])
+            {
+                return (crossings[i] + crossings[i + 1]) / 2;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Gets the distance from a point to the nearest edge, positive inside the polygon and negative outside it
+     * or in a hole.
+     */
+    private static double signedDistance(double x, double z, MapPolygon[] rings)
+    {
+        boolean inside = false;
+        double minDistanceSquared = Double.MAX_VALUE;
+        for (MapPolygon ring : rings)
+        {
+            final int count = ring.getPointCount();
+            for (int i = 0, j = count - 1; i < count; j = i++)
+            {
+                final double ax = ring.getX(i);
+                final double az = ring.getZ(i);
+                final double bx = ring.getX(j);
+                final double bz = ring.getZ(j);
+                if ((az > z) != (bz > z) && x < (bx - ax) * (z - az) / (bz - az) + ax)
+                {
+                    inside = !inside;
+                }
+                minDistanceSquared = Math.min(minDistanceSquared, distanceToSegmentSquared(x, z, ax, az, bx, bz));
+            }
+        }
+        final double distance = Math.sqrt(minDistanceSquared);
+        return inside ? distance : -distance;
+    }
+
+    private static double distanceToSegmentSquared(double px, double pz, double ax, double az, double bx, double bz)
+    {
+        final double dx = bx - ax;
+        final double dz = bz - az;
+        final double lengthSquared = dx * dx + dz * dz;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (pz - az) * dz) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        final double ex = ax + t * dx - px;
+        final double ez = az + t * dz - pz;
+        return ex * ex + ez * ez;
+    }
+}
@@ -36,6 +36,7 @@ public class ShapeProperties
     private float strokeOpacity = 1f;
     private float fillOpacity = .5f;
     private float strokeWidth = 2;
+    private transient long revision = Displayable.nextRevision();
 
     /**
      * Gets the stroke color.
@@ -56,6 +57,7 @@ public class ShapeProperties
     public ShapeProperties setStrokeColor(int strokeColor)
     {
         this.strokeColor = Displayable.clampRGB(strokeColor);
+        markModified();
         return this;
     }
 
@@ -78,6 +80,7 @@ public class ShapeProperties
     public ShapeProperties setFillColor(int fillColor)
     {
         this.fillColor = Displayable.clampRGB(fillColor);
+        markModified();
         return this;
     }
 
@@ -100,6 +103,7 @@ public class ShapeProperties
     public ShapeProperties setStrokeOpacity(float strokeOpacity)
     {
         this.strokeOpacity = Displayable.clampOpacity(strokeOpacity);
+        markModified();
         return this;
     }
 
@@ -122,6 +126,7 @@ public class ShapeProperties
     public ShapeProperties setFillOpacity(float fillOpacity)
     {
         this.fillOpacity = Displayable.clampOpacity(fillOpacity);
+        markModified();
         return this;
     }
 
@@ -144,9 +149,25 @@ public class ShapeProperties
     public ShapeProperties setStrokeWidth(float strokeWidth)
     {
         this.strokeWidth = strokeWidth;
+        markModified();
         return this;
     }
 
+    /**
+     * Modification counter, which increases whenever a setter is called.
+     *
+     * @return the revision
+     */
+    public long getRevision()
+    {
+        return revision;
+    }
+
+    private void markModified()
+    {
+        revision = Displayable.nextRevision();
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -23,6 +23,7 @@ package journeymap.client.api.model;
 import com.google.common.base.MoreObjects;
 import journeymap.client.api.display.Context;
 import journeymap.client.api.display.Displayable;
+import journeymap.client.api.util.ActivationMask;
 import journeymap.client.api.util.UIState;
 
 import java.util.EnumSet;
@@ -34,6 +35,8 @@ import java.util.EnumSet;
  */
 public class TextProperties
 {
+    private static final int MASK_ENCODED = 1 << 31;
+
     protected EnumSet<Context.UI> activeUIs = EnumSet.of(Context.UI.Any);
     protected EnumSet<Context.MapType> activeMapTypes = EnumSet.of(Context.MapType.Any);
     protected float scale = 1;
@@ -46,6 +49,9 @@ public class TextProperties
     protected int maxZoom = 8;
     protected int offsetX = 0;
     protected int offsetY = 0;
+    // Encoded when first needed and flagged with MASK_ENCODED, so a deserialized mask is never trusted
+    protected transient int activationMask;
+    protected transient long revision = Displayable.nextRevision();
 
     /**
      * Font scale.
@@ -67,6 +73,7 @@ public class TextProperties
     public TextProperties setScale(float scale)
     {
         this.scale = Math.max(1f, Math.min(scale, 8f));
+        markModified();
         return this;
     }
 
@@ -89,6 +96,7 @@ public class TextProperties
     public TextProperties setColor(int color)
     {
         this.color = Displayable.clampRGB(color);
+        markModified();
         return this;
     }
 
@@ -111,6 +119,7 @@ public class TextProperties
     public TextProperties setBackgroundColor(int backgroundColor)
     {
         this.backgroundColor = Displayable.clampRGB(backgroundColor);
+        markModified();
         return this;
     }
 
@@ -133,6 +142,7 @@ public class TextProperties
     public TextProperties setOpacity(float opacity)
     {
         this.opacity = Displayable.clampOpacity(opacity);
+        markModified();
         return this;
     }
 
@@ -155,6 +165,7 @@ public class TextProperties
     public TextProperties setBackgroundOpacity(float backgroundOpacity)
     {
         this.backgroundOpacity = Displayable.clampOpacity(backgroundOpacity);
+        markModified();
         return this;
     }
 
@@ -177,6 +188,7 @@ public class TextProperties
     public TextProperties setFontShadow(boolean fontShadow)
     {
         this.fontShadow = fontShadow;
+        markModified();
         return this;
     }
 
@@ -207,7 +219,8 @@ public class TextProperties
         {
             activeUIs = EnumSet.of(Context.UI.Any);
         }
-        this.activeUIs = activeUIs;
+        this.activeUIs = EnumSet.copyOf(activeUIs);
+        updateActivationMask();
         return this;
     }
 
@@ -233,10 +246,22 @@ public class TextProperties
         {
             activeMapTypes = EnumSet.of(Context.MapType.Any);
         }
-        this.activeMapTypes = activeMapTypes;
+        this.activeMapTypes = EnumSet.copyOf(activeMapTypes);
+        updateActivationMask();
         return this;
     }
 
+    /**
+     * Flags the activation mask to be re-encoded when next needed, and bumps the revision.  Must be called if
+     * the sets returned by {@link #getActiveUIs()} or {@link #getActiveMapTypes()} are modified directly rather
+     * than passed to their setters.
+     */
+    public void updateActivationMask()
+    {
+        this.activationMask = 0;
+        markModified();
+    }
+
     /**
      * Whether the overlay should be active for the given contexts.
      *
@@ -245,10 +270,23 @@ public class TextProperties
      */
     public boolean isActiveIn(UIState uiState)
     {
-        return uiState.active
-                && (activeUIs.contains(Context.UI.Any) || activeUIs.contains(uiState.ui))
-                && (activeMapTypes.contains(Context.MapType.Any) || activeMapTypes.contains(uiState.mapType))
-                && (this.minZoom <= uiState.zoom && this.maxZoom >= uiState.zoom);
+        return uiState.active && ActivationMask.isActive(getActivationMask(), uiState.activationBits);
+    }
+
+    /**
+     * The UIs, map types and zoom levels where the text should be active, encoded by {@link ActivationMask}.
+     *
+     * @return the mask
+     */
+    public int getActivationMask()
+    {
+        int mask = activationMask;
+        if ((mask & MASK_ENCODED) == 0)
+        {
+            mask = ActivationMask.of(activeUIs, activeMapTypes, minZoom, maxZoom) | MASK_ENCODED;
+            activationMask = mask;
+        }
+        return mask & ~MASK_ENCODED;
     }
 
     /**
@@ -270,6 +308,7 @@ public class TextProperties
     public TextProperties setMinZoom(int minZoom)
     {
         this.minZoom = Math.max(0, minZoom);
+        updateActivationMask();
         return this;
     }
 
@@ -292,6 +331,7 @@ public class TextProperties
     public TextProperties setMaxZoom(int maxZoom)
     {
         this.maxZoom = Math.min(8, maxZoom);
+        updateActivationMask();
         return this;
     }
 
@@ -318,6 +358,7 @@ public class TextProperties
     public TextProperties setOffsetX(int offsetX)
     {
         this.offsetX = offsetX;
+        markModified();
         return this;
     }
 
@@ -344,9 +385,25 @@ public class TextProperties
     public TextProperties setOffsetY(int offsetY)
     {
         this.offsetY = offsetY;
+        markModified();
         return this;
     }
 
+    /**
+     * Modification counter, which increases whenever a setter is called.
+     *
+     * @return the revision
+     */
+    public long getRevision()
+    {
+        return revision;
+    }
+
+    private void markModified()
+    {
+        revision = Displayable.nextRevision();
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,130 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.model;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Triangles filling a polygon, as the packed XZ coordinates of its vertices and an index buffer with three
+ * vertex indexes per triangle.  The vertices are those of the hull followed by those of each hole, in order.
+ * <p>
+ * Renderers should use {@link #getIndex(int)}, {@link #getX(int)} and {@link #getZ(int)}, which read the arrays
+ * without copying them.
+ */
+public final class Triangulation
+{
+    private final int[] xz;
+    private final int[] indices;
+
+    /**
+     * Constructor.
+     *
+     * @param xz      Interleaved x and z of each vertex: x0, z0, x1, z1, ... The array is kept, not copied.
+     * @param indices Three vertex indexes per triangle. The array is kept, not copied.
+     */
+    public Triangulation(int[] xz, int[] indices)
+    {
+        this.xz = xz;
+        this.indices = indices;
+    }
+
+    /**
+     * Gets the number of vertices.
+     *
+     * @return the count
+     */
+    public int getVertexCount()
+    {
+        return xz.length / 2;
+    }
+
+    /**
+     * Gets the x of a vertex.
+     *
+     * @param vertex the vertex index
+     * @return block x
+     */
+    public int getX(int vertex)
+    {
+        return xz[vertex * 2];
+    }
+
+    /**
+     * Gets the z of a vertex.
+     *
+     * @param vertex the vertex index
+     * @return block z
+     */
+    public int getZ(int vertex)
+    {
+        return xz[vertex * 2 + 1];
+    }
+
+    /**
+     * Gets the number of triangles.
+     *
+     * @return the count
+     */
+    public int getTriangleCount()
+    {
+        return indices.length / 3;
+    }
+
+    /**
+     * Gets an entry of the index buffer.  Triangle t has the vertices at entries 3t, 3t+1 and 3t+2.
+     *
+     * @param index the entry
+     * @return the vertex index
+     */
+    public int getIndex(int index)
+    {
+        return indices[index];
+    }
+
+    /**
+     * Gets a copy of the index buffer.
+     *
+     * @return three vertex indexes per triangle
+     */
+    public int[] getIndices()
+    {
+        return indices.clone();
+    }
+
+    /**
+     * Gets a copy of the packed vertex coordinates.
+     *
+     * @return interleaved x and z of each vertex: x0, z0, x1, z1, ...
+     */
+    public int[] getPackedXZ()
+    {
+        return xz.clone();
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                .add("vertices", getVertexCount())
+                .add("triangles", getTriangleCount())
+                .toString();
+    }
+}
@@ -25,6 +25,7 @@ import com.google.common.base.Strings;
 import com.google.gson.annotations.Since;
 import journeymap.client.api.display.Displayable;
 import journeymap.client.api.display.IWaypointDisplay;
+import journeymap.client.api.util.Fingerprint;
 import org.apache.commons.lang3.ArrayUtils;
 
 import javax.annotation.Nullable;
@@ -376,6 +377,31 @@ public abstract class WaypointBase<T extends WaypointBase> extends Displayable i
         return displayDims != null;
     }
 
+    /**
+     * Adds the name, colors, icon and display dimensions, including those provided by the delegate.
+     *
+     * @param fingerprint the fingerprint
+     */
+    @Override
+    protected void addFingerprint(Fingerprint fingerprint)
+    {
+        final Integer color = getColor();
+        final Integer bgColor = getBackgroundColor();
+        final String[] dims = (displayDims == null && hasDelegate()) ? getDelegate().getDisplayDimensions() : displayDims;
+        fingerprint.add(name)
+                .add(color == null ? Long.MIN_VALUE : color)
+                .add(bgColor == null ? Long.MIN_VALUE : bgColor)
+                .add(getIcon())
+                .add(dims == null ? -1 : dims.length);
+        if (dims != null)
+        {
+            for (String dim : dims)
+            {
+                fingerprint.add(dim);
+            }
+        }
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -0,0 +1,138 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.display.Context;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.EnumSet;
+
+/**
+ * Encodes the UIs, map types and zoom levels where something is active into a compact bitmask, so it can be
+ * checked against a {@link UIState} with a single AND rather than set lookups and range comparisons.
+ * <p>
+ * A mask has one bit per {@link Context.UI}, one bit per {@link Context.MapType} and one bit per zoom level.
+ * {@link UIState#activationBits} has exactly one bit set in each of those groups, so a mask is active in a
+ * UIState when it contains all of the state's bits.
+ */
+@ParametersAreNonnullByDefault
+public final class ActivationMask
+{
+    /**
+     * Lowest zoom level.
+     */
+    public static final int MIN_ZOOM = 0;
+
+    /**
+     * Highest zoom level.
+     */
+    public static final int MAX_ZOOM = 8;
+
+    private static final int MAP_TYPE_SHIFT = Context.UI.values().length;
+    private static final int ZOOM_SHIFT = MAP_TYPE_SHIFT + Context.MapType.values().length;
+
+    private static final int ALL_UIS = (1 << Context.UI.values().length) - 1;
+    private static final int ALL_MAP_TYPES = ((1 << Context.MapType.values().length) - 1) << MAP_TYPE_SHIFT;
+
+    /**
+     * Set in the state bits of a zoom level no mask can be active in.
+     */
+    private static final int ZOOM_OUT_OF_RANGE = 1 << (ZOOM_SHIFT + MAX_ZOOM + 1);
+
+    private ActivationMask()
+    {
+    }
+
+    /**
+     * Creates the mask for a set of UIs, map types and a zoom range.
+     *
+     * @param activeUIs      UIs, where {@link Context.UI#Any} means all of them
+     * @param activeMapTypes map types, where {@link Context.MapType#Any} means all of them
+     * @param minZoom        min zoom
+     * @param maxZoom        max zoom
+     * @return the mask
+     */
+    public static int of(EnumSet<Context.UI> activeUIs, EnumSet<Context.MapType> activeMapTypes, int minZoom, int maxZoom)
+    {
+        int mask = 0;
+
+        if (activeUIs.contains(Context.UI.Any))
+        {
+            mask |= ALL_UIS;
+        }
+        else
+        {
+            for (Context.UI ui : activeUIs)
+            {
+                mask |= 1 << ui.ordinal();
+            }
+        }
+
+        if (activeMapTypes.contains(Context.MapType.Any))
+        {
+            mask |= ALL_MAP_TYPES;
+        }
+        else
+        {
+            for (Context.MapType mapType : activeMapTypes)
+            {
+                mask |= 1 << (MAP_TYPE_SHIFT + mapType.ordinal());
+            }
+        }
+
+        for (int zoom = Math.max(MIN_ZOOM, minZoom); zoom <= Math.min(MAX_ZOOM, maxZoom); zoom++)
+        {
+            mask |= 1 << (ZOOM_SHIFT + zoom);
+        }
+
+        return mask;
+    }
+
+    /**
+     * Creates the state bits for a UI, map type and zoom level.  A null map type only matches
+     * masks which include all map types.
+     *
+     * @param ui      the UI
+     * @param mapType the map type
+     * @param zoom    the zoom level
+     * @return the state bits
+     */
+    public static int forState(Context.UI ui, @Nullable Context.MapType mapType, int zoom)
+    {
+        int bits = 1 << ui.ordinal();
+        bits |= 1 << (MAP_TYPE_SHIFT + (mapType == null ? Context.MapType.Any : mapType).ordinal());
+        bits |= (zoom < MIN_ZOOM || zoom > MAX_ZOOM) ? ZOOM_OUT_OF_RANGE : 1 << (ZOOM_SHIFT + zoom);
+        return bits;
+    }
+
+    /**
+     * Whether a mask is active for the state bits of a UIState.
+     *
+     * @param mask           the mask
+     * @param activationBits the {@link UIState#activationBits}
+     * @return true if active
+     */
+    public static boolean isActive(int mask, int activationBits)
+    {
+        return (mask & activationBits) == activationBits;
+    }
+}
@@ -0,0 +1,548 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import com.google.common.base.MoreObjects;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import net.minecraft.world.level.ChunkPos;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of chunks, such as a claim, the explored area or slime chunks, stored as one bit per chunk.
+ * <p>
+ * Each region of 32x32 chunks with any chunk in the set has a tile of 1024 bits, in a map keyed by the region's
+ * packed position.  A full region takes 128 bytes rather than the tens of kilobytes of a
+ * {@code HashSet<ChunkPos>}, and unions, intersections and differences work on 64 chunks at a time.
+ * <p>
+ * Chunk positions passed to and from {@link #forEach(LongConsumer)} and {@link #toLongSet()} are packed with
+ * {@link ChunkPos#asLong(int, int)}.  This class is not thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class ChunkMask
+{
+    private static final int TILE_WORDS = 16;
+
+    private final Long2ObjectOpenHashMap<long[]> tiles = new Long2ObjectOpenHashMap<>();
+    private int size;
+
+    /**
+     * Constructor for an empty mask.
+     */
+    public ChunkMask()
+    {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param chunks the chunks in the mask
+     */
+    public ChunkMask(Collection<ChunkPos> chunks)
+    {
+        addAll(chunks);
+    }
+
+    /**
+     * Creates a copy of this mask.
+     *
+     * @return the copy
+     */
+    public ChunkMask copy()
+    {
+        final ChunkMask copy = new ChunkMask();
+        for (Long2ObjectMap.Entry<long[]> entry : tiles.long2ObjectEntrySet())
+        {
+            copy.tiles.put(entry.getLongKey(), entry.getValue().clone());
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Adds a chunk.
+     *
+     * @param chunkPos the chunk
+     * @return true if the chunk wasn't already in the mask
+     */
+    public boolean add(ChunkPos chunkPos)
+    {
+        return add(chunkPos.x, chunkPos.z);
+    }
+
+    /**
+     * Adds a chunk.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return true if the chunk wasn't already in the mask
+     */
+    public boolean add(int chunkX, int chunkZ)
+    {
+        final long[] tile = tiles.computeIfAbsent(regionKey(chunkX, chunkZ), key -> new long[TILE_WORDS]);
+        final int word = wordIndex(chunkX, chunkZ);
+        final long bit = bit(chunkX, chunkZ);
+        if ((tile[word] & bit) != 0)
+        {
+            return false;
+        }
+        tile[word] |= bit;
+        size++;
+        return true;
+    }
+
+    /**
+     * Adds chunks.
+     *
+     * @param chunks the chunks
+     * @return this
+     */
+    public ChunkMask addAll(Collection<ChunkPos> chunks)
+    {
+        for (ChunkPos chunkPos : chunks)
+        {
+            add(chunkPos.x, chunkPos.z);
+        }
+        return this;
+    }
+
+    /**
+     * Removes a chunk.
+     *
+     * @param chunkPos the chunk
+     * @return true if the chunk was in the mask
+     */
+    public boolean remove(ChunkPos chunkPos)
+    {
+        return remove(chunkPos.x, chunkPos.z);
+    }
+
+    /**
+     * Removes a chunk.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return true if the chunk was in the mask
+     */
+    public boolean remove(int chunkX, int chunkZ)
+    {
+        final long key = regionKey(chunkX, chunkZ);
+        final long[] tile = tiles.get(key);
+        final int word = wordIndex(chunkX, chunkZ);
+        final long bit = bit(chunkX, chunkZ);
+        if (tile == null || (tile[word] & bit) == 0)
+        {
+            return false;
+        }
+        tile[word] &= ~bit;
+        size--;
+        if (isEmpty(tile))
+        {
+            tiles.remove(key);
+        }
+        return true;
+    }
+
+    /**
+     * Whether a chunk is in the mask.
+     *
+     * @param chunkPos the chunk
+     * @return true if it is
+     */
+    public boolean contains(ChunkPos chunkPos)
+    {
+        return contains(chunkPos.x, chunkPos.z);
+    }
+
+    /**
+     * Whether a chunk is in the mask.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return true if it is
+     */
+    public boolean contains(int chunkX, int chunkZ)
+    {
+        final long[] tile = tiles.get(regionKey(chunkX, chunkZ));
+        return tile != null && (tile[wordIndex(chunkX, chunkZ)] & bit(chunkX, chunkZ)) != 0;
+    }
+
+    /**
+     * Gets the number of chunks in the mask.
+     *
+     * @return the count
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Whether the mask has no chunks.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Removes all chunks.
+     */
+    public void clear()
+    {
+        tiles.clear();
+        size = 0;
+    }
+
+    /**
+     * Adds the chunks in another mask to this one.
+     *
+     * @param other the other mask
+     * @return this
+     */
+    public ChunkMask union(ChunkMask other)
+    {
+        for (Long2ObjectMap.Entry<long[]> entry : other.tiles.long2ObjectEntrySet())
+        {
+            final long[] source = entry.getValue();
+            final long[] tile = tiles.get(entry.getLongKey());
+            if (tile == null)
+            {
+                tiles.put(entry.getLongKey(), source.clone());
+                size += cardinality(source);
+                continue;
+            }
+            for (int i = 0; i < TILE_WORDS; i++)
+            {
+                size += Long.bitCount(source[i] & ~tile[i]);
+                tile[i] |= source[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Removes the chunks which are not in another mask.
+     *
+     * @param other the other mask
+     * @return this
+     */
+    public ChunkMask intersect(ChunkMask other)
+    {
+        tiles.long2ObjectEntrySet().removeIf(entry -> {
+            final long[] tile = entry.getValue();
+            final long[] source = other.tiles.get(entry.getLongKey());
+            if (source == null)
+            {
+                size -= cardinality(tile);
+                return true;
+            }
+            for (int i = 0; i < TILE_WORDS; i++)
+            {
+                size -= Long.bitCount(tile[i] & ~source[i]);
+                tile[i] &= source[i];
+            }
+            return isEmpty(tile);
+        });
+        return this;
+    }
+
+    /**
+     * Removes the chunks which are in another mask.
+     *
+     * @param other the other mask
+     * @return this
+     */
+    public ChunkMask difference(ChunkMask other)
+    {
+        if (other == this)
+        {
+            clear();
+            return this;
+        }
+        for (Long2ObjectMap.Entry<long[]> entry : other.tiles.long2ObjectEntrySet())
+        {
+            final long[] source = entry.getValue();
+            final long[] tile = tiles.get(entry.getLongKey());
+            if (tile == null)
+            {
+                continue;
+            }
+            for (int i = 0; i < TILE_WORDS; i++)
+            {
+                size -= Long.bitCount(tile[i] & source[i]);
+                tile[i] &= ~source[i];
+            }
+            if (isEmpty(tile))
+            {
+                tiles.remove(entry.getLongKey());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Calls a consumer with each chunk in the mask, region by region.
+     *
+     * @param consumer receives each chunk position, packed with {@link ChunkPos#asLong(int, int)}
+     */
+    public void forEach(LongConsumer consumer)
+    {
+        for (Long2ObjectMap.Entry<long[]> entry : tiles.long2ObjectEntrySet())
+        {
+            final int baseX = ChunkPos.getX(entry.getLongKey()) << 5;
+            final int baseZ = ChunkPos.getZ(entry.getLongKey()) << 5;
+            final long[] tile = entry.getValue();
+            for (int i = 0; i < TILE_WORDS; i++)
+            {
+                long word = tile[i];
+                while (word != 0)
+                {
+                    final int index = (i << 6) | Long.numberOfTrailingZeros(word);
+                    consumer.accept(ChunkPos.asLong(baseX + (index & 31), baseZ + (index >> 5)));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the chunks in the mask as a set.
+     *
+     * @return chunk positions packed with {@link ChunkPos#asLong(int, int)}
+     */
+    public LongOpenHashSet toLongSet()
+    {
+        final LongOpenHashSet chunks = new LongOpenHashSet(size);
+        forEach(chunks::add);
+        return chunks;
+    }
+
+    /**
+     * Traces the outlines of the chunks in the mask.
+     *
+     * @param y the y-coordinate for the polygons
+     * @return the polygons, as {@link ChunkOutlineTracer#trace(Collection, int)} makes them
+     */
+    public List<MapPolygonWithHoles> toPolygons(int y)
+    {
+        return ChunkOutlineTracer.trace(toLongSet(), y);
+    }
+
+    /**
+     * Writes the mask in a compact form which {@link #fromByteArray(byte[])} reads back.
+     * <p>
+     * The form is the number of tiles, then for each tile its region x and z, a 16-bit flag of which of its
+     * 64-bit words are not zero, and those words, all big-endian.  A full region takes 138 bytes.
+     *
+     * @return the bytes
+     */
+    public byte[] toByteArray()
+    {
+        int length = 4;
+        for (long[] tile : tiles.values())
+        {
+            length += 10;
+            for (long word : tile)
+            {
+                if (word != 0)
+                {
+                    length += 8;
+                }
+            }
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(tiles.size());
+        for (Long2ObjectMap.Entry<long[]> entry : tiles.long2ObjectEntrySet())
+        {
+            final long[] tile = entry.getValue();
+            int words = 0;
+            for (int i = 0; i < TILE_WORDS; i++)
+            {
+                if (tile[i] != 0)
+                {
+                    words |= 1 << i;
+                }
+            }
+            buffer.putInt(ChunkPos.getX(entry.getLongKey()));
+            buffer.putInt(ChunkPos.getZ(entry.getLongKey()));
+            buffer.putShort((short) words);
+            for (long word : tile)
+            {
+                if (word != 0)
+                {
+                    buffer.putLong(word);
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads a mask written by {@link #toByteArray()}.
+     *
+     * @param bytes the bytes
+     * @return the mask
+     * @throws IllegalArgumentException if the bytes are not a mask
+     */
+    public static ChunkMask fromByteArray(byte[] bytes)
+    {
+        final ChunkMask mask = new ChunkMask();
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try
+        {
+            final int tileCount = buffer.getInt();
+            if (tileCount < 0)
+            {
+                throw new IllegalArgumentException("Invalid chunk mask tile count: " + tileCount);
+            }
+            for (int t = 0; t < tileCount; t++)
+            {
+                final long key = ChunkPos.asLong(buffer.getInt(), buffer.getInt());
+                final int words = buffer.getShort() & 0xffff;
+                final long[] tile = new long[TILE_WORDS];
+                for (int i = 0; i < TILE_WORDS; i++)
+                {
+                    if ((words & (1 << i)) != 0)
+                    {
+                        tile[i] = buffer.getLong();
+                    }
+                }
+                if (isEmpty(tile))
+                {
+                    continue;
+                }
+
+                final long[] existing = mask.tiles.put(key, tile);
+                if (existing != null)
+                {
+                    throw new IllegalArgumentException("Chunk mask has region " + ChunkPos.getX(key) + ","
+                            + ChunkPos.getZ(key) + " twice");
+                }
+                mask.size += cardinality(tile);
+            }
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IllegalArgumentException("Chunk mask data is truncated", e);
+        }
+        if (buffer.hasRemaining())
+        {
+            throw new IllegalArgumentException("Chunk mask data has " + buffer.remaining() + " extra bytes");
+        }
+        return mask;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (!(o instanceof ChunkMask))
+        {
+            return false;
+        }
+        final ChunkMask other = (ChunkMask) o;
+        if (size != other.size || tiles.size() != other.tiles.size())
+        {
+            return false;
+        }
+        for (Long2ObjectMap.Entry<long[]> entry : tiles.long2ObjectEntrySet())
+        {
+            if (!Arrays.equals(entry.getValue(), other.tiles.get(entry.getLongKey())))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 0;
+        for (Long2ObjectMap.Entry<long[]> entry : tiles.long2ObjectEntrySet())
+        {
+            hash += Long.hashCode(entry.getLongKey()) ^ Arrays.hashCode(entry.getValue());
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                .add("size", size)
+                .add("regions", tiles.size())
+                .toString();
+    }
+
+    private static long regionKey(int chunkX, int chunkZ)
+    {
+        return ChunkPos.asLong(chunkX >> 5, chunkZ >> 5);
+    }
+
+    private static int wordIndex(int chunkX, int chunkZ)
+    {
+        return ((chunkZ & 31) << 5 | (chunkX & 31)) >> 6;
+    }
+
+    private static long bit(int chunkX, int chunkZ)
+    {
+        return 1L << (chunkX & 31 | (chunkZ & 1) << 5);
+    }
+
+    private static int cardinality(long[] tile)
+    {
+        int count = 0;
+        for (long word : tile)
+        {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static boolean isEmpty(long[] tile)
+    {
+        for (long word : tile)
+        {
+            if (word != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
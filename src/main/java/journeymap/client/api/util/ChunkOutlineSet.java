@@ -0,0 +1,617 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import com.google.common.base.MoreObjects;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import net.minecraft.world.level.ChunkPos;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A set of chunks whose outlines are kept up to date as chunks are added and removed one at a time, such as
+ * for claims or slime chunks, without tracing the whole set again.
+ * <p>
+ * Chunks which share an edge form a group with one {@link MapPolygonWithHoles}, identified by an int id that
+ * stays the same while the group exists.  Each ring of each outline is kept, and adding or removing a chunk
+ * only re-traces the rings which pass through its corners, so an update costs the length of those rings rather
+ * than the size of the group.  The returned {@link Changes} say which polygons were updated or removed, so only
+ * the matching {@link journeymap.client.api.display.PolygonOverlay}s need to be shown or removed again.
+ * <p>
+ * When groups merge, the largest keeps its id, and the chunks of the others are moved to it.  A removed chunk
+ * can only split its group when the sides of its neighbors end up on different rings, and then the pieces are
+ * found by searching from each neighbor in turn, so the largest piece, which keeps the id, is never searched
+ * in full.  The polygons are the same as {@link ChunkOutlineTracer} makes for the whole set.
+ * This class is not thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class ChunkOutlineSet
+{
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DZ = {1, 0, -1, 0};
+
+    // The side shared with the neighbor in each direction, as the edge with the neighbor on its left:
+    // its start corner relative to the chunk, and its direction as in ChunkOutlineTracer
+    private static final int[] SIDE_X = {1, 1, 0, 0};
+    private static final int[] SIDE_Z = {1, 0, 0, 1};
+    private static final int[] SIDE_DIRECTION = {3, 0, 1, 2};
+
+    private final int y;
+    private final LongOpenHashSet chunks = new LongOpenHashSet();
+    private final Long2IntOpenHashMap groupOf = new Long2IntOpenHashMap();
+    private final HashMap<Integer, LongOpenHashSet> groups = new HashMap<>();
+    private final HashMap<Integer, LongOpenHashSet> groupRings = new HashMap<>();
+    private final Long2ObjectOpenHashMap<Ring> rings = new Long2ObjectOpenHashMap<>();
+    private final HashMap<Integer, MapPolygonWithHoles> polygons = new HashMap<>();
+    private int nextId;
+
+    /**
+     * Constructor.
+     *
+     * @param y the y-coordinate for the polygons
+     */
+    public ChunkOutlineSet(int y)
+    {
+        this.y = y;
+        groupOf.defaultReturnValue(-1);
+    }
+
+    /**
+     * Adds a chunk.
+     *
+     * @param chunkPos the chunk
+     * @return the polygons which changed
+     */
+    public Changes addChunk(ChunkPos chunkPos)
+    {
+        return addChunk(chunkPos.x, chunkPos.z);
+    }
+
+    /**
+     * Adds a chunk.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return the polygons which changed, empty if the chunk was already in the set
+     */
+    public Changes addChunk(int chunkX, int chunkZ)
+    {
+        final Changes changes = new Changes();
+        final long key = ChunkPos.asLong(chunkX, chunkZ);
+        if (chunks.contains(key))
+        {
+            return changes;
+        }
+
+        final LongOpenHashSet oldRings = new LongOpenHashSet();
+        findRings(chunkX, chunkZ, oldRings, null);
+        chunks.add(key);
+
+        // Join the largest neighboring group, and merge any others into it
+        int target = -1;
+        for (int d = 0; d < 4; d++)
+        {
+            final int id = groupOf.get(ChunkPos.asLong(chunkX + DX[d], chunkZ + DZ[d]));
+            if (id >= 0 && (target < 0 || groups.get(id).size() > groups.get(target).size()))
+            {
+                target = id;
+            }
+        }
+
+        if (target < 0)
+        {
+            target = nextId++;
+            groups.put(target, new LongOpenHashSet());
+            groupRings.put(target, new LongOpenHashSet());
+        }
+        final LongOpenHashSet group = groups.get(target);
+        final LongOpenHashSet targetRings = groupRings.get(target);
+
+        for (int d = 0; d < 4; d++)
+        {
+            final int id = groupOf.get(ChunkPos.asLong(chunkX + DX[d], chunkZ + DZ[d]));
+            if (id >= 0 && id != target)
+            {
+                final LongOpenHashSet merged = groups.remove(id);
+                for (LongIterator iter = merged.iterator(); iter.hasNext(); )
+                {
+                    final long member = iter.nextLong();
+                    groupOf.put(member, target);
+                    group.add(member);
+                }
+                for (LongIterator iter = groupRings.remove(id).iterator(); iter.hasNext(); )
+                {
+                    final long ringKey = iter.nextLong();
+                    rings.get(ringKey).group = target;
+                    targetRings.add(ringKey);
+                }
+                polygons.remove(id);
+                changes.removed.add(id);
+            }
+        }
+
+        group.add(key);
+        groupOf.put(key, target);
+        replaceRings(chunkX, chunkZ, oldRings, null);
+        rebuild(target, changes);
+        return changes;
+    }
+
+    /**
+     * Removes a chunk.
+     *
+     * @param chunkPos the chunk
+     * @return the polygons which changed
+     */
+    public Changes removeChunk(ChunkPos chunkPos)
+    {
+        return removeChunk(chunkPos.x, chunkPos.z);
+    }
+
+    /**
+     * Removes a chunk.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return the polygons which changed, empty if the chunk wasn't in the set
+     */
+    public Changes removeChunk(int chunkX, int chunkZ)
+    {
+        final Changes changes = new Changes();
+        final long key = ChunkPos.asLong(chunkX, chunkZ);
+        if (!chunks.contains(key))
+        {
+            return changes;
+        }
+
+        final LongOpenHashSet oldRings = new LongOpenHashSet();
+        findRings(chunkX, chunkZ, oldRings, null);
+        chunks.remove(key);
+
+        final int id = groupOf.remove(key);
+        final LongOpenHashSet group = groups.get(id);
+        group.remove(key);
+
+        // Rings of other groups touching the chunk at a corner are traced again too
+        final Long2LongOpenHashMap ringOfEdge = new Long2LongOpenHashMap();
+        replaceRings(chunkX, chunkZ, oldRings, ringOfEdge);
+        if (group.isEmpty())
+        {
+            groups.remove(id);
+            groupRings.remove(id);
+            polygons.remove(id);
+            changes.removed.add(id);
+            return changes;
+        }
+
+        // Each piece the group may have split into has its own outer ring, so neighbors whose shared sides
+        // are on the same ring are in the same piece
+        final LongArrayList seeds = new LongArrayList(4);
+        final LongOpenHashSet seedRings = new LongOpenHashSet(4);
+        for (int d = 0; d < 4; d++)
+        {
+            final long neighbor = ChunkPos.asLong(chunkX + DX[d], chunkZ + DZ[d]);
+            if (groupOf.get(neighbor) == id)
+            {
+                final long side = ChunkOutlineTracer.edgeKey(chunkX + SIDE_X[d], chunkZ + SIDE_Z[d], SIDE_DIRECTION[d]);
+                if (seedRings.add(ringOfEdge.get(side)))
+                {
+                    seeds.add(neighbor);
+                }
+            }
+        }
+
+        if (seeds.size() > 1)
+        {
+            split(id, seeds, changes);
+        }
+        else
+        {
+            rebuild(id, changes);
+        }
+        return changes;
+    }
+
+    /**
+     * Whether a chunk is in the set.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return true if present
+     */
+    public boolean contains(int chunkX, int chunkZ)
+    {
+        return chunks.contains(ChunkPos.asLong(chunkX, chunkZ));
+    }
+
+    /**
+     * Number of chunks in the set.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return chunks.size();
+    }
+
+    /**
+     * Gets the id of the group a chunk is in.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return the id, or -1 if the chunk isn't in the set
+     */
+    public int getGroupId(int chunkX, int chunkZ)
+    {
+        return groupOf.get(ChunkPos.asLong(chunkX, chunkZ));
+    }
+
+    /**
+     * Gets the polygon of a group.
+     *
+     * @param id the group id
+     * @return the polygon, or null if there is no such group
+     */
+    @Nullable
+    public MapPolygonWithHoles getPolygon(int id)
+    {
+        return polygons.get(id);
+    }
+
+    /**
+     * Gets the polygons of all groups.
+     *
+     * @return an unmodifiable map of group id to polygon
+     */
+    public Map<Integer, MapPolygonWithHoles> getPolygons()
+    {
+        return Collections.unmodifiableMap(polygons);
+    }
+
+    /**
+     * Removes all chunks.
+     *
+     * @return the polygons removed
+     */
+    public Changes clear()
+    {
+        final Changes changes = new Changes();
+        changes.removed.addAll(polygons.keySet());
+        chunks.clear();
+        groupOf.clear();
+        groups.clear();
+        groupRings.clear();
+        rings.clear();
+        polygons.clear();
+        return changes;
+    }
+
+    /**
+     * Splits a group into the pieces holding each of the seeds.  The pieces are searched a chunk at a time in
+     * turn, so once all but one search has run out, the last is the largest piece and keeps the group's id
+     * without being searched any further.
+     */
+    private void split(int id, LongArrayList seeds, Changes changes)
+    {
+        final LongOpenHashSet group = groups.get(id);
+        final int count = seeds.size();
+        final List<LongOpenHashSet> pieces = new ArrayList<>(count);
+        final List<LongArrayList> stacks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            final LongOpenHashSet piece = new LongOpenHashSet();
+            final LongArrayList stack = new LongArrayList();
+            piece.add(seeds.getLong(i));
+            stack.add(seeds.getLong(i));
+            pieces.add(piece);
+            stacks.add(stack);
+        }
+
+        final boolean[] finished = new boolean[count];
+        int searching = count;
+        while (searching > 1)
+        {
+            for (int i = 0; i < count && searching > 1; i++)
+            {
+                if (finished[i])
+                {
+                    continue;
+                }
+                final LongArrayList stack = stacks.get(i);
+                if (stack.isEmpty())
+                {
+                    finished[i] = true;
+                    searching--;
+                    continue;
+                }
+
+                final long current = stack.removeLong(stack.size() - 1);
+                final int x = ChunkPos.getX(current);
+                final int z = ChunkPos.getZ(current);
+                for (int d = 0; d < 4; d++)
+                {
+                    final long neighbor = ChunkPos.asLong(x + DX[d], z + DZ[d]);
+                    if (group.contains(neighbor) && pieces.get(i).add(neighbor))
+                    {
+                        stack.add(neighbor);
+                    }
+                }
+            }
+        }
+
+        final List<Integer> ids = new ArrayList<>(count);
+        ids.add(id);
+        for (int i = 0; i < count; i++)
+        {
+            if (finished[i])
+            {
+                final LongOpenHashSet piece = pieces.get(i);
+                final int pieceId = nextId++;
+                for (LongIterator iter = piece.iterator(); iter.hasNext(); )
+                {
+                    final long member = iter.nextLong();
+                    groupOf.put(member, pieceId);
+                    group.remove(member);
+                }
+                groups.put(pieceId, piece);
+                groupRings.put(pieceId, new LongOpenHashSet());
+                ids.add(pieceId);
+            }
+        }
+
+        // Move each ring to the piece of the chunk on its left
+        final LongOpenHashSet ringKeys = groupRings.get(id);
+        for (LongIterator iter = ringKeys.iterator(); iter.hasNext(); )
+        {
+            final long ringKey = iter.nextLong();
+            final Ring ring = rings.get(ringKey);
+            ring.group = groupOf.get(ring.chunk());
+            if (ring.group != id)
+            {
+                iter.remove();
+                groupRings.get(ring.group).add(ringKey);
+            }
+        }
+
+        for (int pieceId : ids)
+        {
+            rebuild(pieceId, changes);
+        }
+    }
+
+    /**
+     * Replaces the rings through the corners of a chunk which has just been added or removed.
+     *
+     * @param oldRings   the rings through its corners before the change
+     * @param ringOfEdge if not null, receives the ring of each edge leaving its corners
+     */
+    private void replaceRings(int chunkX, int chunkZ, LongOpenHashSet oldRings, @Nullable Long2LongOpenHashMap ringOfEdge)
+    {
+        for (LongIterator iter = oldRings.iterator(); iter.hasNext(); )
+        {
+            final long ringKey = iter.nextLong();
+            final Ring ring = rings.remove(ringKey);
+            groupRings.get(ring.group).remove(ringKey);
+        }
+
+        final LongOpenHashSet newRings = new LongOpenHashSet();
+        findRings(chunkX, chunkZ, newRings, ringOfEdge);
+        final LongOpenHashSet usedStarts = new LongOpenHashSet();
+        final IntArrayList points = new IntArrayList();
+        for (LongIterator iter = newRings.iterator(); iter.hasNext(); )
+        {
+            final long ringKey = iter.nextLong();
+            final int x = (int) ringKey ^ Integer.MIN_VALUE;
+            final int z = (int) (ringKey >> 32);
+            points.clear();
+            final boolean hole = ChunkOutlineTracer.traceRing(chunks, x, z, usedStarts, points) < 0;
+            final Ring ring = new Ring(ringKey, new MapPolygon(points.toIntArray(), y), hole);
+            ring.group = groupOf.get(ring.chunk());
+            rings.put(ringKey, ring);
+            groupRings.get(ring.group).add(ringKey);
+        }
+    }
+
+    /**
+     * Finds the rings which pass through the corners of a chunk, by following each edge leaving a corner
+     * around its ring.  A ring is identified by its start, the top of its top-left vertical edge.
+     */
+    private void findRings(int chunkX, int chunkZ, LongOpenHashSet found, @Nullable Long2LongOpenHashMap ringOfEdge)
+    {
+        final LongOpenHashSet followed = new LongOpenHashSet();
+        final LongArrayList cornerEdges = new LongArrayList();
+        for (int corner = 0; corner < 4; corner++)
+        {
+            final int cornerX = chunkX + (corner & 1);
+            final int cornerZ = chunkZ + (corner >> 1);
+            for (int direction = 0; direction < 4; direction++)
+            {
+                if (followed.contains(ChunkOutlineTracer.edgeKey(cornerX, cornerZ, direction))
+                        || !leaves(cornerX, cornerZ, direction))
+                {
+                    continue;
+                }
+
+                // Follow the ring back to this edge, noting its start and the corner edges on it
+                cornerEdges.clear();
+                long start = Long.MAX_VALUE;
+                int x = cornerX;
+                int z = cornerZ;
+                int d = direction;
+                do
+                {
+                    if (d == 0)
+                    {
+                        start = Math.min(start, ChunkOutlineTracer.sortKey(x, z));
+                    }
+                    if (x - chunkX >= 0 && x - chunkX <= 1 && z - chunkZ >= 0 && z - chunkZ <= 1)
+                    {
+                        final long edge = ChunkOutlineTracer.edgeKey(x, z, d);
+                        followed.add(edge);
+                        cornerEdges.add(edge);
+                    }
+                    x += DX[d];
+                    z += DZ[d];
+                    d = ChunkOutlineTracer.nextDirection(chunks, x, z, d);
+                }
+                while (x != cornerX || z != cornerZ || d != direction);
+
+                found.add(start);
+                if (ringOfEdge != null)
+                {
+                    for (int i = 0; i < cornerEdges.size(); i++)
+                    {
+                        ringOfEdge.put(cornerEdges.getLong(i), start);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether a boundary edge leaves a grid vertex in a direction.
+     */
+    private boolean leaves(int x, int z, int direction)
+    {
+        return ChunkOutlineTracer.hasEdge(direction,
+                chunks.contains(ChunkPos.asLong(x - 1, z - 1)),
+                chunks.contains(ChunkPos.asLong(x, z - 1)),
+                chunks.contains(ChunkPos.asLong(x - 1, z)),
+                chunks.contains(ChunkPos.asLong(x, z)));
+    }
+
+    /**
+     * Makes the polygon of a group from its rings, with the holes in the order of their starts.
+     */
+    private void rebuild(int id, Changes changes)
+    {
+        final long[] ringKeys = groupRings.get(id).toLongArray();
+        Arrays.sort(ringKeys);
+        MapPolygon hull = null;
+        final List<MapPolygon> holes = new ArrayList<>();
+        for (long ringKey : ringKeys)
+        {
+            final Ring ring = rings.get(ringKey);
+            if (ring.hole)
+            {
+                holes.add(ring.polygon);
+            }
+            else
+            {
+                hull = ring.polygon;
+            }
+        }
+        final MapPolygonWithHoles polygon = new MapPolygonWithHoles(hull, holes);
+        polygons.put(id, polygon);
+        changes.updated.put(id, polygon);
+    }
+
+    /**
+     * A traced ring, and the group of the chunks along it.
+     */
+    private static class Ring
+    {
+        final long key;
+        final MapPolygon polygon;
+        final boolean hole;
+        int group;
+
+        Ring(long key, MapPolygon polygon, boolean hole)
+        {
+            this.key = key;
+            this.polygon = polygon;
+            this.hole = hole;
+        }
+
+        /**
+         * The chunk on the left of the ring's first edge, which is in its group.
+         */
+        long chunk()
+        {
+            return ChunkPos.asLong((int) key ^ Integer.MIN_VALUE, (int) (key >> 32));
+        }
+    }
+
+    /**
+     * The polygons changed by adding or removing a chunk.
+     */
+    public static class Changes
+    {
+        private final Map<Integer, MapPolygonWithHoles> updated = new HashMap<>();
+        private final Set<Integer> removed = new HashSet<>();
+
+        /**
+         * Gets the groups which are new or whose polygon changed.  Show the polygon for each of them.
+         *
+         * @return group id to its new polygon
+         */
+        public Map<Integer, MapPolygonWithHoles> getUpdated()
+        {
+            return updated;
+        }
+
+        /**
+         * Gets the groups which no longer exist.  Remove the polygon for each of them.
+         *
+         * @return group ids
+         */
+        public Set<Integer> getRemoved()
+        {
+            return removed;
+        }
+
+        /**
+         * Whether nothing changed.
+         *
+         * @return true if empty
+         */
+        public boolean isEmpty()
+        {
+            return updated.isEmpty() && removed.isEmpty();
+        }
+
+        @Override
+        public String toString()
+        {
+            return MoreObjects.toStringHelper(this)
+                    .add("updated", updated.keySet())
+                    .add("removed", removed)
+                    .toString();
+        }
+    }
+}
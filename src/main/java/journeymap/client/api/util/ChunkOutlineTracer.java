@@ -0,0 +1,850 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import net.minecraft.world.level.ChunkPos;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Creates the outlines of a set of chunks by tracing their boundary edges on the chunk grid, rather than by
+ * adding together an {@link java.awt.geom.Area} per chunk.  The cost is linear in the number of chunks.
+ * <p>
+ * The rings are the same as those made from {@link PolygonHelper#createChunksArea}: chunks only join when they
+ * share an edge, so chunks touching at a corner are separate hulls, while holes touching at a corner are one hole.
+ * Each ring has a point only at each corner, and starts at the top of its top-left vertical edge.  Hulls are
+ * counter-clockwise and holes clockwise, with +X right and +Z down.  Each hole is grouped with the hull of the
+ * chunks around it, including when the hole has an island of chunks inside it.
+ */
+@ParametersAreNonnullByDefault
+public final class ChunkOutlineTracer
+{
+    // Directions, ordered so that (d + 1) & 3 is a left turn: down (+z), right (+x), up (-z), left (-x)
+    private static final int DOWN = 0;
+    private static final int RIGHT = 1;
+    private static final int UP = 2;
+    private static final int LEFT = 3;
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DZ = {1, 0, -1, 0};
+
+    // Below this many chunks, traceParallel just traces sequentially
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private ChunkOutlineTracer()
+    {
+    }
+
+    /**
+     * Creates polygons covering a collection of chunks.
+     *
+     * @param chunks the chunks
+     * @param y      the y-coordinate for the resulting polygons
+     * @return one polygon with holes for each group of edge-connected chunks, empty if there are no chunks
+     */
+    public static List<MapPolygonWithHoles> trace(Collection<ChunkPos> chunks, int y)
+    {
+        final LongOpenHashSet keys = new LongOpenHashSet(chunks.size());
+        for (ChunkPos chunk : chunks)
+        {
+            keys.add(ChunkPos.asLong(chunk.x, chunk.z));
+        }
+        return trace(keys, y);
+    }
+
+    /**
+     * Creates polygons covering a set of chunks.
+     *
+     * @param chunks the chunks, as {@link ChunkPos#asLong(int, int)} keys
+     * @param y      the y-coordinate for the resulting polygons
+     * @return one polygon with holes for each group of edge-connected chunks, empty if there are no chunks
+     */
+    public static List<MapPolygonWithHoles> trace(LongSet chunks, int y)
+    {
+        final Long2IntOpenHashMap components = labelComponents(chunks);
+
+        final long[] sorted = sortedStarts(chunks, chunks);
+        final List<MapPolygon> hulls = new ArrayList<>();
+        final IntArrayList hullComponents = new IntArrayList();
+        final HashMap<Integer, List<MapPolygon>> componentHoles = new HashMap<>();
+
+        final LongOpenHashSet usedStarts = new LongOpenHashSet();
+        final IntArrayList points = new IntArrayList();
+        for (long start : sorted)
+        {
+            final int x = (int) start ^ Integer.MIN_VALUE;
+            final int z = (int) (start >> 32);
+            if (usedStarts.contains(ChunkPos.asLong(x, z)))
+            {
+                continue;
+            }
+
+            points.clear();
+            final boolean hole = traceRing(chunks, x, z, usedStarts, points) < 0;
+            final MapPolygon ring = new MapPolygon(points.toIntArray(), y);
+            final int component = components.get(ChunkPos.asLong(x, z));
+            if (hole)
+            {
+                componentHoles.computeIfAbsent(component, key -> new ArrayList<>()).add(ring);
+            }
+            else
+            {
+                hulls.add(ring);
+                hullComponents.add(component);
+            }
+        }
+
+        final List<MapPolygonWithHoles> result = new ArrayList<>(hulls.size());
+        for (int i = 0; i < hulls.size(); i++)
+        {
+            final List<MapPolygon> holes = componentHoles.get(hullComponents.getInt(i));
+            result.add(new MapPolygonWithHoles(hulls.get(i), holes == null ? new ArrayList<>() : holes));
+        }
+        return result;
+    }
+
+    /**
+     * Creates the polygon of one group of edge-connected chunks.
+     *
+     * @param chunks    all chunks
+     * @param component the chunks in the group
+     * @param y         the y-coordinate for the resulting polygon
+     * @return the polygon
+     */
+    static MapPolygonWithHoles traceComponent(LongSet chunks, LongSet component, int y)
+    {
+        MapPolygon hull = null;
+        final List<MapPolygon> holes = new ArrayList<>();
+        final LongOpenHashSet usedStarts = new LongOpenHashSet();
+        final IntArrayList points = new IntArrayList();
+        for (long start : sortedStarts(chunks, component))
+        {
+            final int x = (int) start ^ Integer.MIN_VALUE;
+            final int z = (int) (start >> 32);
+            if (usedStarts.contains(ChunkPos.asLong(x, z)))
+            {
+                continue;
+            }
+
+            points.clear();
+            final boolean hole = traceRing(chunks, x, z, usedStarts, points) < 0;
+            final MapPolygon ring = new MapPolygon(points.toIntArray(), y);
+            if (hole)
+            {
+                holes.add(ring);
+            }
+            else
+            {
+                hull = ring;
+            }
+        }
+        return new MapPolygonWithHoles(hull, holes);
+    }
+
+    /**
+     * Creates polygons covering a collection of chunks, outlining each region of 32x32 chunks in parallel.
+     * The result is identical to {@link #trace(Collection, int)}, and is faster for large collections,
+     * such as the claims of a whole server.
+     *
+     * @param chunks the chunks
+     * @param y      the y-coordinate for the resulting polygons
+     * @return one polygon with holes for each group of edge-connected chunks, empty if there are no chunks
+     */
+    public static List<MapPolygonWithHoles> traceParallel(Collection<ChunkPos> chunks, int y)
+    {
+        final LongOpenHashSet keys = new LongOpenHashSet(chunks.size());
+        for (ChunkPos chunk : chunks)
+        {
+            keys.add(ChunkPos.asLong(chunk.x, chunk.z));
+        }
+        return traceParallel(keys, y, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates polygons covering a set of chunks, outlining each region of 32x32 chunks in parallel.
+     * The result is identical to {@link #trace(LongSet, int)}.
+     * <p>
+     * Each region finds the boundary edges of its own chunks and links them into runs, closing the rings which
+     * stay inside it.  The runs which cross into neighboring regions are then joined into rings, and groups of
+     * chunks which span regions are joined by their chunks along the seams.  The set must not be modified
+     * until this returns.
+     *
+     * @param chunks the chunks, as {@link ChunkPos#asLong(int, int)} keys
+     * @param y      the y-coordinate for the resulting polygons
+     * @param pool   the pool to run on
+     * @return one polygon with holes for each group of edge-connected chunks, empty if there are no chunks
+     */
+    public static List<MapPolygonWithHoles> traceParallel(LongSet chunks, int y, ForkJoinPool pool)
+    {
+        if (chunks.size() < PARALLEL_THRESHOLD)
+        {
+            return trace(chunks, y);
+        }
+
+        // Split into regions
+        final Long2ObjectOpenHashMap<Region> regionMap = new Long2ObjectOpenHashMap<>();
+        for (LongIterator iter = chunks.iterator(); iter.hasNext(); )
+        {
+            final long key = iter.nextLong();
+            final long regionKey = regionKey(ChunkPos.getX(key), ChunkPos.getZ(key));
+            regionMap.computeIfAbsent(regionKey, Region::new).chunks.add(key);
+        }
+        final Region[] regions = regionMap.values().toArray(new Region[0]);
+        pool.invoke(new RegionTask(chunks, regions, 0, regions.length, y));
+
+        // Number the groups of all regions together, and join those which meet at a seam
+        int labelCount = 0;
+        for (Region region : regions)
+        {
+            region.labelOffset = labelCount;
+            labelCount += region.labelCount;
+        }
+        final int[] parents = new int[labelCount];
+        for (int i = 0; i < labelCount; i++)
+        {
+            parents[i] = i;
+        }
+        int ringCount = 0;
+        for (Region region : regions)
+        {
+            for (int i = 0; i < region.seams.size(); i += 2)
+            {
+                final long neighbor = region.seams.getLong(i + 1);
+                final Region other = regionMap.get(regionKey(ChunkPos.getX(neighbor), ChunkPos.getZ(neighbor)));
+                union(parents, region.labelOffset + (int) region.seams.getLong(i),
+                        other.labelOffset + other.labels.get(neighbor));
+            }
+            ringCount += region.rings.size();
+        }
+
+        // Join runs which cross regions into rings
+        final List<Ring> rings = new ArrayList<>(ringCount);
+        final Long2ObjectOpenHashMap<Run> runsByHead = new Long2ObjectOpenHashMap<>();
+        for (Region region : regions)
+        {
+            for (Ring ring : region.rings)
+            {
+                ring.label += region.labelOffset;
+                rings.add(ring);
+            }
+            for (Run run : region.runs)
+            {
+                run.label += region.labelOffset;
+                runsByHead.put(run.head, run);
+            }
+        }
+        final List<Run> cycle = new ArrayList<>();
+        for (Region region : regions)
+        {
+            for (Run first : region.runs)
+            {
+                if (first.joined)
+                {
+                    continue;
+                }
+                cycle.clear();
+                Run run = first;
+                do
+                {
+                    run.joined = true;
+                    cycle.add(run);
+                    run = runsByHead.get(run.next);
+                }
+                while (run != first);
+                rings.add(joinRing(cycle, y));
+            }
+        }
+
+        // Sort as the sequential trace would find them, then group
+        final Ring[] sorted = rings.toArray(new Ring[0]);
+        Arrays.parallelSort(sorted, (a, b) -> Long.compare(a.start, b.start));
+
+        final List<MapPolygon> hulls = new ArrayList<>();
+        final IntArrayList hullComponents = new IntArrayList();
+        final HashMap<Integer, List<MapPolygon>> componentHoles = new HashMap<>();
+        for (Ring ring : sorted)
+        {
+            final int component = find(parents, ring.label);
+            if (ring.area < 0)
+            {
+                componentHoles.computeIfAbsent(component, key -> new ArrayList<>()).add(ring.polygon);
+            }
+            else
+            {
+                hulls.add(ring.polygon);
+                hullComponents.add(component);
+            }
+        }
+
+        final List<MapPolygonWithHoles> result = new ArrayList<>(hulls.size());
+        for (int i = 0; i < hulls.size(); i++)
+        {
+            final List<MapPolygon> holes = componentHoles.get(hullComponents.getInt(i));
+            result.add(new MapPolygonWithHoles(hulls.get(i), holes == null ? new ArrayList<>() : holes));
+        }
+        return result;
+    }
+
+    /**
+     * Finds where rings can start, sorted by z then x.  Every ring has at least one downward edge, which is
+     * the west side of a chunk with no chunk to its west.  Tracing from the first unused one in this order
+     * starts each ring at its top-left vertical edge.
+     */
+    private static long[] sortedStarts(LongSet chunks, LongSet candidates)
+    {
+        final LongArrayList starts = new LongArrayList();
+        for (LongIterator iter = candidates.iterator(); iter.hasNext(); )
+        {
+            final long key = iter.nextLong();
+            final int x = ChunkPos.getX(key);
+            final int z = ChunkPos.getZ(key);
+            if (!chunks.contains(ChunkPos.asLong(x - 1, z)))
+            {
+                starts.add(sortKey(x, z));
+            }
+        }
+        final long[] sorted = starts.toLongArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Traces one ring, starting down the west side of a chunk, keeping the chunks on the left of each edge.
+     * Where two chunks touch only at a corner, turns left so that they stay in separate rings.
+     *
+     * @return twice the signed area of the ring, which is negative for holes
+     */
+    static long traceRing(LongSet chunks, int startX, int startZ, LongSet usedStarts, IntArrayList points)
+    {
+        long area = 0;
+        int x = startX;
+        int z = startZ;
+        int direction = DOWN;
+        int cornerX = x;
+        int cornerZ = z;
+        points.add(x << 4);
+        points.add(z << 4);
+
+        while (true)
+        {
+            if (direction == DOWN)
+            {
+                usedStarts.add(ChunkPos.asLong(x, z));
+            }
+            x += DX[direction];
+            z += DZ[direction];
+
+            final int next = nextDirection(chunks, x, z, direction);
+            if (x == startX && z == startZ && next == DOWN)
+            {
+                area += (long) (startX - cornerX) * (startZ + cornerZ);
+                return area;
+            }
+            if (next != direction)
+            {
+                area += (long) (x - cornerX) * (z + cornerZ);
+                cornerX = x;
+                cornerZ = z;
+                points.add(x << 4);
+                points.add(z << 4);
+                direction = next;
+            }
+        }
+    }
+
+    /**
+     * Chooses the edge leaving a grid vertex, preferring a left turn when there are two.
+     */
+    static int nextDirection(LongSet chunks, int x, int z, int direction)
+    {
+        final boolean nw = chunks.contains(ChunkPos.asLong(x - 1, z - 1));
+        final boolean ne = chunks.contains(ChunkPos.asLong(x, z - 1));
+        final boolean sw = chunks.contains(ChunkPos.asLong(x - 1, z));
+        final boolean se = chunks.contains(ChunkPos.asLong(x, z));
+
+        if (hasEdge((direction + 1) & 3, nw, ne, sw, se))
+        {
+            return (direction + 1) & 3;
+        }
+        if (hasEdge(direction, nw, ne, sw, se))
+        {
+            return direction;
+        }
+        if (hasEdge((direction + 3) & 3, nw, ne, sw, se))
+        {
+            return (direction + 3) & 3;
+        }
+        throw new IllegalStateException("Chunk outline is not closed at " + x + "," + z);
+    }
+
+    /**
+     * Whether an edge leaves a vertex in a direction with a chunk on its left and none on its right.
+     */
+    static boolean hasEdge(int direction, boolean nw, boolean ne, boolean sw, boolean se)
+    {
+        switch (direction)
+        {
+            case DOWN:
+                return se && !sw;
+            case RIGHT:
+                return ne && !se;
+            case UP:
+                return nw && !ne;
+            default:
+                return sw && !nw;
+        }
+    }
+
+    /**
+     * Numbers each group of edge-connected chunks.
+     */
+    private static Long2IntOpenHashMap labelComponents(LongSet chunks)
+    {
+        final Long2IntOpenHashMap components = new Long2IntOpenHashMap(chunks.size());
+        components.defaultReturnValue(-1);
+        final LongArrayList stack = new LongArrayList();
+        int count = 0;
+
+        for (LongIterator iter = chunks.iterator(); iter.hasNext(); )
+        {
+            final long key = iter.nextLong();
+            if (components.containsKey(key))
+            {
+                continue;
+            }
+
+            final int component = count++;
+            components.put(key, component);
+            stack.add(key);
+            while (!stack.isEmpty())
+            {
+                final long current = stack.removeLong(stack.size() - 1);
+                final int x = ChunkPos.getX(current);
+                final int z = ChunkPos.getZ(current);
+                for (int d = 0; d < 4; d++)
+                {
+                    final long neighbor = ChunkPos.asLong(x + DX[d], z + DZ[d]);
+                    if (chunks.contains(neighbor) && !components.containsKey(neighbor))
+                    {
+                        components.put(neighbor, component);
+                        stack.add(neighbor);
+                    }
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * A key which sorts by z, then x.
+     */
+    static long sortKey(int x, int z)
+    {
+        return ((long) z << 32) | ((x ^ Integer.MIN_VALUE) & 0xffffffffL);
+    }
+
+    /**
+     * Finds the boundary edges of a region's chunks, links them into runs and rings, and numbers its groups.
+     * Every boundary edge belongs to the region of the chunk on its left.
+     */
+    private static void traceRegion(LongSet chunks, Region region, int y)
+    {
+        final LongArrayList regionChunks = region.chunks;
+
+        // Number the groups of edge-connected chunks within the region, and note neighbors in other regions
+        final Long2IntOpenHashMap labels = new Long2IntOpenHashMap(regionChunks.size());
+        labels.defaultReturnValue(-1);
+        final LongArrayList stack = new LongArrayList();
+        for (int i = 0; i < regionChunks.size(); i++)
+        {
+            final long key = regionChunks.getLong(i);
+            if (labels.containsKey(key))
+            {
+                continue;
+            }
+            final int label = region.labelCount++;
+            labels.put(key, label);
+            stack.add(key);
+            while (!stack.isEmpty())
+            {
+                final long current = stack.removeLong(stack.size() - 1);
+                final int x = ChunkPos.getX(current);
+                final int z = ChunkPos.getZ(current);
+                for (int d = 0; d < 4; d++)
+                {
+                    final int nx = x + DX[d];
+                    final int nz = z + DZ[d];
+                    final long neighbor = ChunkPos.asLong(nx, nz);
+                    if (!chunks.contains(neighbor))
+                    {
+                        continue;
+                    }
+                    if (regionKey(nx, nz) != region.key)
+                    {
+                        // Each seam is noted once, from the chunk to its west or north
+                        if (d == DOWN || d == RIGHT)
+                        {
+                            region.seams.add(label);
+                            region.seams.add(neighbor);
+                        }
+                    }
+                    else if (!labels.containsKey(neighbor))
+                    {
+                        labels.put(neighbor, label);
+                        stack.add(neighbor);
+                    }
+                }
+            }
+        }
+        region.labels = labels;
+
+        // Find each boundary edge and the edge which follows it
+        final LongArrayList edges = new LongArrayList();
+        for (int i = 0; i < regionChunks.size(); i++)
+        {
+            final long key = regionChunks.getLong(i);
+            final int x = ChunkPos.getX(key);
+            final int z = ChunkPos.getZ(key);
+            if (!chunks.contains(ChunkPos.asLong(x - 1, z)))
+            {
+                edges.add(edgeKey(x, z, DOWN));
+            }
+            if (!chunks.contains(ChunkPos.asLong(x, z + 1)))
+            {
+                edges.add(edgeKey(x, z + 1, RIGHT));
+            }
+            if (!chunks.contains(ChunkPos.asLong(x + 1, z)))
+            {
+                edges.add(edgeKey(x + 1, z + 1, UP));
+            }
+            if (!chunks.contains(ChunkPos.asLong(x, z - 1)))
+            {
+                edges.add(edgeKey(x + 1, z, LEFT));
+            }
+        }
+
+        final int edgeCount = edges.size();
+        final Long2IntOpenHashMap edgeIndex = new Long2IntOpenHashMap(edgeCount);
+        edgeIndex.defaultReturnValue(-1);
+        for (int i = 0; i < edgeCount; i++)
+        {
+            edgeIndex.put(edges.getLong(i), i);
+        }
+
+        final long[] nextEdges = new long[edgeCount];
+        final int[] nextIndexes = new int[edgeCount];
+        final boolean[] hasPrevious = new boolean[edgeCount];
+        for (int i = 0; i < edgeCount; i++)
+        {
+            final long edge = edges.getLong(i);
+            final int direction = edgeDirection(edge);
+            final int x = edgeX(edge) + DX[direction];
+            final int z = edgeZ(edge) + DZ[direction];
+            nextEdges[i] = edgeKey(x, z, nextDirection(chunks, x, z, direction));
+            nextIndexes[i] = edgeIndex.get(nextEdges[i]);
+            if (nextIndexes[i] >= 0)
+            {
+                hasPrevious[nextIndexes[i]] = true;
+            }
+        }
+
+        // Runs start where the previous edge is in another region; whatever is left are rings inside the region
+        final boolean[] visited = new boolean[edgeCount];
+        final IntArrayList corners = new IntArrayList();
+        final List<Run> single = new ArrayList<>(1);
+        for (int pass = 0; pass < 2; pass++)
+        {
+            for (int i = 0; i < edgeCount; i++)
+            {
+                if (visited[i] || (pass == 0 && hasPrevious[i]))
+                {
+                    continue;
+                }
+
+                final Run run = followRun(edges, nextEdges, nextIndexes, visited, i, labels, corners);
+                if (pass == 0)
+                {
+                    region.runs.add(run);
+                }
+                else
+                {
+                    single.clear();
+                    single.add(run);
+                    region.rings.add(joinRing(single, y));
+                }
+            }
+        }
+    }
+
+    /**
+     * Follows edges from a starting edge until the next one is in another region, or is the starting edge.
+     */
+    private static Run followRun(LongArrayList edges, long[] nextEdges, int[] nextIndexes, boolean[] visited,
+                                 int first, Long2IntOpenHashMap labels, IntArrayList corners)
+    {
+        final Run run = new Run();
+        run.head = edges.getLong(first);
+        corners.clear();
+
+        int i = first;
+        int last;
+        while (true)
+        {
+            visited[i] = true;
+            last = i;
+            final long edge = edges.getLong(i);
+            final int direction = edgeDirection(edge);
+            final int x = edgeX(edge);
+            final int z = edgeZ(edge);
+            if (direction == DOWN)
+            {
+                final long start = sortKey(x, z);
+                if (start < run.start)
+                {
+                    run.start = start;
+                    run.startCorner = i == first ? -1 : corners.size() / 2 - 1;
+                    run.label = labels.get(ChunkPos.asLong(x, z));
+                }
+            }
+            run.area += (long) DX[direction] * (2 * z);
+
+            final int next = nextIndexes[i];
+            if (next < 0 || next == first)
+            {
+                break;
+            }
+            final int nextDirection = edgeDirection(edges.getLong(next));
+            if (nextDirection != direction)
+            {
+                corners.add((x + DX[direction]) << 4);
+                corners.add((z + DZ[direction]) << 4);
+            }
+            i = next;
+        }
+
+        run.next = nextEdges[last];
+        run.firstDirection = edgeDirection(run.head);
+        run.lastDirection = edgeDirection(edges.getLong(last));
+        run.corners = corners.toIntArray();
+        return run;
+    }
+
+    /**
+     * Joins a cycle of runs into a ring, starting at its top-left vertical edge as the sequential trace does.
+     */
+    private static Ring joinRing(List<Run> cycle, int y)
+    {
+        final int count = cycle.size();
+        int first = 0;
+        int size = 0;
+        long area = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final Run run = cycle.get(i);
+            if (run.start < cycle.get(first).start)
+            {
+                first = i;
+            }
+            size += run.corners.length + 2;
+            area += run.area;
+        }
+
+        final int[] points = new int[size];
+        int length = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final Run run = cycle.get((first + i) % count);
+            final Run previous = cycle.get((first + i + count - 1) % count);
+            if (previous.lastDirection != run.firstDirection)
+            {
+                points[length++] = edgeX(run.head) << 4;
+                points[length++] = edgeZ(run.head) << 4;
+            }
+            System.arraycopy(run.corners, 0, points, length, run.corners.length);
+            length += run.corners.length;
+        }
+
+        // The ring's start is the corner before its top-left vertical edge, which is always a corner
+        final Run startRun = cycle.get(first);
+        final boolean headCorner = cycle.get((first + count - 1) % count).lastDirection != startRun.firstDirection;
+        final int offset = startRun.startCorner < 0 ? 0 : 2 * (startRun.startCorner + (headCorner ? 1 : 0));
+        final int[] rotated = new int[length];
+        System.arraycopy(points, offset, rotated, 0, length - offset);
+        System.arraycopy(points, 0, rotated, length - offset, offset);
+
+        final Ring ring = new Ring();
+        ring.start = startRun.start;
+        ring.label = startRun.label;
+        ring.area = area;
+        ring.polygon = new MapPolygon(rotated, y);
+        return ring;
+    }
+
+    private static int find(int[] parents, int label)
+    {
+        while (parents[label] != label)
+        {
+            parents[label] = parents[parents[label]];
+            label = parents[label];
+        }
+        return label;
+    }
+
+    private static void union(int[] parents, int a, int b)
+    {
+        final int rootA = find(parents, a);
+        final int rootB = find(parents, b);
+        if (rootA != rootB)
+        {
+            parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    private static long regionKey(int chunkX, int chunkZ)
+    {
+        return ChunkPos.asLong(chunkX >> 5, chunkZ >> 5);
+    }
+
+    /**
+     * A key for the edge leaving a grid vertex in a direction.  Chunk coordinates fit in 30 bits, so nothing
+     * is lost by the shift.
+     */
+    static long edgeKey(int x, int z, int direction)
+    {
+        return ((long) z << 34) | ((x & 0xffffffffL) << 2) | direction;
+    }
+
+    private static int edgeX(long edge)
+    {
+        return (int) (edge >>> 2);
+    }
+
+    private static int edgeZ(long edge)
+    {
+        return (int) (edge >> 34);
+    }
+
+    private static int edgeDirection(long edge)
+    {
+        return (int) edge & 3;
+    }
+
+    /**
+     * The chunks of a region and what was traced from them.
+     */
+    private static class Region
+    {
+        final long key;
+        final LongArrayList chunks = new LongArrayList();
+        final List<Run> runs = new ArrayList<>();
+        final List<Ring> rings = new ArrayList<>();
+        // Pairs of a group in this region and a chunk in another region which it touches
+        final LongArrayList seams = new LongArrayList();
+        Long2IntOpenHashMap labels;
+        int labelCount;
+        int labelOffset;
+
+        Region(long key)
+        {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Edges of a ring which are in one region, from the one after an edge in another region to the one
+     * before the next.
+     */
+    private static class Run
+    {
+        long head;
+        long next;
+        int firstDirection;
+        int lastDirection;
+        // Corners between the edges of the run
+        int[] corners;
+        long area;
+        long start = Long.MAX_VALUE;
+        int startCorner;
+        int label;
+        boolean joined;
+    }
+
+    /**
+     * A traced ring.
+     */
+    private static class Ring
+    {
+        long start;
+        long area;
+        int label;
+        MapPolygon polygon;
+    }
+
+    /**
+     * Traces a range of regions, splitting it until there is one region per task.
+     */
+    private static class RegionTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final LongSet chunks;
+        private final Region[] regions;
+        private final int from;
+        private final int to;
+        private final int y;
+
+        RegionTask(LongSet chunks, Region[] regions, int from, int to, int y)
+        {
+            this.chunks = chunks;
+            this.regions = regions;
+            this.from = from;
+            this.to = to;
+            this.y = y;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from == 1)
+            {
+                traceRegion(chunks, regions[from], y);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new RegionTask(chunks, regions, from, middle, y), new RegionTask(chunks, regions, middle, to, y));
+        }
+    }
+}
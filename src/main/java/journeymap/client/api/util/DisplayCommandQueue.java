@@ -0,0 +1,325 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.IClientAPI;
+import journeymap.client.api.display.Displayable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Queues show, remove and update requests for an {@link IClientAPI} from any thread, so they can be applied
+ * on the client thread in batches rather than one {@code Minecraft.submit()} at a time.
+ * <p>
+ * Any number of threads can call {@link #show}, {@link #remove} and {@link #update} without locking.
+ * The client thread calls {@link #drain} once per frame or tick, which applies queued requests in the order they
+ * were made until the queue is empty or the time budget is spent.  Consecutive shows are passed to
+ * {@link IClientAPI#showAll} together.
+ * <p>
+ * Displayables must not be modified by other threads after they have been queued.  To change one which
+ * may already be shown, use {@link #update}, which makes the change on the client thread.
+ */
+@ParametersAreNonnullByDefault
+public class DisplayCommandQueue
+{
+    private static final Logger LOGGER = LogManager.getLogger("journeymap");
+
+    /**
+     * Default time budget for {@link #drain()}: 2ms.
+     */
+    public static final long DEFAULT_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    /**
+     * Most shows passed to one {@link IClientAPI#showAll}, so a batch can't overrun the time budget by much.
+     */
+    public static final int MAX_SHOW_BATCH = 256;
+
+    private final IClientAPI clientAPI;
+    private final ConcurrentLinkedQueue<Command> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final List<Displayable> showBatch = new ArrayList<>();
+
+    // Average time showAll takes per displayable, so shows waiting in the batch count against the budget, and
+    // whether any show has been timed yet
+    private long showNanosEstimate;
+    private boolean showTimed;
+
+    // Metrics, only written by the client thread
+    private volatile long drainedCount;
+    private volatile int lastDrainCount;
+    private volatile long lastDrainNanos;
+    private volatile long lastMaxLatencyNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param clientAPI the API to apply requests to
+     */
+    public DisplayCommandQueue(IClientAPI clientAPI)
+    {
+        this.clientAPI = clientAPI;
+    }
+
+    /**
+     * Queues a displayable to be shown, as with {@link IClientAPI#show}.  Safe to call from any thread.
+     *
+     * @param displayable the displayable
+     */
+    public void show(Displayable displayable)
+    {
+        enqueue(new Command(Command.Type.Show, displayable, null));
+    }
+
+    /**
+     * Queues a displayable to be removed, as with {@link IClientAPI#remove}.  Safe to call from any thread.
+     *
+     * @param displayable the displayable
+     */
+    public void remove(Displayable displayable)
+    {
+        enqueue(new Command(Command.Type.Remove, displayable, null));
+    }
+
+    /**
+     * Queues a change to a displayable, which is made on the client thread before the displayable is shown again.
+     * Safe to call from any thread.
+     *
+     * @param displayable the displayable
+     * @param change      changes the displayable, such as by calling its setters
+     * @param <T>         type of displayable
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Displayable> void update(T displayable, Consumer<? super T> change)
+    {
+        enqueue(new Command(Command.Type.Update, displayable, (Consumer<Displayable>) change));
+    }
+
+    /**
+     * Applies queued requests with {@link #DEFAULT_BUDGET_NANOS}.  Must be called on the client thread.
+     *
+     * @return the number of requests applied
+     */
+    public int drain()
+    {
+        return drain(DEFAULT_BUDGET_NANOS);
+    }
+
+    /**
+     * Applies queued requests in order until the queue is empty or the time budget has been spent.
+     * At least one request is applied per call if any are queued, so the queue always makes progress.
+     * Shows are passed to {@link IClientAPI#showAll} in batches of at most {@link #MAX_SHOW_BATCH}, and a
+     * show waiting in a batch counts against the budget by how long shows have been taking.
+     * Must be called on the client thread.
+     *
+     * @param budgetNanos how long to spend, in nanoseconds
+     * @return the number of requests applied
+     */
+    public int drain(long budgetNanos)
+    {
+        final long start = System.nanoTime();
+        final long deadline = start + budgetNanos;
+        long maxLatency = 0;
+        int count = 0;
+
+        while (true)
+        {
+            // Time is read after every apply or flush, and shows still in the batch are counted as spent
+            final long now = System.nanoTime();
+            if (count > 0 && now + showBatch.size() * showNanosEstimate - deadline >= 0)
+            {
+                break;
+            }
+
+            final Command command = queue.poll();
+            if (command == null)
+            {
+                break;
+            }
+            depth.decrementAndGet();
+            count++;
+            maxLatency = Math.max(maxLatency, now - command.enqueuedNanos);
+
+            if (command.type == Command.Type.Show)
+            {
+                showBatch.add(command.displayable);
+
+                // Until a show has been timed, flush each one so the budget isn't overrun by a whole batch
+                if (showBatch.size() >= MAX_SHOW_BATCH || !showTimed)
+                {
+                    flushShowBatch();
+                }
+            }
+            else
+            {
+                flushShowBatch();
+                apply(command);
+            }
+        }
+        flushShowBatch();
+
+        if (count > 0)
+        {
+            drainedCount += count;
+            lastDrainCount = count;
+            lastDrainNanos = System.nanoTime() - start;
+            lastMaxLatencyNanos = maxLatency;
+        }
+        return count;
+    }
+
+    /**
+     * Number of requests waiting to be applied.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth()
+    {
+        return depth.get();
+    }
+
+    /**
+     * Total number of requests applied.
+     *
+     * @return the count
+     */
+    public long getDrainedCount()
+    {
+        return drainedCount;
+    }
+
+    /**
+     * Number of requests applied by the last {@link #drain} which applied any.
+     *
+     * @return the count
+     */
+    public int getLastDrainCount()
+    {
+        return lastDrainCount;
+    }
+
+    /**
+     * How long the last {@link #drain} which applied any requests took.
+     *
+     * @return nanoseconds
+     */
+    public long getLastDrainNanos()
+    {
+        return lastDrainNanos;
+    }
+
+    /**
+     * The longest any request applied by the last {@link #drain} had waited in the queue.
+     *
+     * @return nanoseconds
+     */
+    public long getLastMaxLatencyNanos()
+    {
+        return lastMaxLatencyNanos;
+    }
+
+    private void enqueue(Command command)
+    {
+        // Counted first, so a drain on another thread never takes the depth below zero
+        depth.incrementAndGet();
+        queue.offer(command);
+    }
+
+    private void apply(Command command)
+    {
+        try
+        {
+            switch (command.type)
+            {
+                case Remove:
+                    clientAPI.remove(command.displayable);
+                    break;
+                case Update:
+                    command.change.accept(command.displayable);
+                    clientAPI.show(command.displayable);
+                    break;
+                default:
+                    clientAPI.show(command.displayable);
+            }
+        }
+        catch (Throwable t)
+        {
+            LOGGER.error(String.format("Couldn't %s %s", command.type, command.displayable.getGuid()), t);
+        }
+    }
+
+    private void flushShowBatch()
+    {
+        if (showBatch.isEmpty())
+        {
+            return;
+        }
+        final long start = System.nanoTime();
+        try
+        {
+            clientAPI.showAll(showBatch);
+        }
+        catch (Throwable t)
+        {
+            // None were shown, so show them one at a time to find which can't be
+            for (Displayable displayable : showBatch)
+            {
+                apply(new Command(Command.Type.Show, displayable, null));
+            }
+        }
+        // At least a nanosecond, so shows faster than the clock can measure still count against the budget
+        final long nanosPerShow = Math.max(1, (System.nanoTime() - start) / showBatch.size());
+        showNanosEstimate = showTimed ? Math.max(1, (showNanosEstimate * 3 + nanosPerShow) / 4) : nanosPerShow;
+        showTimed = true;
+        showBatch.clear();
+    }
+
+    /**
+     * A queued request.
+     */
+    private static class Command
+    {
+        enum Type
+        {
+            Show, Remove, Update
+        }
+
+        final Type type;
+        final Displayable displayable;
+        final Consumer<Displayable> change;
+        final long enqueuedNanos = System.nanoTime();
+
+        Command(Type type, Displayable displayable, @Nullable Consumer<Displayable> change)
+        {
+            this.type = type;
+            this.displayable = displayable;
+            this.change = change;
+        }
+    }
+}
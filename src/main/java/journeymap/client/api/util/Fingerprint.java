@@ -0,0 +1,315 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.model.MapImage;
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.ShapeProperties;
+import journeymap.client.api.model.TextProperties;
+import net.minecraft.core.BlockPos;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds a 64-bit hash of the values that decide how a {@link journeymap.client.api.display.Displayable} looks and
+ * behaves, used by {@link journeymap.client.api.display.Displayable#getFingerprint()}.
+ * <p>
+ * Values are mixed in the order they are added, so the same values in the same order always give the same
+ * fingerprint.  Objects which can't be compared by value, such as listeners and images held in memory, are
+ * kept as references by {@link #addIdentity(Object)} rather than hashed, since identity hash codes aren't unique;
+ * {@link FingerprintIndex} compares them with {@code ==} as well as comparing the fingerprints.
+ */
+@ParametersAreNonnullByDefault
+public final class Fingerprint
+{
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private long hash = 0x6A09E667F3BCC909L;
+    @Nullable
+    private List<Object> identities;
+
+    /**
+     * Adds a long.
+     *
+     * @param value the value
+     * @return this
+     */
+    public Fingerprint add(long value)
+    {
+        hash = Long.rotateLeft((hash ^ value) * MULTIPLIER, 31);
+        return this;
+    }
+
+    /**
+     * Adds an int.
+     *
+     * @param value the value
+     * @return this
+     */
+    public Fingerprint add(int value)
+    {
+        return add((long) value);
+    }
+
+    /**
+     * Adds a float.
+     *
+     * @param value the value
+     * @return this
+     */
+    public Fingerprint add(float value)
+    {
+        return add(Float.floatToIntBits(value));
+    }
+
+    /**
+     * Adds a double.
+     *
+     * @param value the value
+     * @return this
+     */
+    public Fingerprint add(double value)
+    {
+        return add(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Adds a boolean.
+     *
+     * @param value the value
+     * @return this
+     */
+    public Fingerprint add(boolean value)
+    {
+        return add(value ? 1 : 2);
+    }
+
+    /**
+     * Adds a string, which may be null.
+     *
+     * @param value the value
+     * @return this
+     */
+    public Fingerprint add(@Nullable String value)
+    {
+        if (value == null)
+        {
+            return add(-1);
+        }
+        final int length = value.length();
+        add(length);
+
+        // Four chars to a long
+        for (int i = 0; i < length; i += 4)
+        {
+            long chars = 0;
+            for (int j = i; j < Math.min(i + 4, length); j++)
+            {
+                chars = (chars << 16) | value.charAt(j);
+            }
+            add(chars);
+        }
+        return this;
+    }
+
+    /**
+     * Adds an int array, which may be null.
+     *
+     * @param values the values
+     * @return this
+     */
+    public Fingerprint add(@Nullable int[] values)
+    {
+        if (values == null)
+        {
+            return add(-1);
+        }
+        add(values.length);
+        for (int value : values)
+        {
+            add(value);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a block position, which may be null.
+     *
+     * @param pos the position
+     * @return this
+     */
+    public Fingerprint add(@Nullable BlockPos pos)
+    {
+        return pos == null ? add(-1) : add(pos.getX()).add(pos.getY()).add(pos.getZ());
+    }
+
+    /**
+     * Adds an object by identity.  It isn't hashed, but kept for {@link #getIdentities()}, so that only the
+     * same instance is treated as unchanged.
+     *
+     * @param object the object, which may be null
+     * @return this
+     */
+    public Fingerprint addIdentity(@Nullable Object object)
+    {
+        if (identities == null)
+        {
+            identities = new ArrayList<>(2);
+        }
+        identities.add(object);
+        return this;
+    }
+
+    /**
+     * Adds the properties of an image, and the image itself by identity if it is held in memory.
+     *
+     * @param image the image, which may be null
+     * @return this
+     */
+    public Fingerprint add(@Nullable MapImage image)
+    {
+        if (image == null)
+        {
+            return add(-1);
+        }
+        return add(image.getImageLocation() == null ? null : image.getImageLocation().toString())
+                .addIdentity(image.getImage())
+                .add(image.getColor())
+                .add(image.getOpacity())
+                .add(image.getTextureX())
+                .add(image.getTextureY())
+                .add(image.getTextureWidth())
+                .add(image.getTextureHeight())
+                .add(image.getRotation())
+                .add(image.getDisplayWidth())
+                .add(image.getDisplayHeight())
+                .add(image.getAnchorX())
+                .add(image.getAnchorY());
+    }
+
+    /**
+     * Adds shape properties.
+     *
+     * @param properties the properties
+     * @return this
+     */
+    public Fingerprint add(ShapeProperties properties)
+    {
+        return add(properties.getStrokeColor())
+                .add(properties.getStrokeOpacity())
+                .add(properties.getStrokeWidth())
+                .add(properties.getFillColor())
+                .add(properties.getFillOpacity());
+    }
+
+    /**
+     * Adds text properties.
+     *
+     * @param properties the properties
+     * @return this
+     */
+    public Fingerprint add(TextProperties properties)
+    {
+        return add(properties.getScale())
+                .add(properties.getColor())
+                .add(properties.getBackgroundColor())
+                .add(properties.getOpacity())
+                .add(properties.getBackgroundOpacity())
+                .add(properties.hasFontShadow())
+                .add(properties.getActivationMask())
+                .add(properties.getMinZoom())
+                .add(properties.getMaxZoom())
+                .add(properties.getOffsetX())
+                .add(properties.getOffsetY());
+    }
+
+    /**
+     * Adds the points of a polygon, which may be null.
+     *
+     * @param polygon the polygon
+     * @return this
+     */
+    public Fingerprint add(@Nullable MapPolygon polygon)
+    {
+        if (polygon == null)
+        {
+            return add(-1);
+        }
+        final int count = polygon.getPointCount();
+        add(count);
+        for (int i = 0; i < count; i++)
+        {
+            add(polygon.getX(i)).add(polygon.getY(i)).add(polygon.getZ(i));
+        }
+        return this;
+    }
+
+    /**
+     * Adds the points of a list of polygons, which may be null.
+     *
+     * @param polygons the polygons
+     * @return this
+     */
+    public Fingerprint add(@Nullable List<MapPolygon> polygons)
+    {
+        if (polygons == null)
+        {
+            return add(-1);
+        }
+        add(polygons.size());
+        for (MapPolygon polygon : polygons)
+        {
+            add(polygon);
+        }
+        return this;
+    }
+
+    /**
+     * Gets the objects added by {@link #addIdentity(Object)}, in the order they were added.
+     *
+     * @return an unmodifiable list, empty if there are none
+     */
+    public List<Object> getIdentities()
+    {
+        return identities == null ? Collections.emptyList() : Collections.unmodifiableList(identities);
+    }
+
+    /**
+     * Gets the fingerprint of the values added.
+     *
+     * @return the fingerprint
+     */
+    public long getValue()
+    {
+        // Finish with the avalanche of MurmurHash3, so every value added affects every bit
+        long value = hash;
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
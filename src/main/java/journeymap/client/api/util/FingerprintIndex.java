@@ -0,0 +1,185 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.display.Displayable;
+import journeymap.client.api.display.Overlay;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The {@link Displayable#getFingerprint() fingerprints} of the displayables shown, by GUID, so that showing a
+ * displayable which hasn't changed since it was last shown can be skipped rather than rebuilding its render state.
+ * Many mods show their displayables on a timer whether or not they changed, so most of those calls can be skipped.
+ * <p>
+ * A skipped show still replaces the displayable kept with the one shown, as
+ * {@link journeymap.client.api.IClientAPI#show(Displayable)} promises; only rebuilding how it is drawn is skipped.
+ * Overlays flagged with {@link journeymap.client.api.display.Overlay#flagForRerender()} are never skipped, nor
+ * are shows where any of the {@link Displayable#getFingerprintIdentities() objects held by identity}, such as a
+ * listener or an image in memory, is a different instance from the last show.
+ * Implementations which remove a displayable themselves, such as a waypoint deleted by the player, must call
+ * {@link #remove(Displayable)}, or showing it again would be skipped.
+ * <p>
+ * Counts of the shows applied and skipped are kept, to see how often displayables are shown without changes.
+ * This class is not thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class FingerprintIndex
+{
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private long appliedCount;
+    private long skippedCount;
+
+    /**
+     * Records a displayable being shown, in place of any shown before with the same GUID.  The show can be
+     * skipped if that one had the same fingerprint and the same instances of the objects held by identity, and
+     * the displayable isn't flagged for rerender.
+     *
+     * @param displayable the displayable
+     * @return true if the show should be applied, false if it can be skipped
+     */
+    public boolean update(Displayable displayable)
+    {
+        final long fingerprint = displayable.getFingerprint();
+        final List<Object> identities = displayable.getFingerprintIdentities();
+        final Entry previous = entries.put(displayable.getGuid(), new Entry(displayable, fingerprint, identities));
+        if (previous != null && previous.fingerprint == fingerprint && sameInstances(previous.identities, identities)
+                && !(displayable instanceof Overlay && ((Overlay) displayable).getNeedsRerender()))
+        {
+            skippedCount++;
+            return false;
+        }
+        appliedCount++;
+        return true;
+    }
+
+    /**
+     * Gets the displayable last shown with a GUID.
+     *
+     * @param guid the {@link Displayable#getGuid() GUID}
+     * @return the displayable, or null if none has been shown
+     */
+    @Nullable
+    public Displayable get(String guid)
+    {
+        final Entry entry = entries.get(guid);
+        return entry == null ? null : entry.displayable;
+    }
+
+    /**
+     * Removes a displayable, so the next time it is shown it will be applied.  Implementations must call this
+     * whenever a displayable stops being shown, including when they remove it themselves rather than through
+     * {@link journeymap.client.api.IClientAPI#remove(Displayable)}.
+     *
+     * @param displayable the displayable
+     * @return true if it had been shown
+     */
+    public boolean remove(Displayable displayable)
+    {
+        return entries.remove(displayable.getGuid()) != null;
+    }
+
+    /**
+     * Removes all displayables which match a filter, such as all those of a mod.
+     *
+     * @param filter the filter
+     */
+    public void removeIf(Predicate<? super Displayable> filter)
+    {
+        entries.values().removeIf(entry -> filter.test(entry.displayable));
+    }
+
+    /**
+     * Removes all displayables.  The counts are kept.
+     */
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Number of displayables shown.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Number of shows which were applied, because the displayable was new or had changed.
+     *
+     * @return the count
+     */
+    public long getAppliedCount()
+    {
+        return appliedCount;
+    }
+
+    /**
+     * Number of shows which were skipped, because the displayable hadn't changed.
+     *
+     * @return the count
+     */
+    public long getSkippedCount()
+    {
+        return skippedCount;
+    }
+
+    private static boolean sameInstances(List<Object> a, List<Object> b)
+    {
+        if (a.size() != b.size())
+        {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++)
+        {
+            if (a.get(i) != b.get(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A displayable with its fingerprint and the objects it held by identity when it was last shown.  Those are
+     * kept rather than read from the displayable again, since it may be the same instance shown after changes.
+     */
+    private static class Entry
+    {
+        final Displayable displayable;
+        final long fingerprint;
+        final List<Object> identities;
+
+        Entry(Displayable displayable, long fingerprint, List<Object> identities)
+        {
+            this.displayable = displayable;
+            this.fingerprint = fingerprint;
+            this.identities = identities;
+        }
+    }
+}
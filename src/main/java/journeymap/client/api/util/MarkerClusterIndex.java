@@ -0,0 +1,385 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import com.google.common.base.MoreObjects;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import journeymap.client.api.display.MarkerOverlay;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Per-dimension clusters of markers for each zoom level from {@link ActivationMask#MIN_ZOOM} to
+ * {@link ActivationMask#MAX_ZOOM}, so that a map zoomed out can draw one marker with a count in place of many
+ * markers on top of each other.
+ * <p>
+ * At each zoom level the blocks are split into square cells {@link #CLUSTER_SIZE_PIXELS} across on screen, and
+ * the markers in a cell form a {@link Cluster}.  Cells are a power of two blocks across, so each cell lies within
+ * one cell of the next zoom level out.  Cells are never smaller than a block, so zoom levels beyond the one where
+ * they are a block across share its clusters.  Every level is kept up to date: adding or removing a marker
+ * changes one cluster per level, and finding the clusters in a view only looks at the cells in it.
+ * <p>
+ * Markers are indexed by the {@link MarkerOverlay#getPoint()} and {@link MarkerOverlay#getDimension()} they had
+ * when added, so a marker must be added again after either of those change. This class is not thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class MarkerClusterIndex
+{
+    /**
+     * How many pixels across the area of a cluster is at any zoom level.
+     */
+    public static final int CLUSTER_SIZE_PIXELS = 64;
+
+    private static final int CLUSTER_SHIFT = Integer.numberOfTrailingZeros(CLUSTER_SIZE_PIXELS);
+    // Zoom levels past the one where a cell is a block across would have the same cells, so share its level
+    private static final int LEVELS = Math.max(1, Math.min(ActivationMask.MAX_ZOOM, CLUSTER_SHIFT) - ActivationMask.MIN_ZOOM + 1);
+
+    private final HashMap<ResourceKey<Level>, DimensionClusters> dimensions = new HashMap<>();
+    private final HashMap<MarkerOverlay, Entry> entries = new HashMap<>();
+
+    /**
+     * Adds a marker, or moves it if it was already added.
+     *
+     * @param marker the marker
+     */
+    public void add(MarkerOverlay marker)
+    {
+        // Remove first, so a replacement instance with the same guid becomes the key
+        remove(marker);
+
+        final BlockPos point = marker.getPoint();
+        final Entry entry = new Entry(marker.getDimension(), point.getX(), point.getZ());
+        entries.put(marker, entry);
+        dimensions.computeIfAbsent(entry.dimension, key -> new DimensionClusters()).add(marker, entry.x, entry.z);
+    }
+
+    /**
+     * Removes a marker.
+     *
+     * @param marker the marker
+     * @return true if it had been added
+     */
+    public boolean remove(MarkerOverlay marker)
+    {
+        final Entry entry = entries.remove(marker);
+        if (entry == null)
+        {
+            return false;
+        }
+        final DimensionClusters clusters = dimensions.get(entry.dimension);
+        clusters.remove(marker, entry.x, entry.z);
+        if (clusters.isEmpty())
+        {
+            dimensions.remove(entry.dimension);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all markers which match a filter, such as all those of a mod.
+     *
+     * @param filter the filter
+     */
+    public void removeIf(Predicate<? super MarkerOverlay> filter)
+    {
+        final List<MarkerOverlay> removed = new ArrayList<>();
+        for (MarkerOverlay marker : entries.keySet())
+        {
+            if (filter.test(marker))
+            {
+                removed.add(marker);
+            }
+        }
+        for (MarkerOverlay marker : removed)
+        {
+            remove(marker);
+        }
+    }
+
+    /**
+     * Removes all markers.
+     */
+    public void clear()
+    {
+        entries.clear();
+        dimensions.clear();
+    }
+
+    /**
+     * Number of markers in all dimensions.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Gets the clusters in a dimension whose cells intersect an area of blocks.
+     *
+     * @param dimension   the dimension
+     * @param blockBounds the area, such as {@link UIState#blockBounds}
+     * @param zoom        the zoom level, which is clamped to the levels kept
+     * @return the clusters, in no particular order
+     */
+    public List<Cluster> getClusters(@Nullable ResourceKey<Level> dimension, AABB blockBounds, int zoom)
+    {
+        final List<Cluster> result = new ArrayList<>();
+        forEachCluster(dimension, blockBounds, zoom, result::add);
+        return result;
+    }
+
+    /**
+     * Passes the clusters in a dimension whose cells intersect an area of blocks to a consumer, in no particular
+     * order. The index must not be modified by the consumer.
+     *
+     * @param dimension   the dimension
+     * @param blockBounds the area, such as {@link UIState#blockBounds}
+     * @param zoom        the zoom level, which is clamped to the levels kept
+     * @param consumer    the consumer
+     */
+    public void forEachCluster(@Nullable ResourceKey<Level> dimension, AABB blockBounds, int zoom, Consumer<? super Cluster> consumer)
+    {
+        final DimensionClusters clusters = dimensions.get(dimension);
+        if (clusters == null)
+        {
+            return;
+        }
+
+        final int level = Math.min(LEVELS - 1, Math.max(ActivationMask.MIN_ZOOM, zoom) - ActivationMask.MIN_ZOOM);
+        final int shift = cellShift(level);
+        final Long2ObjectOpenHashMap<Cluster> cells = clusters.levels[level];
+        final int minCellX = (int) Math.floor(blockBounds.minX) >> shift;
+        final int minCellZ = (int) Math.floor(blockBounds.minZ) >> shift;
+        final int maxCellX = (int) Math.floor(blockBounds.maxX) >> shift;
+        final int maxCellZ = (int) Math.floor(blockBounds.maxZ) >> shift;
+
+        // Look up each cell in the view, unless there are fewer clusters than that
+        if (((long) maxCellX - minCellX + 1) * ((long) maxCellZ - minCellZ + 1) > cells.size())
+        {
+            for (Cluster cluster : cells.values())
+            {
+                if (cluster.cellX >= minCellX && cluster.cellX <= maxCellX
+                        && cluster.cellZ >= minCellZ && cluster.cellZ <= maxCellZ)
+                {
+                    consumer.accept(cluster);
+                }
+            }
+            return;
+        }
+
+        for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++)
+        {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++)
+            {
+                final Cluster cluster = cells.get(ChunkPos.asLong(cellX, cellZ));
+                if (cluster != null)
+                {
+                    consumer.accept(cluster);
+                }
+            }
+        }
+    }
+
+    /**
+     * How many bits to shift block coordinates right by to get the cell at a level, for cells
+     * {@link #CLUSTER_SIZE_PIXELS} across at the level's zoom, and at least a block.
+     */
+    private static int cellShift(int level)
+    {
+        return Math.max(0, CLUSTER_SHIFT - (level + ActivationMask.MIN_ZOOM));
+    }
+
+    /**
+     * The markers in a cell at one zoom level.
+     */
+    public static class Cluster
+    {
+        private final int cellX;
+        private final int cellZ;
+        private final int cellSize;
+        private final Set<MarkerOverlay> markers = new HashSet<>();
+        private long sumX;
+        private long sumZ;
+
+        Cluster(int cellX, int cellZ, int cellSize)
+        {
+            this.cellX = cellX;
+            this.cellZ = cellZ;
+            this.cellSize = cellSize;
+        }
+
+        /**
+         * Gets the number of markers in the cluster.
+         *
+         * @return the count
+         */
+        public int getCount()
+        {
+            return markers.size();
+        }
+
+        /**
+         * Gets the marker if it is the only one in the cluster, in which case it should be drawn as itself.
+         *
+         * @return the marker, or null if there is more than one
+         */
+        @Nullable
+        public MarkerOverlay getMarker()
+        {
+            return markers.size() == 1 ? markers.iterator().next() : null;
+        }
+
+        /**
+         * Gets the markers in the cluster.
+         *
+         * @return an unmodifiable view of the markers, which changes as markers are added and removed
+         */
+        public Set<MarkerOverlay> getMarkers()
+        {
+            return Collections.unmodifiableSet(markers);
+        }
+
+        /**
+         * Gets the x of the average position of the markers, where a cluster marker should be drawn.
+         *
+         * @return block x
+         */
+        public double getX()
+        {
+            return (double) sumX / markers.size();
+        }
+
+        /**
+         * Gets the z of the average position of the markers, where a cluster marker should be drawn.
+         *
+         * @return block z
+         */
+        public double getZ()
+        {
+            return (double) sumZ / markers.size();
+        }
+
+        /**
+         * Gets the area of the cell, such as for zooming in on the cluster when it is clicked.
+         *
+         * @return the bounds
+         */
+        public AABB getBounds()
+        {
+            return new AABB((long) cellX * cellSize, 0, (long) cellZ * cellSize,
+                    (long) (cellX + 1) * cellSize, 0, (long) (cellZ + 1) * cellSize);
+        }
+
+        @Override
+        public String toString()
+        {
+            return MoreObjects.toStringHelper(this)
+                    .add("count", getCount())
+                    .add("x", getX())
+                    .add("z", getZ())
+                    .toString();
+        }
+    }
+
+    private static class Entry
+    {
+        final ResourceKey<Level> dimension;
+        final int x;
+        final int z;
+
+        Entry(ResourceKey<Level> dimension, int x, int z)
+        {
+            this.dimension = dimension;
+            this.x = x;
+            this.z = z;
+        }
+    }
+
+    /**
+     * The clusters of one dimension, by cell, for each level.
+     */
+    private static class DimensionClusters
+    {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final Long2ObjectOpenHashMap<Cluster>[] levels = new Long2ObjectOpenHashMap[LEVELS];
+
+        DimensionClusters()
+        {
+            for (int i = 0; i < LEVELS; i++)
+            {
+                levels[i] = new Long2ObjectOpenHashMap<>();
+            }
+        }
+
+        void add(MarkerOverlay marker, int x, int z)
+        {
+            for (int level = 0; level < LEVELS; level++)
+            {
+                final int shift = cellShift(level);
+                final int cellX = x >> shift;
+                final int cellZ = z >> shift;
+                final Cluster cluster = levels[level].computeIfAbsent(ChunkPos.asLong(cellX, cellZ),
+                        key -> new Cluster(cellX, cellZ, 1 << shift));
+                cluster.markers.add(marker);
+                cluster.sumX += x;
+                cluster.sumZ += z;
+            }
+        }
+
+        void remove(MarkerOverlay marker, int x, int z)
+        {
+            for (int level = 0; level < LEVELS; level++)
+            {
+                final int shift = cellShift(level);
+                final long key = ChunkPos.asLong(x >> shift, z >> shift);
+                final Cluster cluster = levels[level].get(key);
+                cluster.markers.remove(marker);
+                cluster.sumX -= x;
+                cluster.sumZ -= z;
+                if (cluster.markers.isEmpty())
+                {
+                    levels[level].remove(key);
+                }
+            }
+        }
+
+        boolean isEmpty()
+        {
+            return levels[0].isEmpty();
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.display.Context;
+import journeymap.client.api.display.IOverlayListener;
+import journeymap.client.api.display.Overlay;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Tracks which overlays are active in each UI, and calls {@link IOverlayListener#onActivate} and
+ * {@link IOverlayListener#onDeactivate} only for the overlays whose activation changes.
+ * <p>
+ * Overlays are grouped by dimension and {@link Overlay#getActivationMask()}.  When a {@link UIState} changes,
+ * each group is checked once against the old and new state, so only the overlays in groups which
+ * flipped are visited, however many overlays are registered.
+ * <p>
+ * Overlays are grouped by the dimension and mask they had when added, so an overlay must be added again
+ * after either of those or its listener change. Only overlays with a listener are tracked, and each is notified
+ * through the listener it had when added. This class is not thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class OverlayActivationIndex
+{
+    private static final Logger LOGGER = LogManager.getLogger("journeymap");
+
+    private final HashMap<ResourceKey<Level>, HashMap<Integer, Set<Overlay>>> dimensionBuckets = new HashMap<>();
+    private final HashMap<Overlay, Entry> entries = new HashMap<>();
+    private final EnumMap<Context.UI, UIState> uiStates = new EnumMap<>(Context.UI.class);
+
+    /**
+     * Adds an overlay, or updates it if it was already added.  The overlay is activated in the UIs
+     * where it is now active, and deactivated where it no longer is.
+     *
+     * @param overlay the overlay
+     */
+    public void add(Overlay overlay)
+    {
+        final Entry previous = removeEntry(overlay);
+        if (overlay.getOverlayListener() == null)
+        {
+            if (previous != null)
+            {
+                fireChanges(previous.overlay, previous, null);
+            }
+            return;
+        }
+
+        final Entry entry = new Entry(overlay, overlay.getOverlayListener(), overlay.getDimension(), overlay.getActivationMask());
+        entries.put(overlay, entry);
+        dimensionBuckets.computeIfAbsent(entry.dimension, key -> new HashMap<>())
+                .computeIfAbsent(entry.mask, key -> new HashSet<>())
+                .add(overlay);
+
+        fireChanges(overlay, previous, entry);
+    }
+
+    /**
+     * Removes an overlay, deactivating it in the UIs where it was active.
+     *
+     * @param overlay the overlay
+     * @return true if it had been added
+     */
+    public boolean remove(Overlay overlay)
+    {
+        final Entry previous = removeEntry(overlay);
+        if (previous == null)
+        {
+            return false;
+        }
+        fireChanges(previous.overlay, previous, null);
+        return true;
+    }
+
+    /**
+     * Removes all overlays which match a filter, such as all those of a mod, deactivating them
+     * in the UIs where they were active.
+     *
+     * @param filter the filter
+     */
+    public void removeIf(Predicate<? super Overlay> filter)
+    {
+        final Entry[] matches = entries.values().stream()
+                .filter(entry -> filter.test(entry.overlay))
+                .toArray(Entry[]::new);
+        for (Entry entry : matches)
+        {
+            remove(entry.overlay);
+        }
+    }
+
+    /**
+     * Whether an overlay has been added.
+     *
+     * @param overlay the overlay
+     * @return true if present
+     */
+    public boolean contains(Overlay overlay)
+    {
+        return entries.containsKey(overlay);
+    }
+
+    /**
+     * Gets the last state provided for a UI.
+     *
+     * @param ui the UI
+     * @return the state, or null if none has been provided
+     */
+    @Nullable
+    public UIState getUIState(Context.UI ui)
+    {
+        return uiStates.get(ui);
+    }
+
+    /**
+     * Updates the state of a UI, and activates or deactivates only the overlays whose activation changed.
+     *
+     * @param uiState the new state
+     */
+    public void updateUIState(UIState uiState)
+    {
+        final UIState previous = uiStates.put(uiState.ui, uiState);
+        final boolean wasActive = previous != null && previous.active;
+        if (!wasActive && !uiState.active)
+        {
+            return;
+        }
+
+        if (wasActive && uiState.active && previous.dimension == uiState.dimension)
+        {
+            final HashMap<Integer, Set<Overlay>> buckets = dimensionBuckets.get(uiState.dimension);
+            if (buckets == null)
+            {
+                return;
+            }
+            for (Map.Entry<Integer, Set<Overlay>> bucket : buckets.entrySet())
+            {
+                final int mask = bucket.getKey();
+                final boolean before = ActivationMask.isActive(mask, previous.activationBits);
+                final boolean after = ActivationMask.isActive(mask, uiState.activationBits);
+                if (before != after)
+                {
+                    fire(bucket.getValue(), uiState, after);
+                }
+            }
+            return;
+        }
+
+        if (wasActive)
+        {
+            fireBuckets(previous.dimension, previous, uiState, false);
+        }
+        if (uiState.active)
+        {
+            fireBuckets(uiState.dimension, uiState, uiState, true);
+        }
+    }
+
+    /**
+     * Removes all overlays and UI states without notifying listeners.
+     */
+    public void clear()
+    {
+        dimensionBuckets.clear();
+        entries.clear();
+        uiStates.clear();
+    }
+
+    @Nullable
+    private Entry removeEntry(Overlay overlay)
+    {
+        final Entry entry = entries.remove(overlay);
+        if (entry == null)
+        {
+            return null;
+        }
+
+        final HashMap<Integer, Set<Overlay>> buckets = dimensionBuckets.get(entry.dimension);
+        final Set<Overlay> bucket = buckets.get(entry.mask);
+        bucket.remove(overlay);
+        if (bucket.isEmpty())
+        {
+            buckets.remove(entry.mask);
+            if (buckets.isEmpty())
+            {
+                dimensionBuckets.remove(entry.dimension);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Calls the listeners of the active overlays in a dimension, for a UI which has left or entered it.
+     */
+    private void fireBuckets(ResourceKey<Level> dimension, UIState matchState, UIState uiState, boolean activate)
+    {
+        final HashMap<Integer, Set<Overlay>> buckets = dimensionBuckets.get(dimension);
+        if (buckets == null)
+        {
+            return;
+        }
+        for (Map.Entry<Integer, Set<Overlay>> bucket : buckets.entrySet())
+        {
+            if (ActivationMask.isActive(bucket.getKey(), matchState.activationBits))
+            {
+                fire(bucket.getValue(), uiState, activate);
+            }
+        }
+    }
+
+    /**
+     * Calls the listeners of a single overlay for each UI where its activation changed between two entries.  If
+     * the listener changed, such as when an overlay is replaced by a new instance, the old listener is
+     * deactivated wherever it was active and the new one activated wherever it now is.
+     */
+    private void fireChanges(Overlay overlay, @Nullable Entry before, @Nullable Entry after)
+    {
+        if (before != null && after != null && before.listener != after.listener)
+        {
+            fireChanges(before.overlay, before, null);
+            fireChanges(overlay, null, after);
+            return;
+        }
+        for (UIState uiState : uiStates.values())
+        {
+            final boolean wasActive = before != null && before.isActiveIn(uiState);
+            final boolean isActive = after != null && after.isActiveIn(uiState);
+            if (wasActive != isActive)
+            {
+                fire(isActive ? after.listener : before.listener, overlay, uiState, isActive);
+            }
+        }
+    }
+
+    private void fire(Set<Overlay> overlays, UIState uiState, boolean activate)
+    {
+        // Copied, since a listener may add or remove overlays
+        for (Overlay overlay : overlays.toArray(new Overlay[0]))
+        {
+            final Entry entry = entries.get(overlay);
+            if (entry != null)
+            {
+                fire(entry.listener, overlay, uiState, activate);
+            }
+        }
+    }
+
+    private void fire(IOverlayListener listener, Overlay overlay, UIState uiState, boolean activate)
+    {
+        try
+        {
+            if (activate)
+            {
+                listener.onActivate(uiState);
+            }
+            else
+            {
+                listener.onDeactivate(uiState);
+            }
+        }
+        catch (Throwable t)
+        {
+            LOGGER.error("Error in overlay listener for " + overlay.getGuid(), t);
+        }
+    }
+
+    /**
+     * The listener, dimension and mask an overlay was added with.
+     */
+    private static class Entry
+    {
+        final Overlay overlay;
+        final IOverlayListener listener;
+        final ResourceKey<Level> dimension;
+        final int mask;
+
+        Entry(Overlay overlay, IOverlayListener listener, ResourceKey<Level> dimension, int mask)
+        {
+            this.overlay = overlay;
+            this.listener = listener;
+            this.dimension = dimension;
+            this.mask = mask;
+        }
+
+        boolean isActiveIn(UIState uiState)
+        {
+            return uiState.active && dimension == uiState.dimension
+                    && ActivationMask.isActive(mask, uiState.activationBits);
+        }
+    }
+}
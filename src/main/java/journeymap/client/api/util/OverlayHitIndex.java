@@ -0,0 +1,309 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.display.ChunkCellsOverlay;
+import journeymap.client.api.display.HeatmapOverlay;
+import journeymap.client.api.display.ImageOverlay;
+import journeymap.client.api.display.MarkerOverlay;
+import journeymap.client.api.display.MovingObjectsOverlay;
+import journeymap.client.api.display.MultiPointOverlay;
+import journeymap.client.api.display.Overlay;
+import journeymap.client.api.display.PolygonOverlay;
+import journeymap.client.api.display.PolylineOverlay;
+import journeymap.client.api.model.MapImage;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Index of the overlays which have an {@link journeymap.client.api.display.IOverlayListener}, used to find
+ * the overlays under the mouse without testing every one of them.
+ * <p>
+ * Candidates are found with a per-dimension {@link SpatialIndex}, then checked exactly: polygons with a
+ * point-in-polygon test that respects their holes, chunk cells and heatmaps by their color or density at the
+ * block, lines by the width of their stroke, and markers, the points of multi-point overlays and moving objects
+ * using the display size and anchors of their {@link MapImage} at the current zoom level.  Icon rotation is not
+ * taken into account.
+ * <p>
+ * Moving objects overlays cover their whole dimension, so one with a listener is tested on every lookup in its
+ * dimension, against the positions of its objects last published.  Since those are read from the buffer used
+ * for drawing, lookups must be made from the thread which draws them.
+ * <p>
+ * Overlays are indexed as they were when added, so an overlay must be added again after its geometry,
+ * icon size, dimension or listener changes. This class is not thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class OverlayHitIndex
+{
+    private final HashMap<ResourceKey<Level>, DimensionIndex> dimensionIndexes = new HashMap<>();
+    private final HashMap<Overlay, ResourceKey<Level>> overlayDimensions = new HashMap<>();
+
+    /**
+     * Adds an overlay, or updates it if it was already added.  Overlays without a listener, or a point listener
+     * for a {@link MultiPointOverlay}, are not indexed.
+     *
+     * @param overlay the overlay
+     */
+    public void add(Overlay overlay)
+    {
+        remove(overlay);
+        if (overlay.getOverlayListener() == null
+                && !(overlay instanceof MultiPointOverlay && ((MultiPointOverlay) overlay).getPointListener() != null))
+        {
+            return;
+        }
+
+        final ResourceKey<Level> dimension = overlay.getDimension();
+        overlayDimensions.put(overlay, dimension);
+        dimensionIndexes.computeIfAbsent(dimension, key -> new DimensionIndex()).add(overlay);
+    }
+
+    /**
+     * Removes an overlay.
+     *
+     * @param overlay the overlay
+     * @return true if it had been added
+     */
+    public boolean remove(Overlay overlay)
+    {
+        if (!overlayDimensions.containsKey(overlay))
+        {
+            return false;
+        }
+        final ResourceKey<Level> dimension = overlayDimensions.remove(overlay);
+        final DimensionIndex index = dimensionIndexes.get(dimension);
+        if (index != null && index.remove(overlay) && index.isEmpty())
+        {
+            dimensionIndexes.remove(dimension);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all overlays which match a filter, such as all those of a mod.
+     *
+     * @param filter the filter
+     */
+    public void removeIf(Predicate<? super Overlay> filter)
+    {
+        overlayDimensions.keySet().removeIf(filter);
+        dimensionIndexes.values().removeIf(index -> {
+            index.removeIf(filter);
+            return index.isEmpty();
+        });
+    }
+
+    /**
+     * Removes all overlays.
+     */
+    public void clear()
+    {
+        overlayDimensions.clear();
+        dimensionIndexes.clear();
+    }
+
+    /**
+     * Gets the overlays active in a UI which contain a block position, in display order with the frontmost first.
+     * Use this to decide which listeners receive {@link journeymap.client.api.display.IOverlayListener#onMouseMove},
+     * {@link journeymap.client.api.display.IOverlayListener#onMouseOut} and
+     * {@link journeymap.client.api.display.IOverlayListener#onMouseClick}.
+     *
+     * @param uiState  the state of the UI, which provides the dimension and zoom level
+     * @param blockPos the block position under the mouse
+     * @return the overlays, empty if none
+     */
+    public List<Overlay> getOverlaysAt(UIState uiState, BlockPos blockPos)
+    {
+        final DimensionIndex index = dimensionIndexes.get(uiState.dimension);
+        if (index == null)
+        {
+            return Collections.emptyList();
+        }
+
+        final List<Overlay> result = new ArrayList<>();
+        index.collect(uiState, blockPos, result);
+        if (result.size() > 1)
+        {
+            result.sort(Collections.reverseOrder());
+        }
+        return result;
+    }
+
+    /**
+     * Determines whether an overlay contains a block position at the zoom level of a UI.
+     *
+     * @param overlay  the overlay
+     * @param uiState  the state of the UI
+     * @param blockPos the block position
+     * @return true if it does
+     */
+    public static boolean contains(Overlay overlay, UIState uiState, BlockPos blockPos)
+    {
+        // Test the center of the block, so it is never exactly on a block-aligned edge
+        final double x = blockPos.getX() + .5;
+        final double z = blockPos.getZ() + .5;
+
+        if (overlay instanceof PolygonOverlay)
+        {
+            final PolygonOverlay polygon = (PolygonOverlay) overlay;
+            return PolygonHelper.contains(polygon.getOuterArea(), polygon.getHoles(), x, z);
+        }
+        else if (overlay instanceof MarkerOverlay)
+        {
+            final MarkerOverlay marker = (MarkerOverlay) overlay;
+            final MapImage icon = marker.getIcon();
+            final double pixelX = (x - (marker.getPoint().getX() + .5)) * uiState.blockSize;
+            final double pixelZ = (z - (marker.getPoint().getZ() + .5)) * uiState.blockSize;
+            return pixelX >= -icon.getAnchorX() && pixelX <= icon.getDisplayWidth() - icon.getAnchorX()
+                    && pixelZ >= -icon.getAnchorY() && pixelZ <= icon.getDisplayHeight() - icon.getAnchorY();
+        }
+        else if (overlay instanceof PolylineOverlay)
+        {
+            final PolylineOverlay polyline = (PolylineOverlay) overlay;
+            final double halfStroke = polyline.getShapeProperties().getStrokeWidth() / 2 / uiState.blockSize;
+            return polyline.getDistanceTo(x, z) <= Math.max(halfStroke, .5);
+        }
+        else if (overlay instanceof MultiPointOverlay)
+        {
+            return ((MultiPointOverlay) overlay).getPointAt(uiState, blockPos) >= 0;
+        }
+        else if (overlay instanceof MovingObjectsOverlay)
+        {
+            return ((MovingObjectsOverlay) overlay).getObjectAt(uiState, blockPos) >= 0;
+        }
+        else if (overlay instanceof ChunkCellsOverlay)
+        {
+            return ((ChunkCellsOverlay) overlay).getColor(blockPos.getX() >> 4, blockPos.getZ() >> 4) != 0;
+        }
+        else if (overlay instanceof HeatmapOverlay)
+        {
+            return ((HeatmapOverlay) overlay).getDensity(blockPos.getX(), blockPos.getZ()) > 0;
+        }
+        else if (overlay instanceof ImageOverlay)
+        {
+            final AABB bounds = overlay.getBounds();
+            return x >= bounds.minX && x <= bounds.maxX && z >= bounds.minZ && z <= bounds.maxZ;
+        }
+        return false;
+    }
+
+    /**
+     * Gets how far an icon can reach from its point, in pixels.
+     */
+    private static double getIconReach(MapImage icon)
+    {
+        final double reachX = Math.max(icon.getAnchorX(), icon.getDisplayWidth() - icon.getAnchorX());
+        final double reachZ = Math.max(icon.getAnchorY(), icon.getDisplayHeight() - icon.getAnchorY());
+        return Math.max(reachX, reachZ);
+    }
+
+    /**
+     * The overlays with listeners in one dimension.
+     */
+    private static class DimensionIndex
+    {
+        // Markers are indexed by their points, since their size on the map depends on the zoom level
+        final SpatialIndex<Overlay> markers = new SpatialIndex<>();
+        final SpatialIndex<Overlay> areas = new SpatialIndex<>();
+        double maxIconReach;
+
+        void add(Overlay overlay)
+        {
+            if (overlay instanceof MarkerOverlay)
+            {
+                final MarkerOverlay marker = (MarkerOverlay) overlay;
+                final BlockPos point = marker.getPoint();
+                markers.put(marker, point.getX(), point.getZ(), point.getX(), point.getZ());
+                maxIconReach = Math.max(maxIconReach, getIconReach(marker.getIcon()));
+            }
+            else if (overlay instanceof MultiPointOverlay)
+            {
+                final MultiPointOverlay multiPoint = (MultiPointOverlay) overlay;
+                final AABB bounds = multiPoint.getBounds();
+                markers.put(multiPoint, (int) bounds.minX, (int) bounds.minZ, (int) bounds.maxX, (int) bounds.maxZ);
+                maxIconReach = Math.max(maxIconReach, getIconReach(multiPoint.getIcon()));
+            }
+            else if (overlay instanceof PolylineOverlay)
+            {
+                // Lines are as wide as their stroke in pixels at every zoom level, like markers' icons
+                final PolylineOverlay polyline = (PolylineOverlay) overlay;
+                final AABB bounds = polyline.getBounds();
+                markers.put(polyline, (int) bounds.minX, (int) bounds.minZ, (int) bounds.maxX, (int) bounds.maxZ);
+                maxIconReach = Math.max(maxIconReach, polyline.getShapeProperties().getStrokeWidth() / 2);
+            }
+            else
+            {
+                final AABB bounds = overlay.getBounds();
+                areas.put(overlay, (int) Math.floor(bounds.minX), (int) Math.floor(bounds.minZ),
+                        (int) Math.ceil(bounds.maxX), (int) Math.ceil(bounds.maxZ));
+            }
+        }
+
+        boolean remove(Overlay overlay)
+        {
+            return markers.remove(overlay) || areas.remove(overlay);
+        }
+
+        void removeIf(Predicate<? super Overlay> filter)
+        {
+            markers.removeIf(filter);
+            areas.removeIf(filter);
+        }
+
+        boolean isEmpty()
+        {
+            return markers.isEmpty() && areas.isEmpty();
+        }
+
+        void collect(UIState uiState, BlockPos blockPos, List<Overlay> result)
+        {
+            final int x = blockPos.getX();
+            final int z = blockPos.getZ();
+            areas.query(x, z, x, z, overlay -> {
+                if (overlay.isActiveIn(uiState) && contains(overlay, uiState, blockPos))
+                {
+                    result.add(overlay);
+                }
+            });
+
+            if (!markers.isEmpty())
+            {
+                // Reach is tracked as a high-water mark, so it stays conservative as markers are removed
+                final int reach = (int) Math.ceil(maxIconReach / uiState.blockSize) + 1;
+                markers.query(x - reach, z - reach, x + reach, z + reach, overlay -> {
+                    if (overlay.isActiveIn(uiState) && contains(overlay, uiState, blockPos))
+                    {
+                        result.add(overlay);
+                    }
+                });
+            }
+        }
+    }
+}
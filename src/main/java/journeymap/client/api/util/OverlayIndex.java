@@ -0,0 +1,170 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.display.Overlay;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Per-dimension spatial index of overlays, used to find the overlays within the area shown by a map
+ * (such as {@link UIState#blockBounds}) without checking every overlay that has been shown.
+ * <p>
+ * Overlays are indexed by the {@link Overlay#getBounds()} and {@link Overlay#getDimension()} they had when added,
+ * so an overlay must be added again after either of those change. This class is not thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class OverlayIndex
+{
+    private final HashMap<ResourceKey<Level>, SpatialIndex<Overlay>> dimensionIndexes = new HashMap<>();
+    private final HashMap<Overlay, ResourceKey<Level>> overlayDimensions = new HashMap<>();
+
+    /**
+     * Adds an overlay, or updates it if it was already added.
+     *
+     * @param overlay the overlay
+     */
+    public void add(Overlay overlay)
+    {
+        // Remove first, so a replacement instance with the same guid becomes the key
+        remove(overlay);
+
+        final ResourceKey<Level> dimension = overlay.getDimension();
+        overlayDimensions.put(overlay, dimension);
+
+        final AABB bounds = overlay.getBounds();
+        dimensionIndexes.computeIfAbsent(dimension, key -> new SpatialIndex<>())
+                .put(overlay, (int) Math.floor(bounds.minX), (int) Math.floor(bounds.minZ),
+                        (int) Math.ceil(bounds.maxX), (int) Math.ceil(bounds.maxZ));
+    }
+
+    /**
+     * Removes an overlay.
+     *
+     * @param overlay the overlay
+     * @return true if it had been added
+     */
+    public boolean remove(Overlay overlay)
+    {
+        if (!overlayDimensions.containsKey(overlay))
+        {
+            return false;
+        }
+        removeFromDimension(overlay, overlayDimensions.remove(overlay));
+        return true;
+    }
+
+    /**
+     * Removes all overlays which match a filter, such as all those of a mod.
+     *
+     * @param filter the filter
+     */
+    public void removeIf(Predicate<? super Overlay> filter)
+    {
+        overlayDimensions.keySet().removeIf(filter);
+        dimensionIndexes.values().removeIf(index -> {
+            index.removeIf(filter);
+            return index.isEmpty();
+        });
+    }
+
+    /**
+     * Removes all overlays.
+     */
+    public void clear()
+    {
+        overlayDimensions.clear();
+        dimensionIndexes.clear();
+    }
+
+    /**
+     * Whether an overlay has been added.
+     *
+     * @param overlay the overlay
+     * @return true if present
+     */
+    public boolean contains(Overlay overlay)
+    {
+        return overlayDimensions.containsKey(overlay);
+    }
+
+    /**
+     * Number of overlays in all dimensions.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return overlayDimensions.size();
+    }
+
+    /**
+     * Gets the overlays in a dimension whose bounds intersect an area of blocks.  Since
+     * {@link journeymap.client.api.display.MarkerOverlay#getBounds()} doesn't include the icon, pad the area by
+     * the icon reach in blocks to also find markers just outside it whose icons reach into it.
+     *
+     * @param dimension   the dimension
+     * @param blockBounds the area, such as {@link UIState#blockBounds}
+     * @return the overlays, in no particular order
+     */
+    public List<Overlay> getOverlays(@Nullable ResourceKey<Level> dimension, AABB blockBounds)
+    {
+        final List<Overlay> result = new ArrayList<>();
+        forEachOverlay(dimension, blockBounds, result::add);
+        return result;
+    }
+
+    /**
+     * Passes the overlays in a dimension whose bounds intersect an area of blocks to a consumer,
+     * in no particular order. The index must not be modified by the consumer.
+     *
+     * @param dimension   the dimension
+     * @param blockBounds the area, such as {@link UIState#blockBounds}
+     * @param consumer    the consumer
+     */
+    public void forEachOverlay(@Nullable ResourceKey<Level> dimension, AABB blockBounds, Consumer<? super Overlay> consumer)
+    {
+        final SpatialIndex<Overlay> index = dimensionIndexes.get(dimension);
+        if (index != null)
+        {
+            index.query((int) Math.floor(blockBounds.minX), (int) Math.floor(blockBounds.minZ),
+                    (int) Math.ceil(blockBounds.maxX), (int) Math.ceil(blockBounds.maxZ), consumer);
+        }
+    }
+
+    private void removeFromDimension(Overlay overlay, @Nullable ResourceKey<Level> dimension)
+    {
+        final SpatialIndex<Overlay> index = dimensionIndexes.get(dimension);
+        if (index != null && index.remove(overlay) && index.isEmpty())
+        {
+            dimensionIndexes.remove(dimension);
+        }
+    }
+}
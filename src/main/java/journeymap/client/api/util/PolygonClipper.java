@@ -0,0 +1,237 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import net.minecraft.world.phys.AABB;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Clips polygons to a rectangle of blocks with the Sutherland-Hodgman algorithm, so that only the part of a
+ * huge polygon near the visible area has to be drawn.
+ * <p>
+ * The hull and each hole are clipped separately.  Where a concave ring leaves and re-enters the rectangle, the
+ * clipped ring runs along the edge of the rectangle between the two, so clip to a rectangle somewhat larger than
+ * the area shown to keep those edges out of sight.  Points where rings cross the rectangle are rounded to the
+ * nearest block.
+ */
+@ParametersAreNonnullByDefault
+public final class PolygonClipper
+{
+    private PolygonClipper()
+    {
+    }
+
+    /**
+     * Clips a polygon and its holes to the XZ extent of a bounding box.
+     *
+     * @param polygon the polygon
+     * @param bounds  the bounds
+     * @return the clipped polygon, or null if none of it is inside the bounds
+     */
+    @Nullable
+    public static MapPolygonWithHoles clip(MapPolygonWithHoles polygon, AABB bounds)
+    {
+        return clip(polygon.hull, polygon.holes, (int) Math.floor(bounds.minX), (int) Math.floor(bounds.minZ),
+                (int) Math.ceil(bounds.maxX), (int) Math.ceil(bounds.maxZ));
+    }
+
+    /**
+     * Clips a polygon and its holes to a rectangle.  Holes outside the rectangle are left out.
+     *
+     * @param hull  the outer ring
+     * @param holes the holes, if any
+     * @param minX  min block x
+     * @param minZ  min block z
+     * @param maxX  max block x
+     * @param maxZ  max block z
+     * @return the clipped polygon, or null if none of it is inside the rectangle
+     */
+    @Nullable
+    public static MapPolygonWithHoles clip(MapPolygon hull, @Nullable List<MapPolygon> holes, int minX, int minZ, int maxX, int maxZ)
+    {
+        final MapPolygon clippedHull = clip(hull, minX, minZ, maxX, maxZ);
+        if (clippedHull == null)
+        {
+            return null;
+        }
+
+        List<MapPolygon> clippedHoles = null;
+        if (holes != null)
+        {
+            clippedHoles = new ArrayList<>(holes.size());
+            for (MapPolygon hole : holes)
+            {
+                final MapPolygon clippedHole = clip(hole, minX, minZ, maxX, maxZ);
+                if (clippedHole != null)
+                {
+                    clippedHoles.add(clippedHole);
+                }
+            }
+        }
+        return new MapPolygonWithHoles(clippedHull, clippedHoles);
+    }
+
+    /**
+     * Clips a ring to a rectangle.
+     *
+     * @param ring the ring
+     * @param minX min block x
+     * @param minZ min block z
+     * @param maxX max block x
+     * @param maxZ max block z
+     * @return the ring itself if it is inside the rectangle, the clipped ring, or null if none of its area is inside
+     */
+    @Nullable
+    public static MapPolygon clip(MapPolygon ring, int minX, int minZ, int maxX, int maxZ)
+    {
+        final AABB bounds = ring.getBounds();
+        if (bounds.minX >= minX && bounds.maxX <= maxX && bounds.minZ >= minZ && bounds.maxZ <= maxZ)
+        {
+            return ring;
+        }
+        if (bounds.maxX < minX || bounds.minX > maxX || bounds.maxZ < minZ || bounds.minZ > maxZ)
+        {
+            return null;
+        }
+
+        final int count = ring.getPointCount();
+        double[] points = new double[count * 2];
+        for (int i = 0; i < count; i++)
+        {
+            points[i * 2] = ring.getX(i);
+            points[i * 2 + 1] = ring.getZ(i);
+        }
+
+        points = clipSide(points, 0, minX, true);
+        points = clipSide(points, 0, maxX, false);
+        points = clipSide(points, 1, minZ, true);
+        points = clipSide(points, 1, maxZ, false);
+
+        // Round to blocks, dropping repeated points
+        final int[] xz = new int[points.length];
+        int size = 0;
+        for (int i = 0; i < points.length; i += 2)
+        {
+            final int x = (int) Math.round(points[i]);
+            final int z = (int) Math.round(points[i + 1]);
+            if (size > 0 && xz[size - 2] == x && xz[size - 1] == z)
+            {
+                continue;
+            }
+            xz[size++] = x;
+            xz[size++] = z;
+        }
+        while (size >= 4 && xz[0] == xz[size - 2] && xz[1] == xz[size - 1])
+        {
+            size -= 2;
+        }
+
+        // A concave ring can reach around the rectangle without any of its area inside, leaving only points
+        // along the sides
+        if (size < 6 || doubleArea(xz, size) == 0)
+        {
+            return null;
+        }
+        return new MapPolygon(Arrays.copyOf(xz, size), ring.getY(0));
+    }
+
+    /**
+     * Gets twice the area of a ring of points with the shoelace formula.
+     *
+     * @param xz   the x and z of each point
+     * @param size the number of values used in xz
+     * @return twice the area, which is never negative
+     */
+    private static long doubleArea(int[] xz, int size)
+    {
+        long area = 0;
+        for (int i = 0, j = size - 2; i < size; j = i, i += 2)
+        {
+            area += (long) xz[j] * xz[i + 1] - (long) xz[i] * xz[j + 1];
+        }
+        return Math.abs(area);
+    }
+
+    /**
+     * Clips a ring of points against one side of the rectangle.
+     *
+     * @param axis  0 for x, 1 for z
+     * @param above whether points must be at or above the limit, rather than at or below it
+     * @return the clipped points
+     */
+    private static double[] clipSide(double[] in, int axis, double limit, boolean above)
+    {
+        final int length = in.length;
+        if (length == 0)
+        {
+            return in;
+        }
+
+        // Each point adds at most itself and one crossing
+        final double[] out = new double[length * 2];
+        int size = 0;
+
+        double prevX = in[length - 2];
+        double prevZ = in[length - 1];
+        boolean prevInside = inside(axis == 0 ? prevX : prevZ, limit, above);
+        for (int i = 0; i < length; i += 2)
+        {
+            final double x = in[i];
+            final double z = in[i + 1];
+            final boolean inside = inside(axis == 0 ? x : z, limit, above);
+            if (inside != prevInside)
+            {
+                // Where the edge crosses the side
+                if (axis == 0)
+                {
+                    out[size++] = limit;
+                    out[size++] = prevZ + (z - prevZ) * (limit - prevX) / (x - prevX);
+                }
+                else
+                {
+                    out[size++] = prevX + (x - prevX) * (limit - prevZ) / (z - prevZ);
+                    out[size++] = limit;
+                }
+            }
+            if (inside)
+            {
+                out[size++] = x;
+                out[size++] = z;
+            }
+            prevX = x;
+            prevZ = z;
+            prevInside = inside;
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    private static boolean inside(double value, double limit, boolean above)
+    {
+        return above ? value >= limit : value <= limit;
+    }
+}
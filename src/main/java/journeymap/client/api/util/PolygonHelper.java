@@ -23,19 +23,18 @@ package journeymap.client.api.util;
 import journeymap.client.api.model.MapPolygon;
 import journeymap.client.api.model.MapPolygonWithHoles;
 import net.minecraft.core.BlockPos;
-import net.minecraft.util.Tuple;
 import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.phys.AABB;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.awt.Polygon;
 import java.awt.Rectangle;
 import java.awt.geom.Area;
 import java.awt.geom.PathIterator;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Utility class related to Polygons.
@@ -119,7 +118,8 @@ public class PolygonHelper
 
     /**
      * Given a collection of chunks, creates one or more {@link MapPolygonWithHoles} that covers them.
-     * (Just a convenience wrapper for the {@link Area}-based methods.)
+     * The outlines are traced on the chunk grid by {@link ChunkOutlineTracer}, which gives the same polygons
+     * as the {@link Area}-based methods in linear time.
      *
      * @param chunks The set of chunks.
      * @param y      The y-coordinate for the resulting polygons.
@@ -128,7 +128,34 @@ public class PolygonHelper
     @Nonnull
     public static List<MapPolygonWithHoles> createChunksPolygon(@Nonnull final Collection<ChunkPos> chunks, final int y)
     {
-        return createPolygonFromArea(createChunksArea(chunks), y);
+        return ChunkOutlineTracer.trace(chunks, y);
+    }
+
+    /**
+     * Given a mask of chunks, creates one or more {@link MapPolygonWithHoles} that covers them.
+     *
+     * @param chunks The chunks.
+     * @param y      The y-coordinate for the resulting polygons.
+     * @return One or more polygons that cover the specified chunks.
+     */
+    @Nonnull
+    public static List<MapPolygonWithHoles> createChunksPolygon(@Nonnull final ChunkMask chunks, final int y)
+    {
+        return chunks.toPolygons(y);
+    }
+
+    /**
+     * As {@link #createChunksPolygon}, but outlines each region of 32x32 chunks in parallel on the common
+     * fork/join pool.  The polygons are identical; use this for very large collections of chunks.
+     *
+     * @param chunks The set of chunks.
+     * @param y      The y-coordinate for the resulting polygons.
+     * @return One or more polygons that cover the specified chunks.
+     */
+    @Nonnull
+    public static List<MapPolygonWithHoles> createChunksPolygonParallel(@Nonnull final Collection<ChunkPos> chunks, final int y)
+    {
+        return ChunkOutlineTracer.traceParallel(chunks, y);
     }
 
     /**
@@ -140,17 +167,17 @@ public class PolygonHelper
     @Nonnull
     public static Area toArea(@Nonnull final MapPolygon polygon)
     {
-        final List<BlockPos> points = polygon.getPoints();
-        final int[] xPoints = new int[points.size()];
-        final int[] yPoints = new int[points.size()];
+        final int count = polygon.getPointCount();
+        final int[] xPoints = new int[count];
+        final int[] yPoints = new int[count];
 
-        for (int i = 0; i < points.size(); ++i)
+        for (int i = 0; i < count; ++i)
         {
-            xPoints[i] = points.get(i).getX();
-            yPoints[i] = points.get(i).getZ();
+            xPoints[i] = polygon.getX(i);
+            yPoints[i] = polygon.getZ(i);
         }
 
-        return new Area(new Polygon(xPoints, yPoints, points.size()));
+        return new Area(new Polygon(xPoints, yPoints, count));
     }
 
     /**
@@ -195,6 +222,7 @@ public class PolygonHelper
         }
         if (!poly.isEmpty())
         {
+            poly = simplify(poly);
             polygons.add(new MapPolygon(poly));
         }
 
@@ -207,6 +235,10 @@ public class PolygonHelper
      * <p>
      * Assumes that hulls use CCW point winding and holes use CW point winding, which seems to be
      * consistent with {@link #createPolygonFromArea}.
+     * <p>
+     * Hulls are indexed by their bounding boxes, so each hole is only tested against the hulls around it.
+     * A hole belongs to the smallest hull containing a point just outside the hole's first edge, which
+     * is the innermost one when an island sits inside another hull's hole. Holes outside every hull are dropped.
      *
      * @param polygons The input list of {@link MapPolygon}s.
      * @return The resulting list of {@link MapPolygonWithHoles}.
@@ -229,31 +261,56 @@ public class PolygonHelper
             }
         }
 
-        final List<Tuple<MapPolygon, Area>> holeAreas = holes.stream()
-                .map(hole -> new Tuple<>(hole, toArea(hole)))
-                .collect(Collectors.toList());
-
-        final List<MapPolygonWithHoles> result = new ArrayList<>();
-        for (final MapPolygon hull : hulls)
+        final List<List<MapPolygon>> hullHoles = new ArrayList<>(hulls.size());
+        final double[] hullAreas = new double[hulls.size()];
+        final SpatialIndex<Integer> hullIndex = new SpatialIndex<>();
+        for (int i = 0; i < hulls.size(); ++i)
         {
-            final Area hullArea = toArea(hull);
-            final List<MapPolygon> hullHoles = new ArrayList<>();
+            final MapPolygon hull = hulls.get(i);
+            final AABB bounds = hull.getBounds();
+            hullHoles.add(new ArrayList<>());
+            hullAreas[i] = Math.abs(signedArea(hull));
+            hullIndex.put(i, (int) bounds.minX, (int) bounds.minZ, (int) bounds.maxX, (int) bounds.maxZ);
+        }
 
-            for (final Iterator<Tuple<MapPolygon, Area>> iterator = holeAreas.iterator(); iterator.hasNext(); )
+        final int[] owner = new int[1];
+        for (final MapPolygon hole : holes)
+        {
+            // A point just to the left of the first edge, which is outside a CW hole but inside its hull.
+            // Unlike a vertex, it can't be on the hull's boundary.
+            int start = 0;
+            while (start < hole.getPointCount() - 1
+                    && hole.getX(start) == hole.getX(start + 1) && hole.getZ(start) == hole.getZ(start + 1))
             {
-                final Tuple<MapPolygon, Area> holeArea = iterator.next();
-                final Area intersection = new Area(hullArea);
-                intersection.intersect(holeArea.getB());
-                if (!intersection.isEmpty())
+                start++;
+            }
+            final int end = (start + 1) % hole.getPointCount();
+            final double edgeX = hole.getX(end) - hole.getX(start);
+            final double edgeZ = hole.getZ(end) - hole.getZ(start);
+            final double length = Math.max(1e-9, Math.sqrt(edgeX * edgeX + edgeZ * edgeZ));
+            final double x = hole.getX(start) + edgeX / 2 + edgeZ / length * 1e-3;
+            final double z = hole.getZ(start) + edgeZ / 2 - edgeX / length * 1e-3;
+
+            owner[0] = -1;
+            hullIndex.query((int) Math.floor(x), (int) Math.floor(z), (int) Math.ceil(x), (int) Math.ceil(z), i -> {
+                if ((owner[0] < 0 || hullAreas[i] < hullAreas[owner[0]]
+                        || (hullAreas[i] == hullAreas[owner[0]] && i < owner[0]))
+                        && contains(hulls.get(i), x, z))
                 {
-                    hullHoles.add(holeArea.getA());
-                    iterator.remove();
+                    owner[0] = i;
                 }
+            });
+            if (owner[0] >= 0)
+            {
+                hullHoles.get(owner[0]).add(hole);
             }
-
-            result.add(new MapPolygonWithHoles(hull, hullHoles));
         }
 
+        final List<MapPolygonWithHoles> result = new ArrayList<>(hulls.size());
+        for (int i = 0; i < hulls.size(); ++i)
+        {
+            result.add(new MapPolygonWithHoles(hulls.get(i), hullHoles.get(i)));
+        }
         return result;
     }
 
@@ -294,9 +351,96 @@ public class PolygonHelper
             }
         }
         result.add(prev1);
+
+        // The last point may also be on the line from the point before it back to the first, and the first on
+        // the line from the last to the second
+        boolean removed = true;
+        while (removed && result.size() > 3)
+        {
+            removed = false;
+            if (isCollinear(result.get(result.size() - 2), result.get(result.size() - 1), result.get(0)))
+            {
+                result.remove(result.size() - 1);
+                removed = true;
+            }
+            else if (isCollinear(result.get(result.size() - 1), result.get(0), result.get(1)))
+            {
+                result.remove(0);
+                removed = true;
+            }
+        }
         return result;
     }
 
+    private static boolean isCollinear(@Nonnull final BlockPos a, @Nonnull final BlockPos b, @Nonnull final BlockPos c)
+    {
+        return (a.getX() == b.getX() && b.getX() == c.getX()) || (a.getZ() == b.getZ() && b.getZ() == c.getZ());
+    }
+
+    /**
+     * Determine if a point is inside a polygon (XZ coords only), using the even-odd rule.
+     * Points exactly on an edge may be considered either inside or outside.
+     *
+     * @param polygon The polygon.
+     * @param x       The x coordinate.
+     * @param z       The z coordinate.
+     * @return True if the point is inside.
+     */
+    public static boolean contains(@Nonnull final MapPolygon polygon, final double x, final double z)
+    {
+        final AABB bounds = polygon.getBounds();
+        if (x < bounds.minX || x > bounds.maxX || z < bounds.minZ || z > bounds.maxZ)
+        {
+            return false;
+        }
+
+        final int count = polygon.getPointCount();
+        boolean inside = false;
+        int ax = polygon.getX(count - 1);
+        int az = polygon.getZ(count - 1);
+        for (int i = 0; i < count; ++i)
+        {
+            final int bx = polygon.getX(i);
+            final int bz = polygon.getZ(i);
+            if ((bz > z) != (az > z) && x < (ax - bx) * (z - bz) / (double) (az - bz) + bx)
+            {
+                inside = !inside;
+            }
+            ax = bx;
+            az = bz;
+        }
+        return inside;
+    }
+
+    /**
+     * Determine if a point is inside a polygon's hull but not inside any of its holes (XZ coords only).
+     *
+     * @param hull  The hull.
+     * @param holes The holes, if any.
+     * @param x     The x coordinate.
+     * @param z     The z coordinate.
+     * @return True if the point is inside.
+     */
+    public static boolean contains(@Nonnull final MapPolygon hull, @Nullable final List<MapPolygon> holes,
+                                   final double x, final double z)
+    {
+        if (!contains(hull, x, z))
+        {
+            return false;
+        }
+        if (holes != null)
+        {
+            for (final MapPolygon hole : holes)
+            {
+                if (contains(hole, x, z))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Determine if the given polygon is a "hole".  Holes have CW point winding.
      * Assumes that +X is "right" and +Z is "down".
@@ -305,16 +449,32 @@ public class PolygonHelper
      * @return True if it's a hole.
      */
     private static boolean isHole(@Nonnull final MapPolygon polygon)
+    {
+        return signedArea(polygon) < 0;
+    }
+
+    /**
+     * Twice the signed area of a polygon (XZ coords only), which is positive for CCW point winding
+     * and negative for CW.
+     *
+     * @param polygon The polygon.
+     * @return Twice the signed area.
+     */
+    private static long signedArea(@Nonnull final MapPolygon polygon)
     {
         // from https://stackoverflow.com/a/18472899/43534
         long sum = 0;
-        final List<BlockPos> points = polygon.getPoints();
-        BlockPos a = points.get(points.size() - 1);
-        for (final BlockPos b : points)
+        final int count = polygon.getPointCount();
+        int ax = polygon.getX(count - 1);
+        int az = polygon.getZ(count - 1);
+        for (int i = 0; i < count; ++i)
         {
-            sum += (long) (b.getX() - a.getX()) * (b.getZ() + a.getZ());
-            a = b;
+            final int bx = polygon.getX(i);
+            final int bz = polygon.getZ(i);
+            sum += (long) (bx - ax) * (bz + az);
+            ax = bx;
+            az = bz;
         }
-        return sum < 0;
+        return sum;
     }
 }
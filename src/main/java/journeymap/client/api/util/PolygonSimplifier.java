@@ -0,0 +1,454 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import net.minecraft.world.phys.AABB;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reduces the number of points in polygons with the Ramer-Douglas-Peucker algorithm, so that outlines which are
+ * only a few pixels across at low zoom levels can be drawn with a few points.
+ * <p>
+ * Points are removed only where the simplified outline stays within a tolerance of the original.  Each ring keeps
+ * its first point and at least three points.  When simplifying a polygon with holes, any ring which would cross
+ * itself or another ring, or which would leave a hole outside the hull or inside another hole, is simplified
+ * again with a smaller tolerance until none do, so holes never cross their hull or each other.
+ */
+@ParametersAreNonnullByDefault
+public final class PolygonSimplifier
+{
+    // Below this tolerance in blocks, the original ring is used
+    private static final double MIN_TOLERANCE = 0.5;
+
+    private PolygonSimplifier()
+    {
+    }
+
+    /**
+     * Simplifies a ring.
+     *
+     * @param ring      the ring
+     * @param tolerance how far, in blocks, the simplified ring may be from the original
+     * @return the simplified ring, or the same ring if no points could be removed
+     */
+    public static MapPolygon simplify(MapPolygon ring, double tolerance)
+    {
+        final int count = ring.getPointCount();
+        if (count <= 3 || tolerance < MIN_TOLERANCE)
+        {
+            return ring;
+        }
+
+        final boolean[] keep = new boolean[count];
+        keep[0] = true;
+
+        // Split the closed ring at the point furthest from the first, then simplify both halves
+        int far = 0;
+        long farDistance = -1;
+        for (int i = 1; i < count; i++)
+        {
+            final long dx = ring.getX(i) - ring.getX(0);
+            final long dz = ring.getZ(i) - ring.getZ(0);
+            final long distance = dx * dx + dz * dz;
+            if (distance > farDistance)
+            {
+                far = i;
+                farDistance = distance;
+            }
+        }
+        keep[far] = true;
+
+        final IntArrayList stack = new IntArrayList();
+        stack.add(0);
+        stack.add(far);
+        stack.add(far);
+        stack.add(count);
+        while (!stack.isEmpty())
+        {
+            final int last = stack.removeInt(stack.size() - 1);
+            final int first = stack.removeInt(stack.size() - 1);
+            final int index = furthestFromSegment(ring, first, last);
+            if (index >= 0 && distanceToSegment(ring, index, first, last) > tolerance)
+            {
+                keep[index] = true;
+                stack.add(first);
+                stack.add(index);
+                stack.add(index);
+                stack.add(last);
+            }
+        }
+
+        int kept = 0;
+        for (boolean k : keep)
+        {
+            if (k)
+            {
+                kept++;
+            }
+        }
+
+        if (kept < 3)
+        {
+            // Keep the point furthest from the line between the two kept, so the ring still has an area
+            int index = -1;
+            double furthestDistance = 0;
+            for (int i = 1; i < count; i++)
+            {
+                final double distance = distanceToSegment(ring, i, 0, far);
+                if (i != far && distance > furthestDistance)
+                {
+                    index = i;
+                    furthestDistance = distance;
+                }
+            }
+            if (index < 0)
+            {
+                return ring;
+            }
+            keep[index] = true;
+            kept++;
+        }
+
+        if (kept == count)
+        {
+            return ring;
+        }
+
+        final int[] xz = new int[kept * 2];
+        int length = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (keep[i])
+            {
+                xz[length++] = ring.getX(i);
+                xz[length++] = ring.getZ(i);
+            }
+        }
+        return new MapPolygon(xz, ring.getY(0));
+    }
+
+    /**
+     * Simplifies a polygon and its holes, without letting any of the rings cross.
+     *
+     * @param hull      the outer ring
+     * @param holes     the holes, if any
+     * @param tolerance how far, in blocks, the simplified rings may be from the originals
+     * @return the simplified polygon
+     */
+    public static MapPolygonWithHoles simplify(MapPolygon hull, @Nullable List<MapPolygon> holes, double tolerance)
+    {
+        final int ringCount = 1 + (holes == null ? 0 : holes.size());
+        final MapPolygon[] originals = new MapPolygon[ringCount];
+        originals[0] = hull;
+        for (int i = 1; i < ringCount; i++)
+        {
+            originals[i] = holes.get(i - 1);
+        }
+
+        final MapPolygon[] rings = new MapPolygon[ringCount];
+        final double[] tolerances = new double[ringCount];
+        for (int i = 0; i < ringCount; i++)
+        {
+            tolerances[i] = tolerance;
+            rings[i] = simplify(originals[i], tolerance);
+        }
+
+        // Halve the tolerance of crossing rings until they don't cross, or are back to the originals
+        boolean[] crossing;
+        boolean refined = true;
+        while (refined && ((crossing = findCrossing(rings)) != null || (crossing = findMisplacedHoles(rings)) != null))
+        {
+            refined = false;
+            for (int i = 0; i < ringCount; i++)
+            {
+                if (crossing[i] && rings[i] != originals[i])
+                {
+                    tolerances[i] /= 2;
+                    rings[i] = simplify(originals[i], tolerances[i]);
+                    refined = true;
+                }
+            }
+        }
+
+        List<MapPolygon> simplifiedHoles = null;
+        if (holes != null)
+        {
+            simplifiedHoles = new ArrayList<>(ringCount - 1);
+            for (int i = 1; i < ringCount; i++)
+            {
+                simplifiedHoles.add(rings[i]);
+            }
+        }
+        return new MapPolygonWithHoles(rings[0], simplifiedHoles);
+    }
+
+    /**
+     * Simplifies a polygon and its holes, without letting any of the rings cross.
+     *
+     * @param polygon   the polygon
+     * @param tolerance how far, in blocks, the simplified rings may be from the originals
+     * @return the simplified polygon
+     */
+    public static MapPolygonWithHoles simplify(MapPolygonWithHoles polygon, double tolerance)
+    {
+        return simplify(polygon.hull, polygon.holes, tolerance);
+    }
+
+    /**
+     * Finds the rings with edges which cross, checking only edges which share a cell of a grid.  Each edge is
+     * added only to the cells it passes through, so a long diagonal edge isn't compared with every edge in its
+     * bounding box.
+     *
+     * @return flags for the rings which cross, or null if none do
+     */
+    @Nullable
+    private static boolean[] findCrossing(MapPolygon[] rings)
+    {
+        int edgeCount = 0;
+        int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (MapPolygon ring : rings)
+        {
+            edgeCount += ring.getPointCount();
+            for (int i = 0, count = ring.getPointCount(); i < count; i++)
+            {
+                minX = Math.min(minX, ring.getX(i));
+                minZ = Math.min(minZ, ring.getZ(i));
+                maxX = Math.max(maxX, ring.getX(i));
+                maxZ = Math.max(maxZ, ring.getZ(i));
+            }
+        }
+
+        // Cells sized so there are about as many cells as edges
+        final long extent = Math.max((long) maxX - minX, (long) maxZ - minZ) + 1;
+        final long cellSize = Math.max(1, (long) Math.ceil(extent / Math.sqrt(edgeCount)));
+
+        final Long2ObjectOpenHashMap<IntArrayList> cells = new Long2ObjectOpenHashMap<>();
+        boolean[] crossing = null;
+        for (int r = 0; r < rings.length; r++)
+        {
+            final MapPolygon ring = rings[r];
+            for (int i = 0, count = ring.getPointCount(); i < count; i++)
+            {
+                final int j = (i + 1) % count;
+                final long x1 = ring.getX(i) - (long) minX, z1 = ring.getZ(i) - (long) minZ;
+                final long x2 = ring.getX(j) - (long) minX, z2 = ring.getZ(j) - (long) minZ;
+                final long minCellX = Math.min(x1, x2) / cellSize;
+                final long maxCellX = Math.max(x1, x2) / cellSize;
+                for (long cellX = minCellX; cellX <= maxCellX; cellX++)
+                {
+                    // The cells of this column the edge passes through, from where it enters the column to where
+                    // it leaves
+                    long minCellZ = Math.min(z1, z2) / cellSize;
+                    long maxCellZ = Math.max(z1, z2) / cellSize;
+                    if (x1 != x2)
+                    {
+                        final double slope = (z2 - z1) / (double) (x2 - x1);
+                        final long enterX = Math.max(Math.min(x1, x2), cellX * cellSize);
+                        final long leaveX = Math.min(Math.max(x1, x2), (cellX + 1) * cellSize);
+                        final double enterZ = z1 + (enterX - x1) * slope;
+                        final double leaveZ = z1 + (leaveX - x1) * slope;
+                        minCellZ = Math.max(minCellZ, (long) Math.floor(Math.min(enterZ, leaveZ) / cellSize));
+                        maxCellZ = Math.min(maxCellZ, (long) Math.floor(Math.max(enterZ, leaveZ) / cellSize));
+                    }
+                    for (long cellZ = minCellZ; cellZ <= maxCellZ; cellZ++)
+                    {
+                        final IntArrayList cell = cells.computeIfAbsent((cellZ << 32) | cellX, key -> new IntArrayList());
+                        for (int c = 0; c < cell.size(); c += 2)
+                        {
+                            final int otherRing = cell.getInt(c);
+                            final int otherEdge = cell.getInt(c + 1);
+                            if (crosses(ring, i, rings[otherRing], otherEdge))
+                            {
+                                if (crossing == null)
+                                {
+                                    crossing = new boolean[rings.length];
+                                }
+                                crossing[r] = true;
+                                crossing[otherRing] = true;
+                            }
+                        }
+                        cell.add(r);
+                        cell.add(i);
+                    }
+                }
+            }
+        }
+        return crossing;
+    }
+
+    /**
+     * Finds holes which are outside the hull or inside another hole.  Simplifying a ring can move it past a small
+     * ring without crossing any of its edges, so this is checked once no edges cross.  Rings which don't cross are
+     * either inside or outside each other, so one point of a hole which isn't on the other ring decides it.
+     *
+     * @return flags for the rings misplaced, or null if none are
+     */
+    @Nullable
+    private static boolean[] findMisplacedHoles(MapPolygon[] rings)
+    {
+        boolean[] misplaced = null;
+        for (int h = 1; h < rings.length; h++)
+        {
+            for (int r = 0; r < rings.length; r++)
+            {
+                if (r == h || (r > 0 && !encloses(rings[r].getBounds(), rings[h].getBounds())))
+                {
+                    continue;
+                }
+                final int side = locate(rings[r], rings[h]);
+                if (r == 0 ? side < 0 : side > 0)
+                {
+                    if (misplaced == null)
+                    {
+                        misplaced = new boolean[rings.length];
+                    }
+                    misplaced[r] = true;
+                    misplaced[h] = true;
+                }
+            }
+        }
+        return misplaced;
+    }
+
+    private static boolean encloses(AABB outer, AABB inner)
+    {
+        return inner.minX >= outer.minX && inner.maxX <= outer.maxX && inner.minZ >= outer.minZ && inner.maxZ <= outer.maxZ;
+    }
+
+    /**
+     * Finds which side of a ring another ring is on, from the first of its points which isn't on the ring.
+     *
+     * @return 1 if inside, -1 if outside, or 0 if every point is on the ring
+     */
+    private static int locate(MapPolygon ring, MapPolygon other)
+    {
+        for (int i = 0, count = other.getPointCount(); i < count; i++)
+        {
+            final int side = locate(ring, other.getX(i), other.getZ(i));
+            if (side != 0)
+            {
+                return side;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds which side of a ring a point is on, exactly, with the even-odd rule.
+     *
+     * @return 1 if inside, -1 if outside, or 0 if on an edge
+     */
+    private static int locate(MapPolygon ring, long x, long z)
+    {
+        boolean inside = false;
+        final int count = ring.getPointCount();
+        long ax = ring.getX(count - 1), az = ring.getZ(count - 1);
+        for (int i = 0; i < count; i++)
+        {
+            final long bx = ring.getX(i), bz = ring.getZ(i);
+            final long cross = (bx - ax) * (z - az) - (bz - az) * (x - ax);
+            if (cross == 0 && x >= Math.min(ax, bx) && x <= Math.max(ax, bx) && z >= Math.min(az, bz) && z <= Math.max(az, bz))
+            {
+                return 0;
+            }
+            if ((bz > z) != (az > z) && (cross > 0) == (bz > az))
+            {
+                inside = !inside;
+            }
+            ax = bx;
+            az = bz;
+        }
+        return inside ? 1 : -1;
+    }
+
+    /**
+     * Whether two edges cross at a point inside both, or overlap along a length of both.  Edges which only touch
+     * don't cross.
+     */
+    private static boolean crosses(MapPolygon a, int edgeA, MapPolygon b, int edgeB)
+    {
+        final int nextA = (edgeA + 1) % a.getPointCount();
+        final int nextB = (edgeB + 1) % b.getPointCount();
+        final long ax = a.getX(edgeA), az = a.getZ(edgeA), bx = a.getX(nextA), bz = a.getZ(nextA);
+        final long cx = b.getX(edgeB), cz = b.getZ(edgeB), dx = b.getX(nextB), dz = b.getZ(nextB);
+
+        final long d1 = Long.signum((bx - ax) * (cz - az) - (bz - az) * (cx - ax));
+        final long d2 = Long.signum((bx - ax) * (dz - az) - (bz - az) * (dx - ax));
+        final long d3 = Long.signum((dx - cx) * (az - cz) - (dz - cz) * (ax - cx));
+        final long d4 = Long.signum((dx - cx) * (bz - cz) - (dz - cz) * (bx - cx));
+        if (d1 == 0 && d2 == 0 && d3 == 0 && d4 == 0)
+        {
+            // Collinear, so compare the ranges they cover along the axis the first edge runs furthest in
+            final boolean alongX = Math.abs(bx - ax) >= Math.abs(bz - az);
+            final long a1 = alongX ? ax : az, a2 = alongX ? bx : bz;
+            final long b1 = alongX ? cx : cz, b2 = alongX ? dx : dz;
+            return Math.max(Math.min(a1, a2), Math.min(b1, b2)) < Math.min(Math.max(a1, a2), Math.max(b1, b2));
+        }
+        return d1 * d2 < 0 && d3 * d4 < 0;
+    }
+
+    /**
+     * Finds the point between two indexes (exclusive) furthest from the segment joining them.  An end index equal
+     * to the point count means the first point.
+     *
+     * @return the index, or -1 if there are no points between them
+     */
+    private static int furthestFromSegment(MapPolygon ring, int first, int last)
+    {
+        int furthest = -1;
+        double furthestDistance = -1;
+        for (int i = first + 1; i < last; i++)
+        {
+            final double distance = distanceToSegment(ring, i, first, last);
+            if (distance > furthestDistance)
+            {
+                furthest = i;
+                furthestDistance = distance;
+            }
+        }
+        return furthest;
+    }
+
+    private static double distanceToSegment(MapPolygon ring, int index, int first, int last)
+    {
+        final int end = last % ring.getPointCount();
+        final double ax = ring.getX(first), az = ring.getZ(first);
+        final double bx = ring.getX(end), bz = ring.getZ(end);
+        final double px = ring.getX(index), pz = ring.getZ(index);
+
+        final double dx = bx - ax;
+        final double dz = bz - az;
+        final double lengthSquared = dx * dx + dz * dz;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (pz - az) * dz) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        final double ex = ax + t * dx - px;
+        final double ez = az + t * dz - pz;
+        return Math.sqrt(ex * ex + ez * ez);
+    }
+}
@@ -0,0 +1,831 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import journeymap.client.api.model.Triangulation;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits polygons with holes into triangles by ear clipping, so they can be filled without tessellating them
+ * on every frame.
+ * <p>
+ * The holes are joined to the hull one at a time, from the hole reaching furthest east, by a bridge from the
+ * hole's easternmost point to a point of the ring it can see to the east.  This makes a single ring which
+ * visits the bridged points twice.  Ears are then clipped from that ring, checking only the points which could
+ * lie inside an ear: those which aren't convex, and those shared by more than one part of the ring, found through
+ * a grid.  Rings may be in either winding order, and may touch at their points, as chunk outlines do.  If a ring
+ * crosses itself there may be no ear left to clip; then a convex point is clipped anyway, so the result always
+ * has triangles but they may overlap.
+ * <p>
+ * All triangles are wound the same way, clockwise as seen on the map with +X east and +Z south.
+ */
+@ParametersAreNonnullByDefault
+public final class PolygonTriangulator
+{
+    private PolygonTriangulator()
+    {
+    }
+
+    /**
+     * Triangulates a polygon.
+     *
+     * @param polygon the polygon
+     * @return the triangles
+     */
+    public static Triangulation triangulate(MapPolygon polygon)
+    {
+        return triangulate(polygon, null);
+    }
+
+    /**
+     * Triangulates a polygon with holes.
+     *
+     * @param polygon the polygon
+     * @return the triangles
+     */
+    public static Triangulation triangulate(MapPolygonWithHoles polygon)
+    {
+        return triangulate(polygon.hull, polygon.holes);
+    }
+
+    /**
+     * Triangulates a polygon with holes.
+     *
+     * @param hull  the outer ring
+     * @param holes the holes, if any
+     * @return the triangles
+     */
+    public static Triangulation triangulate(MapPolygon hull, @Nullable List<MapPolygon> holes)
+    {
+        final List<MapPolygon> rings = holes == null ? Collections.emptyList() : holes;
+        final int holeCount = rings.size();
+        int vertexCount = hull.getPointCount();
+        for (MapPolygon hole : rings)
+        {
+            vertexCount += hole.getPointCount();
+        }
+
+        final int[] xz = new int[vertexCount * 2];
+        final int[] ringEnds = new int[holeCount + 1];
+        int offset = copyPoints(hull, xz, 0);
+        ringEnds[0] = offset / 2;
+        for (int i = 0; i < holeCount; i++)
+        {
+            offset = copyPoints(rings.get(i), xz, offset);
+            ringEnds[i + 1] = offset / 2;
+        }
+
+        final Ring ring = new Ring(xz, vertexCount + holeCount * 2);
+        ring.head = ring.link(0, ringEnds[0], true);
+        if (ring.head < 0)
+        {
+            return new Triangulation(xz, new int[0]);
+        }
+
+        // Each hole by the easternmost node of its ring, sorted by x so the holes are joined from the east
+        final long[] order = new long[holeCount];
+        int linked = 0;
+        for (int i = 0; i < holeCount; i++)
+        {
+            final int node = ring.link(ringEnds[i], ringEnds[i + 1], false);
+            if (node >= 0)
+            {
+                order[linked++] = ((long) ring.x[node] << 32) | node;
+            }
+        }
+        if (linked > 0)
+        {
+            final EdgeGrid edges = new EdgeGrid(ring, xz);
+            edges.addRing(ring.head);
+            Arrays.sort(order, 0, linked);
+            for (int i = linked - 1; i >= 0; i--)
+            {
+                ring.bridge((int) order[i], edges);
+            }
+        }
+
+        return new Triangulation(xz, ring.clip());
+    }
+
+    private static int copyPoints(MapPolygon polygon, int[] xz, int offset)
+    {
+        for (int i = 0, count = polygon.getPointCount(); i < count; i++)
+        {
+            xz[offset++] = polygon.getX(i);
+            xz[offset++] = polygon.getZ(i);
+        }
+        return offset;
+    }
+
+    /**
+     * Twice the signed area of a triangle, positive when it turns from +X toward +Z: clockwise as seen on the map.
+     */
+    private static long cross(long ax, long az, long bx, long bz, long cx, long cz)
+    {
+        return (bx - ax) * (cz - az) - (bz - az) * (cx - ax);
+    }
+
+    /**
+     * The points of the rings as a doubly linked list of nodes.  Each node has the index of its vertex in the
+     * output, and bridges add a second node for the same vertex.
+     */
+    private static class Ring
+    {
+        private final int[] xz;
+        final int[] x;
+        final int[] z;
+        final int[] vertex;
+        final int[] next;
+        final int[] prev;
+        final boolean[] removed;
+        int size;
+        int head;
+
+        Ring(int[] xz, int capacity)
+        {
+            this.xz = xz;
+            x = new int[capacity];
+            z = new int[capacity];
+            vertex = new int[capacity];
+            next = new int[capacity];
+            prev = new int[capacity];
+            removed = new boolean[capacity];
+        }
+
+        /**
+         * Links the vertices of a ring, with positive area for the hull and negative for a hole so the polygon
+         * is always on the same side, leaving out repeated points.
+         *
+         * @return for the hull any node, and for a hole its easternmost node; -1 if the ring has no area
+         */
+        int link(int start, int end, boolean hull)
+        {
+            long area = 0;
+            for (int i = start, j = end - 1; i < end; j = i++)
+            {
+                area += (long) xz[j * 2] * xz[i * 2 + 1] - (long) xz[i * 2] * xz[j * 2 + 1];
+            }
+            if (area == 0)
+            {
+                return -1;
+            }
+
+            final boolean forward = (area > 0) == hull;
+            final int first = size;
+            int last = -1;
+            for (int k = 0, count = end - start; k < count; k++)
+            {
+                final int i = forward ? start + k : end - 1 - k;
+                if (last >= 0 && x[last] == xz[i * 2] && z[last] == xz[i * 2 + 1])
+                {
+                    continue;
+                }
+                final int node = add(i, xz[i * 2], xz[i * 2 + 1]);
+                if (last >= 0)
+                {
+                    next[last] = node;
+                    prev[node] = last;
+                }
+                last = node;
+            }
+            if (last != first && x[last] == x[first] && z[last] == z[first])
+            {
+                size--;
+                last = prev[last];
+            }
+            if (size - first < 3)
+            {
+                size = first;
+                return -1;
+            }
+            next[last] = first;
+            prev[first] = last;
+
+            int east = first;
+            for (int node = first + 1; node < size; node++)
+            {
+                if (x[node] > x[east])
+                {
+                    east = node;
+                }
+            }
+            return east;
+        }
+
+        private int add(int vertex, int x, int z)
+        {
+            final int node = size++;
+            this.vertex[node] = vertex;
+            this.x[node] = x;
+            this.z[node] = z;
+            return node;
+        }
+
+        /**
+         * Joins a hole to the ring, from its easternmost point to the nearest point of the ring it can see by
+         * looking east.  Every hole further east has already been joined, so only the ring can be in the way.
+         */
+        void bridge(int hole, EdgeGrid edges)
+        {
+            final int mx = x[hole];
+            final int mz = z[hole];
+
+            // Where a ray east from the hole first meets the ring: a point on it, or an edge crossing it.  The
+            // columns are searched eastward until the nearest meeting is in one already searched.
+            double hitX = Double.POSITIVE_INFINITY;
+            int hitNode = -1;
+            int hitEdge = -1;
+            final int row = edges.row(mz);
+            for (int column = edges.column(mx); column < edges.columns && hitX >= edges.columnEnd(column - 1); column++)
+            {
+                for (int entry = edges.first(row, column); entry >= 0; entry = edges.following(entry))
+                {
+                    final int node = edges.node(entry);
+                    final int following = next[node];
+                    if (z[node] == mz && x[node] >= mx && x[node] <= hitX)
+                    {
+                        if (x[node] < hitX || hitNode < 0)
+                        {
+                            hitX = x[node];
+                            hitNode = node;
+                            hitEdge = -1;
+                        }
+                    }
+                    else if ((z[node] < mz && z[following] > mz) || (z[node] > mz && z[following] < mz))
+                    {
+                        final double crossX = x[node] + (double) (mz - z[node]) * (x[following] - x[node]) / (z[following] - z[node]);
+                        if (crossX >= mx && crossX < hitX)
+                        {
+                            hitX = crossX;
+                            hitNode = -1;
+                            hitEdge = node;
+                        }
+                    }
+                }
+            }
+
+            int target = hitNode;
+            if (target < 0)
+            {
+                if (hitEdge < 0)
+                {
+                    // Not inside the ring, so it can't be joined
+                    return;
+                }
+                final int other = next[hitEdge];
+                target = x[hitEdge] > x[other] ? hitEdge : other;
+                target = nearestBlocker(edges, mx, mz, hitX, target);
+            }
+
+            // The ring and the hole may each pass through their end of the bridge more than once
+            final boolean touching = x[target] == mx && z[target] == mz;
+            final int start = chooseInHole(hole, touching ? 1 : x[target] - mx, touching ? 0 : z[target] - mz);
+            final double[] direction = touching ? inside(start) : new double[]{mx - x[target], mz - z[target]};
+            final int end = chooseInRing(edges, target, direction[0], direction[1]);
+            splice(end, start);
+
+            // The edges from the end round the hole and back to the end's copy, which splice added last, are new
+            final int stop = next[size - 1];
+            for (int node = end; node != stop; node = next[node])
+            {
+                edges.add(node);
+            }
+        }
+
+        /**
+         * Looks for points of the ring which hide the target from the hole, in the triangle between the hole,
+         * where the ray meets the ring, and the target.  Only points which aren't convex can, and of those the
+         * one closest in angle to the ray can be seen.
+         */
+        private int nearestBlocker(EdgeGrid edges, int mx, int mz, double hitX, int target)
+        {
+            int best = target;
+            double bestDx = 1;
+            double bestDz = Double.POSITIVE_INFINITY;
+            final int fromRow = edges.row(Math.min(mz, z[target]));
+            final int toRow = edges.row(Math.max(mz, z[target]));
+            final int fromColumn = edges.column(mx);
+            final int toColumn = edges.column((int) Math.ceil(Math.max(hitX, x[target])));
+            for (int row = fromRow; row <= toRow; row++)
+            {
+                for (int column = fromColumn; column <= toColumn; column++)
+                {
+                    for (int entry = edges.first(row, column); entry >= 0; entry = edges.following(entry))
+                    {
+                        final int node = edges.node(entry);
+                        if ((x[node] == x[target] && z[node] == z[target]) || isConvex(node)
+                                || !inTriangle(mx, mz, hitX, mz, x[target], z[target], x[node], z[node]))
+                        {
+                            continue;
+                        }
+                        final double dx = x[node] - mx;
+                        final double dz = Math.abs(z[node] - mz);
+                        // Smaller angle to the ray, then nearer
+                        final double order = dz * bestDx - bestDz * dx;
+                        if (bestDz == Double.POSITIVE_INFINITY || order < 0 || (order == 0 && dx < bestDx))
+                        {
+                            best = node;
+                            bestDx = dx;
+                            bestDz = dz;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Of the hole's nodes at the same point as the given one, chooses the one whose inside holds the given
+         * direction.
+         */
+        private int chooseInHole(int hole, double dx, double dz)
+        {
+            int candidate = hole;
+            do
+            {
+                if (x[candidate] == x[hole] && z[candidate] == z[hole] && holds(candidate, dx, dz))
+                {
+                    return candidate;
+                }
+                candidate = next[candidate];
+            }
+            while (candidate != hole);
+            return hole;
+        }
+
+        /**
+         * Of the ring's nodes at the same point as the given one, chooses the one whose inside holds the given
+         * direction.
+         */
+        private int chooseInRing(EdgeGrid edges, int node, double dx, double dz)
+        {
+            for (int entry = edges.first(edges.row(z[node]), edges.column(x[node])); entry >= 0; entry = edges.following(entry))
+            {
+                final int candidate = edges.node(entry);
+                if (x[candidate] == x[node] && z[candidate] == z[node] && holds(candidate, dx, dz))
+                {
+                    return candidate;
+                }
+            }
+            return node;
+        }
+
+        /**
+         * Inserts a hole into the ring after a node: the ring goes from that node to the hole's node, around the
+         * hole, back to a copy of the hole's node, then a copy of the first node and on.
+         */
+        private void splice(int node, int hole)
+        {
+            final int nodeNext = next[node];
+            final int holePrev = prev[hole];
+            final int holeCopy = add(vertex[hole], x[hole], z[hole]);
+            final int nodeCopy = add(vertex[node], x[node], z[node]);
+
+            next[node] = hole;
+            prev[hole] = node;
+            next[holePrev] = holeCopy;
+            prev[holeCopy] = holePrev;
+            next[holeCopy] = nodeCopy;
+            prev[nodeCopy] = holeCopy;
+            next[nodeCopy] = nodeNext;
+            prev[nodeNext] = nodeCopy;
+        }
+
+        /**
+         * Clips ears until the ring is used up.
+         *
+         * @return three vertex indexes per triangle
+         */
+        int[] clip()
+        {
+            int remaining = 0;
+            int node = head;
+            do
+            {
+                remaining++;
+                node = next[node];
+            }
+            while (node != head);
+
+            final IntArrayList triangles = new IntArrayList(Math.max(0, remaining - 2) * 3);
+            final EarGrid grid = new EarGrid(this, remaining);
+            int stalled = 0;
+            while (remaining > 3)
+            {
+                final int a = prev[node];
+                final int c = next[node];
+                final long turn = cross(x[a], z[a], x[node], z[node], x[c], z[c]);
+                if (turn == 0)
+                {
+                    // A straight point or a spike adds no area
+                    remove(node);
+                    remaining--;
+                    node = a;
+                    stalled = 0;
+                }
+                else if (turn > 0 && grid.isEar(node))
+                {
+                    addTriangle(triangles, node);
+                    remove(node);
+                    remaining--;
+                    node = a;
+                    stalled = 0;
+                }
+                else if (++stalled > remaining)
+                {
+                    // No ear anywhere, so the ring crosses itself: clip the next convex point regardless
+                    while (!isConvex(node) && stalled-- > 0)
+                    {
+                        node = next[node];
+                    }
+                    final int before = prev[node];
+                    addTriangle(triangles, node);
+                    remove(node);
+                    remaining--;
+                    node = before;
+                    stalled = 0;
+                }
+                else
+                {
+                    node = c;
+                }
+            }
+            if (cross(x[prev[node]], z[prev[node]], x[node], z[node], x[next[node]], z[next[node]]) > 0)
+            {
+                addTriangle(triangles, node);
+            }
+            return triangles.toIntArray();
+        }
+
+        private void addTriangle(IntArrayList triangles, int node)
+        {
+            triangles.add(vertex[prev[node]]);
+            triangles.add(vertex[node]);
+            triangles.add(vertex[next[node]]);
+        }
+
+        private void remove(int node)
+        {
+            removed[node] = true;
+            next[prev[node]] = next[node];
+            prev[next[node]] = prev[node];
+            if (head == node)
+            {
+                head = next[node];
+            }
+        }
+
+        boolean isConvex(int node)
+        {
+            return cross(x[prev[node]], z[prev[node]], x[node], z[node], x[next[node]], z[next[node]]) > 0;
+        }
+
+        /**
+         * Whether a direction from a node points into the polygon, between the edge to the next node and the edge
+         * from the previous one.
+         */
+        boolean holds(int node, double dx, double dz)
+        {
+            final double nextX = x[next[node]] - x[node];
+            final double nextZ = z[next[node]] - z[node];
+            final double prevX = x[prev[node]] - x[node];
+            final double prevZ = z[prev[node]] - z[node];
+            final boolean afterNext = nextX * dz - nextZ * dx > 0;
+            final boolean beforePrev = dx * prevZ - dz * prevX > 0;
+            return nextX * prevZ - nextZ * prevX > 0 ? afterNext && beforePrev : afterNext || beforePrev;
+        }
+
+        /**
+         * A direction from a node which points into the polygon.
+         */
+        private double[] inside(int node)
+        {
+            final double nextX = x[next[node]] - x[node];
+            final double nextZ = z[next[node]] - z[node];
+            final double prevX = x[prev[node]] - x[node];
+            final double prevZ = z[prev[node]] - z[node];
+            final double nextLength = Math.sqrt(nextX * nextX + nextZ * nextZ);
+            final double prevLength = Math.sqrt(prevX * prevX + prevZ * prevZ);
+            final double sumX = nextX / nextLength + prevX / prevLength;
+            final double sumZ = nextZ / nextLength + prevZ / prevLength;
+            final double turn = nextX * prevZ - nextZ * prevX;
+            if (turn == 0 || Math.abs(sumX) + Math.abs(sumZ) < 1e-9)
+            {
+                // Straight on: to the left of the edge to the next node
+                return new double[]{-nextZ, nextX};
+            }
+            return turn > 0 ? new double[]{sumX, sumZ} : new double[]{-sumX, -sumZ};
+        }
+    }
+
+    /**
+     * Whether a point is inside or on a triangle, in either winding order.
+     */
+    private static boolean inTriangle(double ax, double az, double bx, double bz, double cx, double cz, double px, double pz)
+    {
+        final double ab = (bx - ax) * (pz - az) - (bz - az) * (px - ax);
+        final double bc = (cx - bx) * (pz - bz) - (cz - bz) * (px - bx);
+        final double ca = (ax - cx) * (pz - cz) - (az - cz) * (px - cx);
+        return (ab >= 0 && bc >= 0 && ca >= 0) || (ab <= 0 && bc <= 0 && ca <= 0);
+    }
+
+    /**
+     * The edges of the ring, listed in every cell their bounds cross, so a hole can find what lies east of it
+     * without walking the whole ring.  An entry is the node its edge starts from, read through the ring as it is
+     * now, so joining a hole only adds entries.
+     */
+    private static class EdgeGrid
+    {
+        private final Ring ring;
+        private final int minX;
+        private final int minZ;
+        private final long cellSize;
+        final int columns;
+        private final int rows;
+        private final int[] firstEntry;
+        private final IntArrayList nodes;
+        private final IntArrayList nextEntries;
+
+        EdgeGrid(Ring ring, int[] xz)
+        {
+            this.ring = ring;
+            int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+            for (int i = 0; i < xz.length; i += 2)
+            {
+                minX = Math.min(minX, xz[i]);
+                minZ = Math.min(minZ, xz[i + 1]);
+                maxX = Math.max(maxX, xz[i]);
+                maxZ = Math.max(maxZ, xz[i + 1]);
+            }
+
+            // About one point per cell
+            final long span = Math.max((long) maxX - minX, (long) maxZ - minZ) + 1;
+            final int side = Math.max(1, (int) Math.sqrt(xz.length / 2.0));
+            this.minX = minX;
+            this.minZ = minZ;
+            this.cellSize = (span + side - 1) / side;
+            this.columns = (int) (((long) maxX - minX) / cellSize) + 1;
+            this.rows = (int) (((long) maxZ - minZ) / cellSize) + 1;
+            this.firstEntry = new int[columns * rows];
+            Arrays.fill(firstEntry, -1);
+            this.nodes = new IntArrayList(xz.length);
+            this.nextEntries = new IntArrayList(xz.length);
+        }
+
+        int column(int x)
+        {
+            return (int) Math.max(0, Math.min(columns - 1, (x - (long) minX) / cellSize));
+        }
+
+        int row(int z)
+        {
+            return (int) Math.max(0, Math.min(rows - 1, (z - (long) minZ) / cellSize));
+        }
+
+        /**
+         * The x where a column ends, which for the column before the first is where the grid starts.
+         */
+        double columnEnd(int column)
+        {
+            return minX + (column + 1) * (double) cellSize;
+        }
+
+        int first(int row, int column)
+        {
+            return firstEntry[row * columns + column];
+        }
+
+        int following(int entry)
+        {
+            return nextEntries.getInt(entry);
+        }
+
+        int node(int entry)
+        {
+            return nodes.getInt(entry);
+        }
+
+        void addRing(int start)
+        {
+            int node = start;
+            do
+            {
+                add(node);
+                node = ring.next[node];
+            }
+            while (node != start);
+        }
+
+        void add(int node)
+        {
+            final int following = ring.next[node];
+            final int toRow = row(Math.max(ring.z[node], ring.z[following]));
+            final int toColumn = column(Math.max(ring.x[node], ring.x[following]));
+            for (int row = row(Math.min(ring.z[node], ring.z[following])); row <= toRow; row++)
+            {
+                for (int column = column(Math.min(ring.x[node], ring.x[following])); column <= toColumn; column++)
+                {
+                    final int cell = row * columns + column;
+                    nextEntries.add(firstEntry[cell]);
+                    nodes.add(node);
+                    firstEntry[cell] = nodes.size() - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * The nodes which could lie inside an ear, bucketed by position.  Clipping only makes points more convex,
+     * so the nodes which aren't convex at the start, and those sharing a point with another node, are all that
+     * ever need checking.
+     */
+    private static class EarGrid
+    {
+        private final Ring ring;
+        private final int minX;
+        private final int minZ;
+        private final long cellSize;
+        private final int columns;
+        private final int rows;
+        private final int[] cellStart;
+        private final int[] nodes;
+
+        EarGrid(Ring ring, int count)
+        {
+            this.ring = ring;
+            final Long2IntOpenHashMap points = new Long2IntOpenHashMap(count);
+            int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+            int node = ring.head;
+            do
+            {
+                points.addTo(key(ring.x[node], ring.z[node]), 1);
+                minX = Math.min(minX, ring.x[node]);
+                minZ = Math.min(minZ, ring.z[node]);
+                maxX = Math.max(maxX, ring.x[node]);
+                maxZ = Math.max(maxZ, ring.z[node]);
+                node = ring.next[node];
+            }
+            while (node != ring.head);
+
+            final IntArrayList checked = new IntArrayList();
+            do
+            {
+                if (!ring.isConvex(node) || points.get(key(ring.x[node], ring.z[node])) > 1)
+                {
+                    checked.add(node);
+                }
+                node = ring.next[node];
+            }
+            while (node != ring.head);
+
+            // About two checked nodes per cell
+            final long span = Math.max((long) maxX - minX, (long) maxZ - minZ) + 1;
+            final int side = Math.max(1, (int) Math.sqrt(checked.size() / 2.0));
+            this.minX = minX;
+            this.minZ = minZ;
+            this.cellSize = (span + side - 1) / side;
+            this.columns = (int) (((long) maxX - minX) / cellSize) + 1;
+            this.rows = (int) (((long) maxZ - minZ) / cellSize) + 1;
+
+            this.cellStart = new int[columns * rows + 1];
+            for (int i = 0; i < checked.size(); i++)
+            {
+                cellStart[cell(checked.getInt(i)) + 1]++;
+            }
+            for (int i = 0; i < columns * rows; i++)
+            {
+                cellStart[i + 1] += cellStart[i];
+            }
+            this.nodes = new int[checked.size()];
+            final int[] fill = Arrays.copyOf(cellStart, columns * rows);
+            for (int i = 0; i < checked.size(); i++)
+            {
+                final int checkedNode = checked.getInt(i);
+                nodes[fill[cell(checkedNode)]++] = checkedNode;
+            }
+        }
+
+        private static long key(int x, int z)
+        {
+            return ((long) x << 32) | (z & 0xFFFFFFFFL);
+        }
+
+        private int cell(int node)
+        {
+            return (int) ((ring.z[node] - (long) minZ) / cellSize) * columns + (int) ((ring.x[node] - (long) minX) / cellSize);
+        }
+
+        /**
+         * Whether a convex node is the tip of an ear: no other part of the ring reaches into its triangle.  Points
+         * on the triangle's sides along the ring don't, since the ring doesn't cross itself there.
+         */
+        boolean isEar(int b)
+        {
+            final int[] x = ring.x;
+            final int[] z = ring.z;
+            final int a = ring.prev[b];
+            final int c = ring.next[b];
+            final int fromColumn = (int) ((Math.min(x[a], Math.min(x[b], x[c])) - (long) minX) / cellSize);
+            final int toColumn = (int) ((Math.max(x[a], Math.max(x[b], x[c])) - (long) minX) / cellSize);
+            final int fromRow = (int) ((Math.min(z[a], Math.min(z[b], z[c])) - (long) minZ) / cellSize);
+            final int toRow = (int) ((Math.max(z[a], Math.max(z[b], z[c])) - (long) minZ) / cellSize);
+            for (int row = fromRow; row <= toRow; row++)
+            {
+                for (int column = fromColumn; column <= toColumn; column++)
+                {
+                    final int cell = row * columns + column;
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++)
+                    {
+                        final int p = nodes[i];
+                        if (p != a && p != b && p != c && !ring.removed[p] && blocks(p, a, b, c))
+                        {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        private boolean blocks(int p, int a, int b, int c)
+        {
+            final int[] x = ring.x;
+            final int[] z = ring.z;
+            final int px = x[p], pz = z[p];
+            if (px == x[b] && pz == z[b])
+            {
+                // Its inside and the ear's can't overlap at the tip
+                return false;
+            }
+            if (px == x[a] && pz == z[a])
+            {
+                return overlaps(p, a, b, c);
+            }
+            if (px == x[c] && pz == z[c])
+            {
+                return overlaps(p, c, a, b);
+            }
+            final long ab = cross(x[a], z[a], x[b], z[b], px, pz);
+            final long bc = cross(x[b], z[b], x[c], z[c], px, pz);
+            final long ca = cross(x[c], z[c], x[a], z[a], px, pz);
+            if (ab > 0 && bc > 0 && ca > 0)
+            {
+                return true;
+            }
+            // On the side which would become an edge of the ring
+            return ca == 0 && ab > 0 && bc > 0;
+        }
+
+        /**
+         * Whether the inside of a node at a corner of the ear overlaps the ear's angle there, which runs
+         * counter-clockwise from the edge to the second corner to the edge to the third.
+         */
+        private boolean overlaps(int p, int corner, int second, int third)
+        {
+            final int[] x = ring.x;
+            final int[] z = ring.z;
+            final double secondX = x[second] - x[corner], secondZ = z[second] - z[corner];
+            final double thirdX = x[third] - x[corner], thirdZ = z[third] - z[corner];
+            final double secondLength = Math.sqrt(secondX * secondX + secondZ * secondZ);
+            final double thirdLength = Math.sqrt(thirdX * thirdX + thirdZ * thirdZ);
+            if (ring.holds(p, secondX / secondLength + thirdX / thirdLength, secondZ / secondLength + thirdZ / thirdLength))
+            {
+                return true;
+            }
+            return within(secondX, secondZ, thirdX, thirdZ, x[ring.next[p]] - x[p], z[ring.next[p]] - z[p])
+                    || within(secondX, secondZ, thirdX, thirdZ, x[ring.prev[p]] - x[p], z[ring.prev[p]] - z[p]);
+        }
+
+        private static boolean within(double fromX, double fromZ, double toX, double toZ, double dx, double dz)
+        {
+            return fromX * dz - fromZ * dx > 0 && dx * toZ - dz * toX > 0;
+        }
+    }
+}
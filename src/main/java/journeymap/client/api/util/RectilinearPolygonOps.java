@@ -0,0 +1,680 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Boolean operations on block-aligned polygons whose edges all run along X or Z, such as claims made of chunks
+ * or block rectangles, using integer coordinates rather than a floating-point {@link java.awt.geom.Area}.
+ * <p>
+ * The plane is cut into slabs at the Z of every point.  Within a slab each operand is a sorted list of X
+ * intervals, so an operation is a merge of two lists per slab.  The outlines of the result are then traced
+ * along the slab boundaries as {@link ChunkOutlineTracer} does on the chunk grid: shapes touching only at a
+ * corner stay separate, hulls are counter-clockwise and holes clockwise with +X right and +Z down, and each
+ * ring has a point only at its corners.
+ * <p>
+ * An operand is the union of its polygons, each of which is its hull minus its holes.
+ */
+@ParametersAreNonnullByDefault
+public final class RectilinearPolygonOps
+{
+    /**
+     * A boolean operation.
+     */
+    public enum Operation
+    {
+        /**
+         * Areas in either operand.
+         */
+        Union,
+
+        /**
+         * Areas in the first operand but not the second.
+         */
+        Subtract,
+
+        /**
+         * Areas in both operands.
+         */
+        Intersect,
+
+        /**
+         * Areas in exactly one operand.
+         */
+        Xor;
+
+        boolean test(boolean a, boolean b)
+        {
+            switch (this)
+            {
+                case Union:
+                    return a || b;
+                case Subtract:
+                    return a && !b;
+                case Intersect:
+                    return a && b;
+                default:
+                    return a != b;
+            }
+        }
+    }
+
+    private static final int DOWN = 0;
+    private static final int RIGHT = 1;
+    private static final int UP = 2;
+    private static final int LEFT = 3;
+    private static final int[] EMPTY = new int[0];
+
+    private static final int EDGE_SIZE = 6;
+
+    // Left, straight on, right
+    private static final int[] TURNS = {1, 0, 3};
+
+    private RectilinearPolygonOps()
+    {
+    }
+
+    /**
+     * Unites two polygons.
+     *
+     * @param a the first polygon
+     * @param b the second polygon
+     * @param y the y-coordinate for the resulting polygons
+     * @return the resulting polygons
+     * @throws IllegalArgumentException if an edge isn't along X or Z
+     */
+    public static List<MapPolygonWithHoles> union(MapPolygon a, MapPolygon b, int y)
+    {
+        return apply(Operation.Union, wrap(a), wrap(b), y);
+    }
+
+    /**
+     * Unites two sets of polygons.
+     *
+     * @param a the first polygons
+     * @param b the second polygons
+     * @param y the y-coordinate for the resulting polygons
+     * @return the resulting polygons
+     * @throws IllegalArgumentException if an edge isn't along X or Z
+     */
+    public static List<MapPolygonWithHoles> union(Collection<MapPolygonWithHoles> a, Collection<MapPolygonWithHoles> b, int y)
+    {
+        return apply(Operation.Union, a, b, y);
+    }
+
+    /**
+     * Subtracts one polygon from another.
+     *
+     * @param a the polygon to subtract from
+     * @param b the polygon to subtract
+     * @param y the y-coordinate for the resulting polygons
+     * @return the resulting polygons
+     * @throws IllegalArgumentException if an edge isn't along X or Z
+     */
+    public static List<MapPolygonWithHoles> subtract(MapPolygon a, MapPolygon b, int y)
+    {
+        return apply(Operation.Subtract, wrap(a), wrap(b), y);
+    }
+
+    /**
+     * Subtracts one set of polygons from another.
+     *
+     * @param a the polygons to subtract from
+     * @param b the polygons to subtract
+     * @param y the y-coordinate for the resulting polygons
+     * @return the resulting polygons
+     * @throws IllegalArgumentException if an edge isn't along X or Z
+     */
+    public static List<MapPolygonWithHoles> subtract(Collection<MapPolygonWithHoles> a, Collection<MapPolygonWithHoles> b, int y)
+    {
+        return apply(Operation.Subtract, a, b, y);
+    }
+
+    /**
+     * Intersects two polygons.
+     *
+     * @param a the first polygon
+     * @param b the second polygon
+     * @param y the y-coordinate for the resulting polygons
+     * @return the resulting polygons
+     * @throws IllegalArgumentException if an edge isn't along X or Z
+     */
+    public static List<MapPolygonWithHoles> intersect(MapPolygon a, MapPolygon b, int y)
+    {
+        return apply(Operation.Intersect, wrap(a), wrap(b), y);
+    }
+
+    /**
+     * Intersects two sets of polygons.
+     *
+     * @param a the first polygons
+     * @param b the second polygons
+     * @param y the y-coordinate for the resulting polygons
+     * @return the resulting polygons
+     * @throws IllegalArgumentException if an edge isn't along X or Z
+     */
+    public static List<MapPolygonWithHoles> intersect(Collection<MapPolygonWithHoles> a, Collection<MapPolygonWithHoles> b, int y)
+    {
+        return apply(Operation.Intersect, a, b, y);
+    }
+
+    /**
+     * Finds the areas in exactly one of two polygons.
+     *
+     * @param a the first polygon
+     * @param b the second polygon
+     * @param y the y-coordinate for the resulting polygons
+     * @return the resulting polygons
+     * @throws IllegalArgumentException if an edge isn't along X or Z
+     */
+    public static List<MapPolygonWithHoles> xor(MapPolygon a, MapPolygon b, int y)
+    {
+        return apply(Operation.Xor, wrap(a), wrap(b), y);
+    }
+
+    /**
+     * Finds the areas in exactly one of two sets of polygons.
+     *
+     * @param a the first polygons
+     * @param b the second polygons
+     * @param y the y-coordinate for the resulting polygons
+     * @return the resulting polygons
+     * @throws IllegalArgumentException if an edge isn't along X or Z
+     */
+    public static List<MapPolygonWithHoles> xor(Collection<MapPolygonWithHoles> a, Collection<MapPolygonWithHoles> b, int y)
+    {
+        return apply(Operation.Xor, a, b, y);
+    }
+
+    /**
+     * Applies an operation to two sets of polygons.
+     *
+     * @param operation the operation
+     * @param a         the first polygons
+     * @param b         the second polygons
+     * @param y         the y-coordinate for the resulting polygons
+     * @return the resulting polygons, empty if the result has no area
+     * @throws IllegalArgumentException if an edge isn't along X or Z
+     */
+    public static List<MapPolygonWithHoles> apply(Operation operation, Collection<MapPolygonWithHoles> a,
+                                                  Collection<MapPolygonWithHoles> b, int y)
+    {
+        // Slab boundaries at the z of every point
+        final IntArrayList zList = new IntArrayList();
+        addZs(a, zList);
+        addZs(b, zList);
+        final int[] zs = zList.toIntArray();
+        Arrays.sort(zs);
+        int zCount = 0;
+        for (int i = 0; i < zs.length; i++)
+        {
+            if (i == 0 || zs[i] != zs[i - 1])
+            {
+                zs[zCount++] = zs[i];
+            }
+        }
+        if (zCount < 2)
+        {
+            return new ArrayList<>();
+        }
+
+        final int[][] slabsA = toSlabs(a, zs, zCount);
+        final int[][] slabsB = toSlabs(b, zs, zCount);
+        final int[][] slabs = new int[zCount - 1][];
+        for (int i = 0; i < slabs.length; i++)
+        {
+            slabs[i] = combine(slabsA[i], slabsB[i], operation);
+        }
+
+        return trace(slabs, zs, y);
+    }
+
+    private static List<MapPolygonWithHoles> wrap(MapPolygon polygon)
+    {
+        return Collections.singletonList(new MapPolygonWithHoles(polygon, null));
+    }
+
+    private static void addZs(Collection<MapPolygonWithHoles> polygons, IntArrayList zs)
+    {
+        for (MapPolygonWithHoles polygon : polygons)
+        {
+            addZs(polygon.hull, zs);
+            if (polygon.holes != null)
+            {
+                for (MapPolygon hole : polygon.holes)
+                {
+                    addZs(hole, zs);
+                }
+            }
+        }
+    }
+
+    private static void addZs(MapPolygon ring, IntArrayList zs)
+    {
+        for (int i = 0, count = ring.getPointCount(); i < count; i++)
+        {
+            zs.add(ring.getZ(i));
+        }
+    }
+
+    /**
+     * Finds the X intervals covered by a set of polygons in each slab, as sorted lists of where each
+     * interval starts and ends.
+     */
+    private static int[][] toSlabs(Collection<MapPolygonWithHoles> polygons, int[] zs, int zCount)
+    {
+        final IntArrayList[] intervals = new IntArrayList[zCount - 1];
+        final IntArrayList edges = new IntArrayList();
+        final IntArrayList active = new IntArrayList();
+
+        for (MapPolygonWithHoles polygon : polygons)
+        {
+            // Vertical edges as x, min z, max z
+            edges.clear();
+            addVerticalEdges(polygon.hull, edges);
+            if (polygon.holes != null)
+            {
+                for (MapPolygon hole : polygon.holes)
+                {
+                    addVerticalEdges(hole, edges);
+                }
+            }
+
+            // Sweep down the slabs, keeping the edges which span the current one
+            final int edgeCount = edges.size() / 3;
+            if (edgeCount == 0)
+            {
+                continue;
+            }
+            final long[] byMinZ = new long[edgeCount];
+            for (int e = 0; e < edgeCount; e++)
+            {
+                byMinZ[e] = ((long) edges.getInt(e * 3 + 1) << 32) | e;
+            }
+            Arrays.sort(byMinZ);
+
+            active.clear();
+            int next = 0;
+            final int first = Arrays.binarySearch(zs, 0, zCount, edges.getInt((int) byMinZ[0] * 3 + 1));
+            for (int slab = first; slab < zCount - 1 && (next < edgeCount || !active.isEmpty()); slab++)
+            {
+                final int top = zs[slab];
+                while (next < edgeCount && (int) (byMinZ[next] >> 32) <= top)
+                {
+                    active.add((int) byMinZ[next++]);
+                }
+                int kept = 0;
+                for (int i = 0; i < active.size(); i++)
+                {
+                    final int e = active.getInt(i);
+                    if (edges.getInt(e * 3 + 2) > top)
+                    {
+                        active.set(kept++, e);
+                    }
+                }
+                active.size(kept);
+
+                // Inside where an odd number of edges have been crossed from the left
+                final int[] xs = new int[kept];
+                for (int i = 0; i < kept; i++)
+                {
+                    xs[i] = edges.getInt(active.getInt(i) * 3);
+                }
+                Arrays.sort(xs);
+                for (int i = 0; i + 1 < xs.length; i += 2)
+                {
+                    if (xs[i] < xs[i + 1])
+                    {
+                        if (intervals[slab] == null)
+                        {
+                            intervals[slab] = new IntArrayList();
+                        }
+                        intervals[slab].add(xs[i]);
+                        intervals[slab].add(xs[i + 1]);
+                    }
+                }
+            }
+        }
+
+        final int[][] slabs = new int[zCount - 1][];
+        for (int slab = 0; slab < slabs.length; slab++)
+        {
+            slabs[slab] = intervals[slab] == null ? EMPTY : mergeIntervals(intervals[slab]);
+        }
+        return slabs;
+    }
+
+    private static void addVerticalEdges(MapPolygon ring, IntArrayList edges)
+    {
+        for (int i = 0, count = ring.getPointCount(); i < count; i++)
+        {
+            final int j = (i + 1) % count;
+            final int x = ring.getX(i);
+            final int z = ring.getZ(i);
+            final int nextX = ring.getX(j);
+            final int nextZ = ring.getZ(j);
+            if (x == nextX)
+            {
+                if (z != nextZ)
+                {
+                    edges.add(x);
+                    edges.add(Math.min(z, nextZ));
+                    edges.add(Math.max(z, nextZ));
+                }
+            }
+            else if (z != nextZ)
+            {
+                throw new IllegalArgumentException(String.format("Polygon edge from %s,%s to %s,%s is not along X or Z",
+                        x, z, nextX, nextZ));
+            }
+        }
+    }
+
+    /**
+     * Sorts and joins overlapping or touching intervals, given as pairs of start and end.
+     */
+    private static int[] mergeIntervals(IntArrayList intervals)
+    {
+        final int count = intervals.size() / 2;
+        final long[] sorted = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            // Sort by start; the end is kept alongside in the low bits
+            sorted[i] = ((long) intervals.getInt(i * 2) << 32) | (intervals.getInt(i * 2 + 1) & 0xffffffffL);
+        }
+        Arrays.sort(sorted);
+
+        final IntArrayList merged = new IntArrayList(count * 2);
+        for (long interval : sorted)
+        {
+            final int start = (int) (interval >> 32);
+            final int end = (int) interval;
+            final int size = merged.size();
+            if (size > 0 && start <= merged.getInt(size - 1))
+            {
+                if (end > merged.getInt(size - 1))
+                {
+                    merged.set(size - 1, end);
+                }
+            }
+            else
+            {
+                merged.add(start);
+                merged.add(end);
+            }
+        }
+        return merged.toIntArray();
+    }
+
+    /**
+     * Merges two sorted lists of interval starts and ends, keeping the X ranges where the operation is true.
+     */
+    private static int[] combine(int[] a, int[] b, Operation operation)
+    {
+        if (a.length == 0 && b.length == 0)
+        {
+            return EMPTY;
+        }
+
+        final IntArrayList result = new IntArrayList(a.length + b.length);
+        boolean inA = false;
+        boolean inB = false;
+        boolean inside = false;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length)
+        {
+            final int x = j >= b.length || (i < a.length && a[i] <= b[j]) ? a[i] : b[j];
+            if (i < a.length && a[i] == x)
+            {
+                inA = !inA;
+                i++;
+            }
+            if (j < b.length && b[j] == x)
+            {
+                inB = !inB;
+                j++;
+            }
+            if (operation.test(inA, inB) != inside)
+            {
+                inside = !inside;
+                result.add(x);
+            }
+        }
+        return result.toIntArray();
+    }
+
+    /**
+     * Traces the outlines of the slabs, keeping the covered area on the left of each edge, and groups each hull
+     * with its holes.
+     */
+    private static List<MapPolygonWithHoles> trace(int[][] slabs, int[] zs, int y)
+    {
+        // Intervals overlapping those in the next slab are part of the same shape, which has one hull
+        final int[] firstInterval = new int[slabs.length + 1];
+        for (int slab = 0; slab < slabs.length; slab++)
+        {
+            firstInterval[slab + 1] = firstInterval[slab] + slabs[slab].length / 2;
+        }
+        final int[] parents = new int[firstInterval[slabs.length]];
+        for (int i = 0; i < parents.length; i++)
+        {
+            parents[i] = i;
+        }
+        for (int slab = 0; slab + 1 < slabs.length; slab++)
+        {
+            final int[] above = slabs[slab];
+            final int[] below = slabs[slab + 1];
+            for (int i = 0, j = 0; i < above.length && j < below.length; )
+            {
+                if (Math.min(above[i + 1], below[j + 1]) > Math.max(above[i], below[j]))
+                {
+                    union(parents, firstInterval[slab] + i / 2, firstInterval[slab + 1] + j / 2);
+                }
+                if (above[i + 1] < below[j + 1])
+                {
+                    i += 2;
+                }
+                else
+                {
+                    j += 2;
+                }
+            }
+        }
+
+        // Edges as start x, start z, end x, end z, direction, and the interval to the right of a downward edge.
+        // Downward edges are added in order of z, then x.
+        final IntArrayList edges = new IntArrayList();
+        for (int slab = 0; slab <= slabs.length; slab++)
+        {
+            final int[] above = slab == 0 ? EMPTY : slabs[slab - 1];
+            final int[] below = slab == slabs.length ? EMPTY : slabs[slab];
+            final int z = zs[slab];
+
+            // Horizontal edges where the slabs above and below differ
+            final int[] aboveOnly = combine(above, below, Operation.Subtract);
+            for (int i = 0; i < aboveOnly.length; i += 2)
+            {
+                addEdge(edges, aboveOnly[i], z, aboveOnly[i + 1], z, RIGHT, -1);
+            }
+            final int[] belowOnly = combine(below, above, Operation.Subtract);
+            for (int i = 0; i < belowOnly.length; i += 2)
+            {
+                addEdge(edges, belowOnly[i + 1], z, belowOnly[i], z, LEFT, -1);
+            }
+
+            // Vertical edges down the start and up the end of each interval
+            if (slab < slabs.length)
+            {
+                for (int i = 0; i < below.length; i += 2)
+                {
+                    addEdge(edges, below[i], z, below[i], zs[slab + 1], DOWN, firstInterval[slab] + i / 2);
+                    addEdge(edges, below[i + 1], zs[slab + 1], below[i + 1], z, UP, -1);
+                }
+            }
+        }
+
+        final int edgeCount = edges.size() / EDGE_SIZE;
+        final Long2IntOpenHashMap byStart = new Long2IntOpenHashMap(edgeCount);
+        byStart.defaultReturnValue(-1);
+        for (int e = 0; e < edgeCount; e++)
+        {
+            final int offset = e * EDGE_SIZE;
+            byStart.put(edgeKey(edges.getInt(offset), edges.getInt(offset + 1), edges.getInt(offset + 4)), e);
+        }
+
+        // Start each ring from its first downward edge, which leaves a corner.  A shape's hull is always found
+        // before its holes, which are all below its top.
+        final boolean[] used = new boolean[edgeCount];
+        final List<MapPolygonWithHoles> result = new ArrayList<>();
+        final Int2IntOpenHashMap hullByShape = new Int2IntOpenHashMap();
+        final IntArrayList points = new IntArrayList();
+        for (int first = 0; first < edgeCount; first++)
+        {
+            if (used[first] || edges.getInt(first * EDGE_SIZE + 4) != DOWN)
+            {
+                continue;
+            }
+
+            points.clear();
+            points.add(edges.getInt(first * EDGE_SIZE));
+            points.add(edges.getInt(first * EDGE_SIZE + 1));
+            int edge = first;
+            while (true)
+            {
+                used[edge] = true;
+                final int offset = edge * EDGE_SIZE;
+                final int x = edges.getInt(offset + 2);
+                final int z = edges.getInt(offset + 3);
+                final int direction = edges.getInt(offset + 4);
+                final int next = nextEdge(byStart, x, z, direction);
+                if (next == first)
+                {
+                    break;
+                }
+                if (edges.getInt(next * EDGE_SIZE + 4) != direction)
+                {
+                    points.add(x);
+                    points.add(z);
+                }
+                edge = next;
+            }
+
+            final MapPolygon ring = new MapPolygon(points.toIntArray(), y);
+            final int shape = find(parents, edges.getInt(first * EDGE_SIZE + 5));
+            if (isHull(points))
+            {
+                hullByShape.put(shape, result.size());
+                result.add(new MapPolygonWithHoles(ring, new ArrayList<>()));
+            }
+            else if (hullByShape.containsKey(shape))
+            {
+                result.get(hullByShape.get(shape)).holes.add(ring);
+            }
+            else
+            {
+                throw new IllegalStateException("Hole traced before the hull of its shape at " + points.getInt(0) + "," + points.getInt(1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether a ring is counter-clockwise with +X right and +Z down.
+     */
+    private static boolean isHull(IntArrayList points)
+    {
+        long area = 0;
+        for (int i = 0, size = points.size(); i < size; i += 2)
+        {
+            final int j = (i + 2) % size;
+            area += (long) (points.getInt(j) - points.getInt(i)) * (points.getInt(j + 1) + points.getInt(i + 1));
+        }
+        return area > 0;
+    }
+
+    private static int find(int[] parents, int interval)
+    {
+        while (parents[interval] != interval)
+        {
+            parents[interval] = parents[parents[interval]];
+            interval = parents[interval];
+        }
+        return interval;
+    }
+
+    private static void union(int[] parents, int a, int b)
+    {
+        final int rootA = find(parents, a);
+        final int rootB = find(parents, b);
+        if (rootA != rootB)
+        {
+            parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    /**
+     * Finds the edge leaving a point, turning left where two rings touch at a corner so that they stay apart.
+     */
+    private static int nextEdge(Long2IntOpenHashMap byStart, int x, int z, int direction)
+    {
+        for (int turn : TURNS)
+        {
+            final int edge = byStart.get(edgeKey(x, z, (direction + turn) & 3));
+            if (edge >= 0)
+            {
+                return edge;
+            }
+        }
+        throw new IllegalStateException("Polygon outline is not closed at " + x + "," + z);
+    }
+
+    private static void addEdge(IntArrayList edges, int x, int z, int endX, int endZ, int direction, int interval)
+    {
+        edges.add(x);
+        edges.add(z);
+        edges.add(endX);
+        edges.add(endZ);
+        edges.add(direction);
+        edges.add(interval);
+    }
+
+    /**
+     * A key for the edge leaving a point in a direction.  Block coordinates fit in 30 bits, so z doesn't
+     * overlap x.
+     */
+    private static long edgeKey(int x, int z, int direction)
+    {
+        return ((long) z << 34) | ((x & 0xffffffffL) << 2) | direction;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.display.Context;
+import journeymap.client.api.display.Overlay;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Per-dimension and per-UI lists of overlays in the order they should be drawn, kept sorted as overlays are
+ * added and removed so that the renderer never has to sort them.
+ * <p>
+ * Overlays are drawn in order of {@link Overlay#getDisplayOrder()}, then of their
+ * {@link journeymap.client.api.display.DisplayType}, mod id and id, the same order as
+ * {@link journeymap.client.api.display.Displayable#compareTo}, so overlays with the same display order don't swap
+ * places between frames, and the one drawn on top is the first found under the mouse by {@link OverlayHitIndex}.
+ * Adding, removing or reordering an overlay takes O(log n) for each UI it is active in.
+ * <p>
+ * Overlays are sorted by the {@link Overlay#getDisplayOrder()}, {@link Overlay#getDimension()} and
+ * {@link Overlay#getActiveUIs()} they had when added, so an overlay must be added again after any of those
+ * change. This class is not thread-safe.
+ */
+@ParametersAreNonnullByDefault
+public class RenderOrderIndex
+{
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingInt((Entry entry) -> entry.displayOrder)
+            .thenComparing(entry -> entry.overlay.getDisplayType())
+            .thenComparing(entry -> entry.overlay.getModId())
+            .thenComparing(entry -> entry.overlay.getId());
+
+    private final HashMap<ResourceKey<Level>, EnumMap<Context.UI, TreeSet<Entry>>> dimensionLists = new HashMap<>();
+    private final HashMap<Overlay, Entry> entries = new HashMap<>();
+
+    /**
+     * Adds an overlay, or moves it to its place for its current display order if it was already added.
+     *
+     * @param overlay the overlay
+     */
+    public void add(Overlay overlay)
+    {
+        // Remove first, so a replacement instance with the same guid becomes the key
+        removeEntry(overlay);
+
+        final EnumSet<Context.UI> uis = overlay.getActiveUIs().contains(Context.UI.Any)
+                ? EnumSet.allOf(Context.UI.class)
+                : EnumSet.copyOf(overlay.getActiveUIs());
+        uis.add(Context.UI.Any);
+
+        final Entry entry = new Entry(overlay, overlay.getDimension(), overlay.getDisplayOrder(), uis);
+        entries.put(overlay, entry);
+
+        final EnumMap<Context.UI, TreeSet<Entry>> lists = dimensionLists.computeIfAbsent(entry.dimension,
+                key -> new EnumMap<>(Context.UI.class));
+        for (Context.UI ui : uis)
+        {
+            lists.computeIfAbsent(ui, key -> new TreeSet<>(ORDER)).add(entry);
+        }
+    }
+
+    /**
+     * Removes an overlay.
+     *
+     * @param overlay the overlay
+     * @return true if it had been added
+     */
+    public boolean remove(Overlay overlay)
+    {
+        return removeEntry(overlay) != null;
+    }
+
+    /**
+     * Removes all overlays which match a filter, such as all those of a mod.
+     *
+     * @param filter the filter
+     */
+    public void removeIf(Predicate<? super Overlay> filter)
+    {
+        final List<Overlay> removed = new ArrayList<>();
+        for (Overlay overlay : entries.keySet())
+        {
+            if (filter.test(overlay))
+            {
+                removed.add(overlay);
+            }
+        }
+        for (Overlay overlay : removed)
+        {
+            removeEntry(overlay);
+        }
+    }
+
+    /**
+     * Removes all overlays.
+     */
+    public void clear()
+    {
+        entries.clear();
+        dimensionLists.clear();
+    }
+
+    /**
+     * Number of overlays in all dimensions.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Gets the overlays in a dimension which are active in a UI, in the order they should be drawn.
+     *
+     * @param dimension the dimension
+     * @param ui        the UI, or {@link Context.UI#Any} for the overlays in every UI
+     * @return the overlays, the first to be drawn first
+     */
+    public List<Overlay> getOverlays(@Nullable ResourceKey<Level> dimension, Context.UI ui)
+    {
+        final List<Overlay> result = new ArrayList<>();
+        forEachOverlay(dimension, ui, result::add);
+        return result;
+    }
+
+    /**
+     * Passes the overlays in a dimension which are active in a UI to a consumer, in the order they should be
+     * drawn. The index must not be modified by the consumer.
+     *
+     * @param dimension the dimension
+     * @param ui        the UI, or {@link Context.UI#Any} for the overlays in every UI
+     * @param consumer  the consumer
+     */
+    public void forEachOverlay(@Nullable ResourceKey<Level> dimension, Context.UI ui, Consumer<? super Overlay> consumer)
+    {
+        final EnumMap<Context.UI, TreeSet<Entry>> lists = dimensionLists.get(dimension);
+        final TreeSet<Entry> list = lists == null ? null : lists.get(ui);
+        if (list != null)
+        {
+            for (Entry entry : list)
+            {
+                consumer.accept(entry.overlay);
+            }
+        }
+    }
+
+    @Nullable
+    private Entry removeEntry(Overlay overlay)
+    {
+        final Entry entry = entries.remove(overlay);
+        if (entry == null)
+        {
+            return null;
+        }
+
+        final EnumMap<Context.UI, TreeSet<Entry>> lists = dimensionLists.get(entry.dimension);
+        for (Context.UI ui : entry.uis)
+        {
+            final TreeSet<Entry> list = lists.get(ui);
+            list.remove(entry);
+            if (list.isEmpty())
+            {
+                lists.remove(ui);
+            }
+        }
+        if (lists.isEmpty())
+        {
+            dimensionLists.remove(entry.dimension);
+        }
+        return entry;
+    }
+
+    /**
+     * An overlay with the values it was sorted by.
+     */
+    private static class Entry
+    {
+        final Overlay overlay;
+        final ResourceKey<Level> dimension;
+        final int displayOrder;
+        final EnumSet<Context.UI> uis;
+
+        Entry(Overlay overlay, ResourceKey<Level> dimension, int displayOrder, EnumSet<Context.UI> uis)
+        {
+            this.overlay = overlay;
+            this.dimension = dimension;
+            this.displayOrder = displayOrder;
+            this.uis = uis;
+        }
+    }
+}
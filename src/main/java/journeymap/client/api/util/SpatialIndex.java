@@ -0,0 +1,346 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A spatial index of objects keyed on their block XZ bounds, used to find the objects within an area
+ * without having to check every object.
+ * <p>
+ * Objects are kept in a hierarchy of loose grids. Each object is put in the finest grid whose cells are at least
+ * as large as the object, in the cell containing its minimum corner. A query only visits the cells of each grid
+ * which could overlap the queried area, so its cost scales with the number of objects in that area rather than
+ * with the number of objects in the index.
+ * <p>
+ * Bounds are inclusive block coordinates. This class is not thread-safe.
+ *
+ * @param <T> the type of object indexed. Objects are tracked by equals/hashCode, so putting an object which
+ *            is equal to one already in the index replaces it.
+ */
+@ParametersAreNonnullByDefault
+public class SpatialIndex<T>
+{
+    /**
+     * Cell size of the finest grid is 64 blocks.
+     */
+    private static final int MIN_SHIFT = 6;
+
+    /**
+     * Cell size of the coarsest grid is 2^31 blocks, which holds anything in the int range.
+     */
+    private static final int MAX_SHIFT = 31;
+
+    private final Grid<T>[] grids;
+    private final HashMap<T, Entry<T>> entries = new HashMap<>();
+
+    /**
+     * Constructor.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SpatialIndex()
+    {
+        grids = new Grid[MAX_SHIFT - MIN_SHIFT + 1];
+    }
+
+    /**
+     * Adds an object to the index, or updates its bounds if it is already there.
+     *
+     * @param item the object
+     * @param minX min block x
+     * @param minZ min block z
+     * @param maxX max block x
+     * @param maxZ max block z
+     */
+    public void put(T item, int minX, int minZ, int maxX, int maxZ)
+    {
+        remove(item);
+
+        final long size = Math.max((long) maxX - minX, (long) maxZ - minZ);
+        int shift = MIN_SHIFT;
+        while (shift < MAX_SHIFT && (1L << shift) < size)
+        {
+            shift++;
+        }
+
+        Grid<T> grid = grids[shift - MIN_SHIFT];
+        if (grid == null)
+        {
+            grid = new Grid<>(shift);
+            grids[shift - MIN_SHIFT] = grid;
+        }
+
+        final Entry<T> entry = new Entry<>(item, minX, minZ, maxX, maxZ, grid, cellKey(minX >> shift, minZ >> shift));
+        grid.add(entry);
+        entries.put(item, entry);
+    }
+
+    /**
+     * Removes an object from the index.
+     *
+     * @param item the object
+     * @return true if it was in the index
+     */
+    public boolean remove(Object item)
+    {
+        final Entry<T> entry = entries.remove(item);
+        if (entry == null)
+        {
+            return false;
+        }
+        entry.grid.remove(entry);
+        return true;
+    }
+
+    /**
+     * Removes all objects which match a filter.
+     *
+     * @param filter the filter
+     * @return true if any were removed
+     */
+    public boolean removeIf(Predicate<? super T> filter)
+    {
+        boolean removed = false;
+        final Iterator<Entry<T>> iter = entries.values().iterator();
+        while (iter.hasNext())
+        {
+            final Entry<T> entry = iter.next();
+            if (filter.test(entry.item))
+            {
+                iter.remove();
+                entry.grid.remove(entry);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Whether an object is in the index.
+     *
+     * @param item the object
+     * @return true if present
+     */
+    public boolean contains(Object item)
+    {
+        return entries.containsKey(item);
+    }
+
+    /**
+     * Number of objects in the index.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Whether the index is empty.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty()
+    {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Removes everything from the index.
+     */
+    public void clear()
+    {
+        entries.clear();
+        for (int i = 0; i < grids.length; i++)
+        {
+            grids[i] = null;
+        }
+    }
+
+    /**
+     * Passes every object in the index to the consumer, in no particular order.
+     *
+     * @param consumer the consumer
+     */
+    public void forEach(Consumer<? super T> consumer)
+    {
+        for (T item : entries.keySet())
+        {
+            consumer.accept(item);
+        }
+    }
+
+    /**
+     * Passes each object whose bounds intersect the area to the consumer, in no particular order.
+     * The index must not be modified by the consumer.
+     *
+     * @param minX     min block x
+     * @param minZ     min block z
+     * @param maxX     max block x
+     * @param maxZ     max block z
+     * @param consumer the consumer
+     */
+    public void query(int minX, int minZ, int maxX, int maxZ, Consumer<? super T> consumer)
+    {
+        for (final Grid<T> grid : grids)
+        {
+            if (grid == null || grid.cells.isEmpty())
+            {
+                continue;
+            }
+
+            // A loose cell holds objects which start in it and extend at most one cell further
+            final int shift = grid.shift;
+            final int minCellX = (minX >> shift) - 1;
+            final int minCellZ = (minZ >> shift) - 1;
+            final int maxCellX = maxX >> shift;
+            final int maxCellZ = maxZ >> shift;
+
+            final long cellCount = ((long) maxCellX - minCellX + 1) * ((long) maxCellZ - minCellZ + 1);
+            if (cellCount > grid.cells.size())
+            {
+                // Cheaper to check the occupied cells than to look up every cell in range
+                for (final Long2ObjectMap.Entry<ArrayList<Entry<T>>> cell : grid.cells.long2ObjectEntrySet())
+                {
+                    final int cellX = cellX(cell.getLongKey());
+                    final int cellZ = cellZ(cell.getLongKey());
+                    if (cellX >= minCellX && cellX <= maxCellX && cellZ >= minCellZ && cellZ <= maxCellZ)
+                    {
+                        queryCell(cell.getValue(), minX, minZ, maxX, maxZ, consumer);
+                    }
+                }
+            }
+            else
+            {
+                for (int cellX = minCellX; cellX <= maxCellX; cellX++)
+                {
+                    for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++)
+                    {
+                        final ArrayList<Entry<T>> cell = grid.cells.get(cellKey(cellX, cellZ));
+                        if (cell != null)
+                        {
+                            queryCell(cell, minX, minZ, maxX, maxZ, consumer);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void queryCell(ArrayList<Entry<T>> cell, int minX, int minZ, int maxX, int maxZ, Consumer<? super T> consumer)
+    {
+        for (int i = 0, size = cell.size(); i < size; i++)
+        {
+            final Entry<T> entry = cell.get(i);
+            if (entry.minX <= maxX && entry.maxX >= minX && entry.minZ <= maxZ && entry.maxZ >= minZ)
+            {
+                consumer.accept(entry.item);
+            }
+        }
+    }
+
+    private static long cellKey(int cellX, int cellZ)
+    {
+        return ((long) cellX << 32) | (cellZ & 0xffffffffL);
+    }
+
+    private static int cellX(long key)
+    {
+        return (int) (key >> 32);
+    }
+
+    private static int cellZ(long key)
+    {
+        return (int) key;
+    }
+
+    /**
+     * A loose grid with cells of a single size.
+     */
+    private static class Grid<T>
+    {
+        final int shift;
+        final Long2ObjectOpenHashMap<ArrayList<Entry<T>>> cells = new Long2ObjectOpenHashMap<>();
+
+        Grid(int shift)
+        {
+            this.shift = shift;
+        }
+
+        void add(Entry<T> entry)
+        {
+            final ArrayList<Entry<T>> cell = cells.computeIfAbsent(entry.cellKey, key -> new ArrayList<>());
+            entry.slot = cell.size();
+            cell.add(entry);
+        }
+
+        void remove(Entry<T> entry)
+        {
+            final ArrayList<Entry<T>> cell = cells.get(entry.cellKey);
+            final Entry<T> last = cell.remove(cell.size() - 1);
+            if (last != entry)
+            {
+                // Swap the last entry into the vacated slot
+                last.slot = entry.slot;
+                cell.set(entry.slot, last);
+            }
+            if (cell.isEmpty())
+            {
+                cells.remove(entry.cellKey);
+            }
+        }
+    }
+
+    /**
+     * An indexed object and where it is kept.
+     */
+    private static class Entry<T>
+    {
+        final T item;
+        final int minX;
+        final int minZ;
+        final int maxX;
+        final int maxZ;
+        final Grid<T> grid;
+        final long cellKey;
+        int slot;
+
+        Entry(T item, int minX, int minZ, int maxX, int maxZ, Grid<T> grid, long cellKey)
+        {
+            this.item = item;
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+            this.grid = grid;
+            this.cellKey = cellKey;
+        }
+    }
+}
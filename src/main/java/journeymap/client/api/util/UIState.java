@@ -72,6 +72,10 @@ public final class UIState
      */
     public final double blockSize;
 
+    /**
+     * The ui, mapType and zoom encoded by {@link ActivationMask#forState}, for checking whether things are active.
+     */
+    public final int activationBits;
 
     /**
      * Constructor.
@@ -101,6 +105,7 @@ public final class UIState
         this.blockBounds = blockBounds;
         this.displayBounds = displayBounds;
         this.blockSize = Math.pow(2, zoom);
+        this.activationBits = ActivationMask.forState(ui, mapType, zoom);
     }
 
     /**
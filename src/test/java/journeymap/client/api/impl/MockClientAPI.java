@@ -27,8 +27,14 @@ import com.google.common.collect.LinkedHashMultimap;
 import journeymap.client.api.display.Context;
 import journeymap.client.api.display.DisplayType;
 import journeymap.client.api.display.Displayable;
+import journeymap.client.api.display.MarkerOverlay;
+import journeymap.client.api.display.Overlay;
 import journeymap.client.api.display.Waypoint;
 import journeymap.client.api.event.ClientEvent;
+import journeymap.client.api.util.FingerprintIndex;
+import journeymap.client.api.util.MarkerClusterIndex;
+import journeymap.client.api.util.OverlayIndex;
+import journeymap.client.api.util.RenderOrderIndex;
 import journeymap.client.api.util.UIState;
 import net.minecraft.client.Minecraft;
 import net.minecraft.core.BlockPos;
@@ -46,13 +52,15 @@ import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Random;
 import java.util.function.Consumer;
 
 /**
- * Stub implementation of the IClientAPI. Doesn't actually do anything, other than track displayIds.
+ * Stub implementation of the IClientAPI. Doesn't actually do anything, other than track displayIds
+ * and index the overlays shown.
  */
 //@Optional.Interface(iface = "journeymap.client.api.IClientAPI", modid = "journeymap")
 @ParametersAreNonnullByDefault
@@ -75,6 +83,10 @@ enum MockClientAPI implements journeymap.client.api.IClientAPI
                         }
                     });
 
+    private final OverlayIndex overlayIndex = new OverlayIndex();
+    private final MarkerClusterIndex markerClusterIndex = new MarkerClusterIndex();
+    private final RenderOrderIndex renderOrderIndex = new RenderOrderIndex();
+    private final FingerprintIndex fingerprintIndex = new FingerprintIndex();
 
     @Override
     public UIState getUIState(Context.UI ui)
@@ -100,7 +112,18 @@ enum MockClientAPI implements journeymap.client.api.IClientAPI
     @Override
     public void show(Displayable displayable)
     {
+        final Displayable shown = fingerprintIndex.get(displayable.getGuid());
+        if (!fingerprintIndex.update(displayable))
+        {
+            // Unchanged, but the indexes should hold the instance shown last
+            if (shown != displayable)
+            {
+                indexDisplayable(displayable);
+            }
+            return;
+        }
         showDisplayable(displayable.getModId(), displayable.getDisplayType(), displayable.getId());
+        indexDisplayable(displayable);
     }
 
     private void showDisplayable(String modId, DisplayType displayType, String displayId)
@@ -109,16 +132,81 @@ enum MockClientAPI implements journeymap.client.api.IClientAPI
         log(String.format("Showed %s:%s:%s", modId, displayType, displayId));
     }
 
+    private void indexDisplayable(Displayable displayable)
+    {
+        if (displayable instanceof Overlay)
+        {
+            overlayIndex.add((Overlay) displayable);
+            renderOrderIndex.add((Overlay) displayable);
+        }
+        if (displayable instanceof MarkerOverlay)
+        {
+            markerClusterIndex.add((MarkerOverlay) displayable);
+        }
+    }
+
+    private void unindexDisplayable(Displayable displayable)
+    {
+        if (displayable instanceof Overlay)
+        {
+            overlayIndex.remove((Overlay) displayable);
+            renderOrderIndex.remove((Overlay) displayable);
+        }
+        if (displayable instanceof MarkerOverlay)
+        {
+            markerClusterIndex.remove((MarkerOverlay) displayable);
+        }
+    }
+
+    @Override
+    public void showAll(Collection<? extends Displayable> displayables)
+    {
+        // Log once per batch rather than per displayable, so throughput of the batched path can be measured
+        for (Displayable displayable : displayables)
+        {
+            final Displayable shown = fingerprintIndex.get(displayable.getGuid());
+            if (!fingerprintIndex.update(displayable))
+            {
+                if (shown != displayable)
+                {
+                    indexDisplayable(displayable);
+                }
+                continue;
+            }
+            modDisplayables.getUnchecked(displayable.getModId()).put(displayable.getDisplayType(), displayable.getId());
+            indexDisplayable(displayable);
+        }
+        log(String.format("Showed %s displayables", displayables.size()));
+    }
+
     @Override
     public void remove(Displayable displayable)
     {
         modDisplayables.getUnchecked(displayable.getModId()).remove(displayable.getDisplayType(), displayable.getId());
+        unindexDisplayable(displayable);
+        fingerprintIndex.remove(displayable);
+    }
+
+    @Override
+    public void removeAll(Collection<? extends Displayable> displayables)
+    {
+        for (Displayable displayable : displayables)
+        {
+            modDisplayables.getUnchecked(displayable.getModId()).remove(displayable.getDisplayType(), displayable.getId());
+            unindexDisplayable(displayable);
+            fingerprintIndex.remove(displayable);
+        }
+        log(String.format("Removed %s displayables", displayables.size()));
     }
 
     @Override
     public void removeAll(String modId, DisplayType displayType)
     {
         modDisplayables.getUnchecked(modId).removeAll(displayType);
+        overlayIndex.removeIf(overlay -> overlay.getModId().equals(modId) && overlay.getDisplayType() == displayType);
+        renderOrderIndex.removeIf(overlay -> overlay.getModId().equals(modId) && overlay.getDisplayType() == displayType);
+        markerClusterIndex.removeIf(marker -> marker.getModId().equals(modId) && marker.getDisplayType() == displayType);
+        fingerprintIndex.removeIf(displayable -> displayable.getModId().equals(modId) && displayable.getDisplayType() == displayType);
         log(String.format("Removed all %s:%s", modId, displayType));
     }
 
@@ -126,6 +214,10 @@ enum MockClientAPI implements journeymap.client.api.IClientAPI
     public void removeAll(String modId)
     {
         modDisplayables.invalidateAll();
+        overlayIndex.removeIf(overlay -> overlay.getModId().equals(modId));
+        renderOrderIndex.removeIf(overlay -> overlay.getModId().equals(modId));
+        markerClusterIndex.removeIf(marker -> marker.getModId().equals(modId));
+        fingerprintIndex.removeIf(displayable -> displayable.getModId().equals(modId));
         log(String.format("Removed all %s", modId));
     }
 
@@ -135,6 +227,36 @@ enum MockClientAPI implements journeymap.client.api.IClientAPI
         return modDisplayables.getUnchecked(displayable.getModId()).containsEntry(displayable.getDisplayType(), displayable.getId());
     }
 
+    @Override
+    public List<Overlay> getOverlays(ResourceKey<Level> dimension, AABB blockBounds)
+    {
+        return overlayIndex.getOverlays(dimension, blockBounds);
+    }
+
+    @Override
+    public List<MarkerClusterIndex.Cluster> getMarkerClusters(ResourceKey<Level> dimension, AABB blockBounds, int zoom)
+    {
+        return markerClusterIndex.getClusters(dimension, blockBounds, zoom);
+    }
+
+    @Override
+    public List<Overlay> getOverlaysInRenderOrder(ResourceKey<Level> dimension, Context.UI ui)
+    {
+        return renderOrderIndex.getOverlays(dimension, ui);
+    }
+
+    @Override
+    public long getAppliedShowCount()
+    {
+        return fingerprintIndex.getAppliedCount();
+    }
+
+    @Override
+    public long getSkippedShowCount()
+    {
+        return fingerprintIndex.getSkippedCount();
+    }
+
     @Override
     public boolean playerAccepts(String modId, DisplayType displayType)
     {
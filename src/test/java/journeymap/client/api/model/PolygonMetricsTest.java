@@ -0,0 +1,114 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+
+package journeymap.client.api.model;
+
+import journeymap.client.api.util.ChunkOutlineTracer;
+import journeymap.client.api.util.PolygonHelper;
+import net.minecraft.world.level.ChunkPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks {@link PolygonMetrics} on simple shapes, and that label points are inside the hull and outside the holes.
+ */
+public class PolygonMetricsTest
+{
+    private static final int Y = 64;
+
+    @Test
+    public void squareWithAHole()
+    {
+        final MapPolygon square = new MapPolygon(new int[]{0, 0, 0, 100, 100, 100, 100, 0}, Y);
+        final MapPolygon hole = new MapPolygon(new int[]{40, 40, 60, 40, 60, 60, 40, 60}, Y);
+        final PolygonMetrics metrics = PolygonMetrics.of(square, Arrays.asList(hole));
+        assertEquals(9600, metrics.getArea(), 0);
+        assertEquals(480, metrics.getPerimeter(), 1e-9);
+        assertEquals(50, metrics.getCentroidX(), 1e-9);
+        assertEquals(50, metrics.getCentroidZ(), 1e-9);
+        assertTrue(PolygonHelper.contains(square, Arrays.asList(hole), metrics.getLabelX(), metrics.getLabelZ()),
+                "label is in the hole");
+    }
+
+    @Test
+    public void labelOfAnLShapeIsInIt()
+    {
+        final MapPolygon shape = new MapPolygon(new int[]{0, 0, 0, 20, 20, 20, 20, 10, 10, 10, 10, 0}, Y);
+        final PolygonMetrics metrics = shape.getMetrics();
+        assertEquals(300, metrics.getArea(), 0);
+        assertTrue(PolygonHelper.contains(shape, metrics.getLabelX(), metrics.getLabelZ()));
+    }
+
+    @Test
+    public void labelsOfChunkOutlinesAreInside()
+    {
+        final Random random = new Random(17);
+        for (int run = 0; run < 300; run++)
+        {
+            final Set<ChunkPos> chunks = new HashSet<>();
+            final int size = 3 + random.nextInt(30);
+            for (int x = 0; x < size; x++)
+            {
+                for (int z = 0; z < size; z++)
+                {
+                    if (random.nextDouble() < 0.6)
+                    {
+                        chunks.add(new ChunkPos(x, z));
+                    }
+                }
+            }
+            for (MapPolygonWithHoles polygon : ChunkOutlineTracer.trace(chunks, Y))
+            {
+                final PolygonMetrics metrics = polygon.getMetrics();
+                assertTrue(PolygonHelper.contains(polygon.hull, polygon.holes, metrics.getLabelX(), metrics.getLabelZ()),
+                        "run " + run + ": label outside " + polygon);
+            }
+        }
+    }
+
+    @Test
+    public void labelsOfStarsAreInside()
+    {
+        final Random random = new Random(18);
+        for (int run = 0; run < 2000; run++)
+        {
+            final int points = 3 + random.nextInt(40);
+            final int[] xz = new int[points * 2];
+            for (int i = 0; i < points; i++)
+            {
+                final double angle = 2 * Math.PI * i / points;
+                final double distance = 1000 * (0.1 + 0.9 * random.nextDouble());
+                xz[i * 2] = (int) Math.round(distance * Math.cos(angle));
+                xz[i * 2 + 1] = (int) Math.round(distance * Math.sin(angle));
+            }
+            final MapPolygon star = new MapPolygon(xz, Y);
+            final PolygonMetrics metrics = star.getMetrics();
+            assertTrue(PolygonHelper.contains(star, metrics.getLabelX(), metrics.getLabelZ()), "run " + run + ": label outside " + star);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.model.MapPolygonWithHoles;
+import net.minecraft.world.level.ChunkPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link ChunkOutlineSet}, after each add or remove, has the polygons a full trace of its chunks
+ * would give, and that its {@link ChunkOutlineSet.Changes} keep a copy of them up to date.
+ */
+public class ChunkOutlineSetTest
+{
+    private static final int Y = 64;
+
+    @Test
+    public void randomEditsMatchFullTrace()
+    {
+        final Random random = new Random(10);
+        for (int run = 0; run < 300; run++)
+        {
+            final ChunkOutlineSet set = new ChunkOutlineSet(Y);
+            final Set<ChunkPos> chunks = new HashSet<>();
+            final Map<Integer, MapPolygonWithHoles> mirror = new HashMap<>();
+            final int size = 3 + random.nextInt(10);
+            for (int step = 0; step < 200; step++)
+            {
+                final ChunkPos chunk = new ChunkPos(random.nextInt(size), random.nextInt(size));
+                final ChunkOutlineSet.Changes changes;
+                if (random.nextDouble() < 0.6)
+                {
+                    chunks.add(chunk);
+                    changes = set.addChunk(chunk);
+                }
+                else
+                {
+                    chunks.remove(chunk);
+                    changes = set.removeChunk(chunk);
+                }
+                apply(changes, mirror);
+
+                final String message = "run " + run + " step " + step;
+                final Object expected = ChunkOutlineTracerTest.canonical(ChunkOutlineTracer.trace(chunks, Y));
+                assertEquals(expected, ChunkOutlineTracerTest.canonical(new ArrayList<>(set.getPolygons().values())), message);
+                assertEquals(expected, ChunkOutlineTracerTest.canonical(new ArrayList<>(mirror.values())), message + ": changes");
+                assertEquals(chunks.size(), set.size(), message);
+                assertGroups(set, chunks, message);
+            }
+
+            apply(set.clear(), mirror);
+            assertTrue(mirror.isEmpty(), "run " + run + ": clear left polygons");
+            assertEquals(0, set.size());
+        }
+    }
+
+    private static void apply(ChunkOutlineSet.Changes changes, Map<Integer, MapPolygonWithHoles> mirror)
+    {
+        for (int id : changes.getRemoved())
+        {
+            mirror.remove(id);
+        }
+        mirror.putAll(changes.getUpdated());
+    }
+
+    /**
+     * Checks that each polygon's group is exactly the chunks its polygon covers.
+     */
+    private static void assertGroups(ChunkOutlineSet set, Set<ChunkPos> chunks, String message)
+    {
+        for (ChunkPos chunk : chunks)
+        {
+            final int id = set.getGroupId(chunk.x, chunk.z);
+            assertTrue(id >= 0, message + ": " + chunk + " has no group");
+            final MapPolygonWithHoles polygon = set.getPolygon(id);
+            assertTrue(PolygonHelper.contains(polygon.hull, polygon.holes, chunk.x * 16 + 8, chunk.z * 16 + 8),
+                    message + ": " + chunk + " isn't inside its group's polygon");
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import net.minecraft.world.level.ChunkPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks {@link ChunkOutlineTracer} by rasterizing its polygons at the center of every chunk, and compares its
+ * rings with the {@link java.awt.geom.Area} path used before it wherever that path covers the right chunks.
+ */
+public class ChunkOutlineTracerTest
+{
+    private static final int Y = 64;
+
+    @Test
+    public void islandInsideAHoleIsItsOwnPolygon()
+    {
+        // A 5x5 ring around a 3x3 hole, with one chunk in the middle of the hole
+        final Set<ChunkPos> chunks = new HashSet<>();
+        for (int x = 0; x < 5; x++)
+        {
+            for (int z = 0; z < 5; z++)
+            {
+                if (x == 0 || x == 4 || z == 0 || z == 4)
+                {
+                    chunks.add(new ChunkPos(x, z));
+                }
+            }
+        }
+        chunks.add(new ChunkPos(2, 2));
+
+        final List<MapPolygonWithHoles> polygons = ChunkOutlineTracer.trace(chunks, Y);
+        assertEquals(2, polygons.size());
+        assertCovers(chunks, polygons, "ring with island");
+    }
+
+    @Test
+    public void chunksTouchingAtACornerAreSeparatePolygons()
+    {
+        final Set<ChunkPos> chunks = new HashSet<>(Arrays.asList(new ChunkPos(0, 0), new ChunkPos(1, 1)));
+        final List<MapPolygonWithHoles> polygons = ChunkOutlineTracer.trace(chunks, Y);
+        assertEquals(2, polygons.size());
+        assertCovers(chunks, polygons, "diagonal pair");
+    }
+
+    @Test
+    public void randomChunksMatchRasterization()
+    {
+        final Random random = new Random(8);
+        for (int run = 0; run < 2000; run++)
+        {
+            final Set<ChunkPos> chunks = randomChunks(random);
+            final List<MapPolygonWithHoles> traced = ChunkOutlineTracer.trace(chunks, Y);
+            assertCovers(chunks, traced, "run " + run);
+            assertEquals(countComponents(chunks), traced.size(), "run " + run + ": one polygon per edge-connected group");
+        }
+    }
+
+    @Test
+    public void randomChunksMatchAreaWhereAreaIsRight()
+    {
+        final Random random = new Random(9);
+        for (int run = 0; run < 1000; run++)
+        {
+            final Set<ChunkPos> chunks = randomChunks(random);
+            final List<MapPolygonWithHoles> traced = ChunkOutlineTracer.trace(chunks, Y);
+            final List<MapPolygonWithHoles> area = PolygonHelper.createPolygonFromArea(PolygonHelper.createChunksArea(chunks), Y);
+
+            // Where the Area path covers the wrong chunks the tracer is held to the rasterization alone
+            assertCovers(chunks, traced, "run " + run);
+            if (rasterize(chunks, area).equals(chunks))
+            {
+                assertEquals(canonical(area), canonical(traced), "run " + run + ": rings differ from the Area path");
+            }
+        }
+    }
+
+    @Test
+    public void parallelTraceIsIdenticalToTrace()
+    {
+        final Random random = new Random(11);
+        for (int run = 0; run < 100; run++)
+        {
+            // Between 5000 and about 36000 chunks, so every set is traced in parallel, spread over many regions
+            final int size = 100 + random.nextInt(100);
+            final double fill = 0.5 + random.nextDouble() * 0.4;
+            final int offsetX = random.nextInt(2000) - 1000, offsetZ = random.nextInt(2000) - 1000;
+            final LongOpenHashSet chunks = new LongOpenHashSet();
+            for (int x = 0; x < size; x++)
+            {
+                for (int z = 0; z < size; z++)
+                {
+                    if (random.nextDouble() < fill)
+                    {
+                        chunks.add(ChunkPos.asLong(offsetX + x, offsetZ + z));
+                    }
+                }
+            }
+            assertTrue(chunks.size() >= 4096);
+            assertEquals(exact(ChunkOutlineTracer.trace(chunks, Y)),
+                    exact(ChunkOutlineTracer.traceParallel(chunks, Y, ForkJoinPool.commonPool())), "run " + run);
+        }
+    }
+
+    private static void assertCovers(Set<ChunkPos> chunks, List<MapPolygonWithHoles> polygons, String message)
+    {
+        assertEquals(chunks, rasterize(chunks, polygons), message + ": covered chunks differ");
+    }
+
+    /**
+     * @return the chunks around the given ones whose centers are inside exactly one of the polygons
+     */
+    private static Set<ChunkPos> rasterize(Set<ChunkPos> chunks, List<MapPolygonWithHoles> polygons)
+    {
+        int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (ChunkPos chunk : chunks)
+        {
+            minX = Math.min(minX, chunk.x);
+            minZ = Math.min(minZ, chunk.z);
+            maxX = Math.max(maxX, chunk.x);
+            maxZ = Math.max(maxZ, chunk.z);
+        }
+
+        final Set<ChunkPos> covered = new HashSet<>();
+        for (int x = minX - 1; x <= maxX + 1; x++)
+        {
+            for (int z = minZ - 1; z <= maxZ + 1; z++)
+            {
+                final double blockX = x * 16 + 8, blockZ = z * 16 + 8;
+                int inside = 0;
+                for (MapPolygonWithHoles polygon : polygons)
+                {
+                    if (PolygonHelper.contains(polygon.hull, polygon.holes, blockX, blockZ))
+                    {
+                        inside++;
+                    }
+                }
+                if (inside == 1)
+                {
+                    covered.add(new ChunkPos(x, z));
+                }
+                else if (inside > 1)
+                {
+                    // Overlapping polygons can't match, so mark it with a chunk outside the window
+                    covered.add(new ChunkPos(Integer.MIN_VALUE, Integer.MIN_VALUE));
+                }
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * @return each polygon's rings as text, starting each ring at its least point, so polygons compare equal
+     * regardless of their order and where their rings start
+     */
+    static List<String> canonical(List<MapPolygonWithHoles> polygons)
+    {
+        final List<String> result = new ArrayList<>();
+        for (MapPolygonWithHoles polygon : polygons)
+        {
+            final List<String> holes = new ArrayList<>();
+            for (MapPolygon hole : polygon.holes)
+            {
+                holes.add(canonical(hole));
+            }
+            Collections.sort(holes);
+            result.add(canonical(polygon.hull) + " holes " + holes);
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static String canonical(MapPolygon ring)
+    {
+        final int count = ring.getPointCount();
+        int start = 0;
+        for (int i = 1; i < count; i++)
+        {
+            if (ring.getX(i) < ring.getX(start) || (ring.getX(i) == ring.getX(start) && ring.getZ(i) < ring.getZ(start)))
+            {
+                start = i;
+            }
+        }
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++)
+        {
+            final int index = (start + i) % count;
+            text.append('(').append(ring.getX(index)).append(',').append(ring.getZ(index)).append(')');
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return every point of every ring in order, so only identical results compare equal
+     */
+    private static String exact(List<MapPolygonWithHoles> polygons)
+    {
+        final StringBuilder text = new StringBuilder();
+        for (MapPolygonWithHoles polygon : polygons)
+        {
+            text.append("hull ").append(Arrays.toString(polygon.hull.getPackedXZ())).append('\n');
+            for (MapPolygon hole : polygon.holes)
+            {
+                text.append("hole ").append(Arrays.toString(hole.getPackedXZ())).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    private static int countComponents(Set<ChunkPos> chunks)
+    {
+        final Set<ChunkPos> seen = new HashSet<>();
+        final Deque<ChunkPos> queue = new ArrayDeque<>();
+        int components = 0;
+        for (ChunkPos start : chunks)
+        {
+            if (!seen.add(start))
+            {
+                continue;
+            }
+            components++;
+            queue.add(start);
+            while (!queue.isEmpty())
+            {
+                final ChunkPos chunk = queue.poll();
+                for (ChunkPos next : new ChunkPos[]{new ChunkPos(chunk.x + 1, chunk.z), new ChunkPos(chunk.x - 1, chunk.z),
+                        new ChunkPos(chunk.x, chunk.z + 1), new ChunkPos(chunk.x, chunk.z - 1)})
+                {
+                    if (chunks.contains(next) && seen.add(next))
+                    {
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return components;
+    }
+
+    static Set<ChunkPos> randomChunks(Random random)
+    {
+        final int size = 2 + random.nextInt(14);
+        final double fill = 0.3 + random.nextDouble() * 0.5;
+        final int offsetX = random.nextInt(40) - 20, offsetZ = random.nextInt(40) - 20;
+        final Set<ChunkPos> chunks = new HashSet<>();
+        for (int x = 0; x < size; x++)
+        {
+            for (int z = 0; z < size; z++)
+            {
+                if (random.nextDouble() < fill)
+                {
+                    chunks.add(new ChunkPos(offsetX + x, offsetZ + z));
+                }
+            }
+        }
+        if (chunks.isEmpty())
+        {
+            chunks.add(new ChunkPos(offsetX, offsetZ));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import journeymap.client.api.model.PolygonMetrics;
+import journeymap.client.api.model.Triangulation;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.phys.AABB;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link PolygonTriangulator}'s triangles add up to the polygon's area, and that sample points are
+ * inside exactly one triangle when they are inside the polygon and none otherwise.
+ */
+public class PolygonTriangulatorTest
+{
+    private static final int Y = 64;
+
+    @Test
+    public void outlineTouchingItselfAtACorner()
+    {
+        // A ring of chunks around one chunk, missing a corner diagonal to it, so the outline meets itself there
+        final Set<ChunkPos> chunks = new HashSet<>(Arrays.asList(new ChunkPos(1, 0), new ChunkPos(2, 0),
+                new ChunkPos(0, 1), new ChunkPos(2, 1), new ChunkPos(0, 2), new ChunkPos(1, 2), new ChunkPos(2, 2)));
+        final List<MapPolygonWithHoles> polygons = ChunkOutlineTracer.trace(chunks, Y);
+        assertEquals(1, polygons.size());
+        assertCovers(polygons.get(0).hull, polygons.get(0).holes, new Random(1), 500);
+    }
+
+    @Test
+    public void chunkOutlinesMatchTheirArea()
+    {
+        final Random random = new Random(13);
+        int withHoles = 0;
+        while (withHoles < 2500)
+        {
+            final Set<ChunkPos> chunks = new HashSet<>();
+            final int size = 3 + random.nextInt(20);
+            final double fill = 0.4 + random.nextDouble() * 0.55;
+            for (int x = 0; x < size; x++)
+            {
+                for (int z = 0; z < size; z++)
+                {
+                    if (random.nextDouble() < fill)
+                    {
+                        chunks.add(new ChunkPos(x, z));
+                    }
+                }
+            }
+            for (MapPolygonWithHoles polygon : ChunkOutlineTracer.trace(chunks, Y))
+            {
+                final Triangulation triangulation = PolygonTriangulator.triangulate(polygon);
+                assertEquals(polygon.getMetrics().getArea(), area(triangulation), 0, "triangles don't add up to the area");
+                if (!polygon.holes.isEmpty())
+                {
+                    withHoles++;
+                    if (withHoles % 100 == 0)
+                    {
+                        assertCovers(polygon.hull, polygon.holes, random, 200);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void simplePolygonsWithHolesAreCovered()
+    {
+        final Random random = new Random(14);
+        for (int run = 0; run < 2000; run++)
+        {
+            final MapPolygon hull = star(random, 0, 0, 1000, 3 + random.nextInt(40));
+            final List<MapPolygon> holes = new ArrayList<>();
+            for (int i = random.nextInt(6); i > 0; i--)
+            {
+                final MapPolygon hole = star(random, random.nextInt(800) - 400, random.nextInt(800) - 400, 60, 3 + random.nextInt(10));
+                if (fitsInside(hull, holes, hole))
+                {
+                    holes.add(hole);
+                }
+            }
+            assertCovers(hull, holes, random, 200);
+        }
+    }
+
+    private static void assertCovers(MapPolygon hull, List<MapPolygon> holes, Random random, int samples)
+    {
+        final Triangulation triangulation = PolygonTriangulator.triangulate(hull, holes);
+        assertEquals(PolygonMetrics.of(hull, holes).getArea(), area(triangulation), 0, "triangles don't add up to the area");
+
+        final AABB bounds = hull.getBounds();
+        for (int i = 0; i < samples; i++)
+        {
+            final double x = bounds.minX + random.nextDouble() * (bounds.maxX - bounds.minX);
+            final double z = bounds.minZ + random.nextDouble() * (bounds.maxZ - bounds.minZ);
+            int inside = 0;
+            for (int t = 0; t < triangulation.getTriangleCount(); t++)
+            {
+                if (inTriangle(triangulation, t, x, z))
+                {
+                    inside++;
+                }
+            }
+            assertEquals(PolygonHelper.contains(hull, holes, x, z) ? 1 : 0, inside, "triangles covering " + x + "," + z);
+        }
+    }
+
+    private static double area(Triangulation triangulation)
+    {
+        long twice = 0;
+        for (int t = 0; t < triangulation.getTriangleCount(); t++)
+        {
+            final int a = triangulation.getIndex(t * 3), b = triangulation.getIndex(t * 3 + 1), c = triangulation.getIndex(t * 3 + 2);
+            final long cross = (long) (triangulation.getX(b) - triangulation.getX(a)) * (triangulation.getZ(c) - triangulation.getZ(a))
+                    - (long) (triangulation.getZ(b) - triangulation.getZ(a)) * (triangulation.getX(c) - triangulation.getX(a));
+            assertTrue(cross > 0, "triangle isn't wound like the others");
+            twice += cross;
+        }
+        return twice / 2.0;
+    }
+
+    private static boolean inTriangle(Triangulation triangulation, int t, double x, double z)
+    {
+        final int a = triangulation.getIndex(t * 3), b = triangulation.getIndex(t * 3 + 1), c = triangulation.getIndex(t * 3 + 2);
+        return side(triangulation, a, b, x, z) > 0 && side(triangulation, b, c, x, z) > 0 && side(triangulation, c, a, x, z) > 0;
+    }
+
+    private static double side(Triangulation triangulation, int from, int to, double x, double z)
+    {
+        return (triangulation.getX(to) - triangulation.getX(from)) * (z - triangulation.getZ(from))
+                - (triangulation.getZ(to) - triangulation.getZ(from)) * (x - triangulation.getX(from));
+    }
+
+    /**
+     * A simple polygon of points at random distances around a center, in a random winding order.
+     */
+    private static MapPolygon star(Random random, int centerX, int centerZ, int radius, int points)
+    {
+        final int[] xz = new int[points * 2];
+        final double direction = random.nextBoolean() ? 1 : -1;
+        for (int i = 0; i < points; i++)
+        {
+            final double angle = direction * 2 * Math.PI * i / points;
+            final double distance = radius * (0.4 + 0.6 * random.nextDouble());
+            xz[i * 2] = (int) Math.round(centerX + distance * Math.cos(angle));
+            xz[i * 2 + 1] = (int) Math.round(centerZ + distance * Math.sin(angle));
+        }
+        return new MapPolygon(xz, Y);
+    }
+
+    /**
+     * Whether a hole is inside the hull without touching it or the other holes.
+     */
+    private static boolean fitsInside(MapPolygon hull, List<MapPolygon> holes, MapPolygon hole)
+    {
+        for (int i = 0; i < hole.getPointCount(); i++)
+        {
+            if (!PolygonHelper.contains(hull, holes, hole.getX(i), hole.getZ(i)))
+            {
+                return false;
+            }
+        }
+        if (edgesMeet(hull, hole))
+        {
+            return false;
+        }
+        for (MapPolygon other : holes)
+        {
+            if (edgesMeet(other, hole) || PolygonHelper.contains(hole, other.getX(0), other.getZ(0)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean edgesMeet(MapPolygon a, MapPolygon b)
+    {
+        for (int i = 0, countA = a.getPointCount(); i < countA; i++)
+        {
+            final int i2 = (i + 1) % countA;
+            for (int j = 0, countB = b.getPointCount(); j < countB; j++)
+            {
+                final int j2 = (j + 1) % countB;
+                if (Long.signum(turn(a.getX(i), a.getZ(i), a.getX(i2), a.getZ(i2), b.getX(j), b.getZ(j)))
+                        * Long.signum(turn(a.getX(i), a.getZ(i), a.getX(i2), a.getZ(i2), b.getX(j2), b.getZ(j2))) <= 0
+                        && Long.signum(turn(b.getX(j), b.getZ(j), b.getX(j2), b.getZ(j2), a.getX(i), a.getZ(i)))
+                        * Long.signum(turn(b.getX(j), b.getZ(j), b.getX(j2), b.getZ(j2), a.getX(i2), a.getZ(i2))) <= 0)
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long turn(int ax, int az, int bx, int bz, int px, int pz)
+    {
+        return (long) (bx - ax) * (pz - az) - (long) (bz - az) * (px - ax);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.model.MapPolygonWithHoles;
+import journeymap.client.api.util.RectilinearPolygonOps.Operation;
+import net.minecraft.world.level.ChunkPos;
+
+import java.awt.geom.Area;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Times {@link RectilinearPolygonOps} against the {@link Area} path used before it, on two overlapping claims of
+ * randomly chosen chunks.  Not run with the tests; run main() with the size of the claims in chunks, 64 by
+ * default.
+ */
+public class RectilinearPolygonOpsBenchmark
+{
+    private static final int Y = 64;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 20;
+
+    public static void main(String[] args)
+    {
+        final int size = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        final Random random = new Random(15);
+        final List<MapPolygonWithHoles> a = ChunkOutlineTracer.trace(randomClaim(random, 0, size), Y);
+        final List<MapPolygonWithHoles> b = ChunkOutlineTracer.trace(randomClaim(random, size / 2, size), Y);
+        System.out.printf("Claims of %dx%d chunks: %d and %d polygons%n", size, size, a.size(), b.size());
+
+        for (Operation operation : Operation.values())
+        {
+            final long ops = time(WARMUP, RUNS, () -> RectilinearPolygonOps.apply(operation, a, b, Y));
+            final long area = time(WARMUP, RUNS, () -> applyArea(operation, a, b));
+            System.out.printf("%-9s RectilinearPolygonOps %8.3f ms, Area %8.3f ms%n", operation, ops / 1e6, area / 1e6);
+        }
+    }
+
+    private static Set<ChunkPos> randomClaim(Random random, int offset, int size)
+    {
+        final Set<ChunkPos> chunks = new HashSet<>();
+        for (int x = 0; x < size; x++)
+        {
+            for (int z = 0; z < size; z++)
+            {
+                if (random.nextDouble() < 0.7)
+                {
+                    chunks.add(new ChunkPos(offset + x, offset + z));
+                }
+            }
+        }
+        return chunks;
+    }
+
+    private static Area applyArea(Operation operation, List<MapPolygonWithHoles> a, List<MapPolygonWithHoles> b)
+    {
+        final Area result = RectilinearPolygonOpsTest.toArea(a);
+        final Area other = RectilinearPolygonOpsTest.toArea(b);
+        switch (operation)
+        {
+            case Union:
+                result.add(other);
+                break;
+            case Subtract:
+                result.subtract(other);
+                break;
+            case Intersect:
+                result.intersect(other);
+                break;
+            default:
+                result.exclusiveOr(other);
+        }
+        return result;
+    }
+
+    /**
+     * @return the mean nanoseconds per run
+     */
+    private static long time(int warmup, int runs, Runnable task)
+    {
+        for (int i = 0; i < warmup; i++)
+        {
+            task.run();
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+        {
+            task.run();
+        }
+        return (System.nanoTime() - start) / runs;
+    }
+}
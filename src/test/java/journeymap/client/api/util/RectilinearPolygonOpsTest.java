@@ -0,0 +1,215 @@
+/*
+ * JourneyMap API (http://journeymap.info)
+ * http://github.com/TeamJM/journeymap-api
+ *
+ * Copyright (c) 2011-2016 Techbrew.  All Rights Reserved.
+ * The following limited rights are granted to you:
+ *
+ * You MAY:
+ *  + Write your own code that uses the API source code in journeymap.* packages as a dependency.
+ *  + Write and distribute your own code that uses, modifies, or extends the example source code in example.* packages
+ *  + Fork and modify any source code for the purpose of submitting Pull Requests to the TeamJM/journeymap-api repository.
+ *    Submitting new or modified code to the repository means that you are granting Techbrew all rights to the submitted code.
+ *
+ * You MAY NOT:
+ *  - Distribute source code or classes (whether modified or not) from journeymap.* packages.
+ *  - Submit any code to the TeamJM/journeymap-api repository with a different license than this one.
+ *  - Use code or artifacts from the repository in any way not explicitly granted by this license.
+ *
+ */
+
+package journeymap.client.api.util;
+
+import journeymap.client.api.model.MapPolygon;
+import journeymap.client.api.model.MapPolygonWithHoles;
+import journeymap.client.api.util.RectilinearPolygonOps.Operation;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Area;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks {@link RectilinearPolygonOps} against {@link Area}.
+ */
+public class RectilinearPolygonOpsTest
+{
+    private static final int Y = 64;
+
+    @Test
+    public void unionOfTouchingSquaresIsOneRectangle()
+    {
+        final List<MapPolygonWithHoles> result = RectilinearPolygonOps.union(square(0, 0, 10), square(10, 0, 10), Y);
+        assertEquals(1, result.size());
+        assertEquals(4, result.get(0).hull.getPointCount());
+        assertTrue(result.get(0).holes.isEmpty());
+        assertMatches(Operation.Union, square(0, 0, 10), square(10, 0, 10), result);
+    }
+
+    @Test
+    public void unionOfSquaresTouchingAtACornerStaysSeparate()
+    {
+        assertEquals(2, RectilinearPolygonOps.union(square(0, 0, 10), square(10, 10, 10), Y).size());
+    }
+
+    @Test
+    public void subtractInsideMakesAHole()
+    {
+        final List<MapPolygonWithHoles> result = RectilinearPolygonOps.subtract(square(0, 0, 30), square(10, 10, 10), Y);
+        assertEquals(1, result.size());
+        assertEquals(1, result.get(0).holes.size());
+        assertMatches(Operation.Subtract, square(0, 0, 30), square(10, 10, 10), result);
+    }
+
+    @Test
+    public void intersectOfDisjointSquaresIsEmpty()
+    {
+        assertTrue(RectilinearPolygonOps.intersect(square(0, 0, 10), square(20, 0, 10), Y).isEmpty());
+    }
+
+    @Test
+    public void xorOfOverlappingSquares()
+    {
+        final List<MapPolygonWithHoles> result = RectilinearPolygonOps.xor(square(0, 0, 20), square(10, 10, 20), Y);
+        assertEquals(2, result.size());
+        assertMatches(Operation.Xor, square(0, 0, 20), square(10, 10, 20), result);
+    }
+
+    @Test
+    public void xorOfEqualSquaresIsEmpty()
+    {
+        assertTrue(RectilinearPolygonOps.xor(square(0, 0, 10), square(0, 0, 10), Y).isEmpty());
+    }
+
+    @Test
+    public void randomRectanglesMatchArea()
+    {
+        final Random random = new Random(15);
+        for (int run = 0; run < 500; run++)
+        {
+            final List<MapPolygonWithHoles> a = randomRectangles(random);
+            final List<MapPolygonWithHoles> b = randomRectangles(random);
+            for (Operation operation : Operation.values())
+            {
+                assertMatches(operation, a, b, RectilinearPolygonOps.apply(operation, a, b, Y));
+            }
+        }
+    }
+
+    @Test
+    public void operandsWithHolesMatchArea()
+    {
+        final Random random = new Random(16);
+        for (int run = 0; run < 200; run++)
+        {
+            // A frame around a hole, with other rectangles which may cover the hole
+            final List<MapPolygonWithHoles> a = new ArrayList<>(randomRectangles(random));
+            final int x = random.nextInt(40), z = random.nextInt(40), size = 10 + random.nextInt(20);
+            a.add(new MapPolygonWithHoles(square(x, z, size), Collections.singletonList(square(x + 3, z + 3, size - 6))));
+            final List<MapPolygonWithHoles> b = randomRectangles(random);
+            for (Operation operation : Operation.values())
+            {
+                assertMatches(operation, a, b, RectilinearPolygonOps.apply(operation, a, b, Y));
+            }
+        }
+    }
+
+    private static void assertMatches(Operation operation, MapPolygon a, MapPolygon b, List<MapPolygonWithHoles> result)
+    {
+        assertMatches(operation, Collections.singletonList(new MapPolygonWithHoles(a, null)),
+                Collections.singletonList(new MapPolygonWithHoles(b, null)), result);
+    }
+
+    private static void assertMatches(Operation operation, Collection<MapPolygonWithHoles> a,
+                                      Collection<MapPolygonWithHoles> b, List<MapPolygonWithHoles> result)
+    {
+        final Area expected = toArea(a);
+        final Area other = toArea(b);
+        switch (operation)
+        {
+            case Union:
+                expected.add(other);
+                break;
+            case Subtract:
+                expected.subtract(other);
+                break;
+            case Intersect:
+                expected.intersect(other);
+                break;
+            default:
+                expected.exclusiveOr(other);
+        }
+
+        for (MapPolygonWithHoles polygon : result)
+        {
+            assertTrue(signedArea(polygon.hull) > 0, operation + ": hull isn't counter-clockwise");
+            for (MapPolygon hole : polygon.holes)
+            {
+                assertTrue(signedArea(hole) < 0, operation + ": hole isn't clockwise");
+            }
+        }
+
+        final Area difference = toArea(result);
+        difference.exclusiveOr(expected);
+        assertTrue(difference.isEmpty(), operation + ": result differs from Area");
+    }
+
+    /**
+     * Twice the area of a ring, positive when counter-clockwise with +X right and +Z down.
+     */
+    private static long signedArea(MapPolygon ring)
+    {
+        long area = 0;
+        for (int i = 0, count = ring.getPointCount(); i < count; i++)
+        {
+            final int j = (i + 1) % count;
+            area += (long) (ring.getX(j) - ring.getX(i)) * (ring.getZ(j) + ring.getZ(i));
+        }
+        return area;
+    }
+
+    static Area toArea(Collection<MapPolygonWithHoles> polygons)
+    {
+        final Area area = new Area();
+        for (MapPolygonWithHoles polygon : polygons)
+        {
+            final Area shape = PolygonHelper.toArea(polygon.hull);
+            if (polygon.holes != null)
+            {
+                for (MapPolygon hole : polygon.holes)
+                {
+                    shape.subtract(PolygonHelper.toArea(hole));
+                }
+            }
+            area.add(shape);
+        }
+        return area;
+    }
+
+    static List<MapPolygonWithHoles> randomRectangles(Random random)
+    {
+        final List<MapPolygonWithHoles> rectangles = new ArrayList<>();
+        for (int i = 1 + random.nextInt(5); i > 0; i--)
+        {
+            rectangles.add(new MapPolygonWithHoles(rectangle(random.nextInt(50), random.nextInt(50),
+                    1 + random.nextInt(30), 1 + random.nextInt(30)), null));
+        }
+        return rectangles;
+    }
+
+    static MapPolygon square(int x, int z, int size)
+    {
+        return rectangle(x, z, size, size);
+    }
+
+    static MapPolygon rectangle(int x, int z, int width, int height)
+    {
+        return new MapPolygon(new int[]{x, z, x, z + height, x + width, z + height, x + width, z}, Y);
+    }
+}